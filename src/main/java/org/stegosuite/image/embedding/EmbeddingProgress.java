@@ -11,7 +11,7 @@ public class EmbeddingProgress
 		super();
 	}
 
-	public void progressUpdate(int currentByte, int totalBytes) {
+	public synchronized void progressUpdate(int currentByte, int totalBytes) {
 		int newPercentage = (100 * currentByte) / totalBytes;
 		if (newPercentage > currentPercentage) {
 			currentPercentage = newPercentage;
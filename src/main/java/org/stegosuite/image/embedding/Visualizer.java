@@ -62,7 +62,19 @@ public class Visualizer {
 	 * @param mode
 	 */
 	public void visualize(Point point, VisualizationMode mode) {
-		visualizationBufferedImage.setRGB(point.x, point.y, visualizations.get(mode).getRGB());
+		visualize(point.x, point.y, mode);
+	}
+
+	/**
+	 * Changes the color of the visualization image at the specified coordinates according to the
+	 * visualization mode
+	 * 
+	 * @param x
+	 * @param y
+	 * @param mode
+	 */
+	public void visualize(int x, int y, VisualizationMode mode) {
+		visualizationBufferedImage.setRGB(x, y, visualizations.get(mode).getRGB());
 	}
 
 	/**
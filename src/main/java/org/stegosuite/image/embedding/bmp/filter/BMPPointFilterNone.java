@@ -1,12 +1,9 @@
 package org.stegosuite.image.embedding.bmp.filter;
 
 import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointMask;
 import org.stegosuite.image.format.BMPImage;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collection;
-
 /**
  * Allows embedding into all points of a BMP image
  */
@@ -19,8 +16,8 @@ public class BMPPointFilterNone
 	}
 
 	@Override
-	protected Collection<Point> filter(BMPImage image) {
-		return new ArrayList<>();
+	protected PointMask filter(BMPImage image) {
+		return new PointMask(image.getWidth(), image.getHeight());
 	}
 
 }
@@ -0,0 +1,197 @@
+package org.stegosuite.image.embedding.gif;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stegosuite.image.embedding.EmbeddingProgress;
+import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.model.exception.SteganoEmbedException;
+import org.stegosuite.model.exception.SteganoExtractException;
+import org.stegosuite.model.exception.SteganoKeyException;
+import org.stegosuite.model.payload.PayloadExtractor;
+
+/**
+ * Spreads a payload across the frames of an animated GIF. The payload bytes are split into one
+ * chunk per frame, in frame order and each up to the capacity of its frame. Frames that can't
+ * carry a chunk at all are skipped, every other frame up to the last one used carries a chunk,
+ * which may be empty. The frames are embedded into and extracted from in parallel, how a chunk is
+ * stored in a frame is up to the embedding method.
+ */
+class AnimatedGIFEmbedding {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AnimatedGIFEmbedding.class);
+
+	/**
+	 * Stores chunks of the payload in single frames. The methods are called for different frames
+	 * concurrently.
+	 */
+	interface FrameCoder {
+
+		/**
+		 * Returns the number of payload bytes the frame can take, or a negative number if it can't
+		 * carry a chunk at all. Embedding a chunk must not make a frame unable to carry one, so that
+		 * extraction skips the same frames.
+		 *
+		 * @param frame
+		 * @param frameIndex
+		 * @return
+		 */
+		int capacity(GIFImage frame, int frameIndex);
+
+		/**
+		 * Embeds a chunk of at most capacity() bytes into the frame
+		 *
+		 * @param frame
+		 * @param frameIndex
+		 * @param chunk
+		 */
+		void embed(GIFImage frame, int frameIndex, byte[] chunk);
+
+		/**
+		 * Extracts the chunk embedded into the frame
+		 *
+		 * @param frame
+		 * @param frameIndex
+		 * @return The chunk, or null if the frame doesn't carry a valid chunk
+		 */
+		byte[] extract(GIFImage frame, int frameIndex);
+	}
+
+	private final FrameCoder coder;
+
+	AnimatedGIFEmbedding(FrameCoder coder) {
+		this.coder = coder;
+	}
+
+	/**
+	 * Derives the key of a single frame from the key of the payload, so that the frames don't
+	 * use the same point sequence
+	 *
+	 * @param key
+	 * @param frameIndex
+	 * @return
+	 */
+	static String frameKey(String key, int frameIndex) {
+		return key == null ? null : key + "#" + frameIndex;
+	}
+
+	/**
+	 * Returns the sum of the capacities of all frames
+	 *
+	 * @param image
+	 * @return
+	 */
+	int capacity(GIFImage image) {
+		return sumCapacities(frameCapacities(image.getFrames()));
+	}
+
+	/**
+	 * Splits the payload bytes into chunks and embeds them into the frames
+	 *
+	 * @param image
+	 * @param payloadBytes
+	 * @param progress
+	 * @throws SteganoEmbedException
+	 */
+	void embed(GIFImage image, byte[] payloadBytes, EmbeddingProgress progress)
+			throws SteganoEmbedException {
+
+		List<GIFImage> frames = image.getFrames();
+		int[] capacities = frameCapacities(frames);
+
+		byte[][] chunks = new byte[frames.size()][];
+		int offset = 0;
+		for (int i = 0; i < frames.size() && offset < payloadBytes.length; i++) {
+			if (capacities[i] < 0) {
+				continue;
+			}
+			// Frames without capacity left for payload bytes still carry an empty chunk, extraction
+			// can't tell them from frames that end the payload otherwise
+			int chunkLength = Math.min(capacities[i], payloadBytes.length - offset);
+			chunks[i] = Arrays.copyOfRange(payloadBytes, offset, offset + chunkLength);
+			offset += chunkLength;
+		}
+		if (offset < payloadBytes.length) {
+			throw new SteganoEmbedException(
+					String.format("Payload is too large. Maximum capacity for this carrier file is %d bytes but payload is %d bytes.",
+							sumCapacities(capacities), payloadBytes.length));
+		}
+		LOG.debug("Embedding {} bytes into {} of {} frames", payloadBytes.length,
+				Arrays.stream(chunks).filter(chunk -> chunk != null && chunk.length > 0).count(), frames.size());
+
+		AtomicInteger embeddedBytes = new AtomicInteger();
+		IntStream.range(0, frames.size()).parallel().filter(i -> chunks[i] != null).forEach(i -> {
+			coder.embed(frames.get(i), i, chunks[i]);
+			int done = embeddedBytes.addAndGet(chunks[i].length);
+			if (progress != null) {
+				synchronized (progress) {
+					progress.progressUpdate(done, payloadBytes.length);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Extracts the chunks from the frames and passes them to the extractor in frame order until
+	 * it's finished. The frames are extracted in waves of one frame per core, so that the frames
+	 * behind the end of the payload are not extracted.
+	 *
+	 * @param image
+	 * @param extractor
+	 * @param progress
+	 * @throws SteganoExtractException
+	 */
+	void extract(GIFImage image, PayloadExtractor extractor, EmbeddingProgress progress)
+			throws SteganoExtractException {
+
+		List<GIFImage> frames = image.getFrames();
+		int[] capacities = new int[frames.size()];
+		byte[][] chunks = new byte[frames.size()][];
+		int waveFrames = Math.max(ForkJoinPool.getCommonPoolParallelism(), 1);
+		for (int start = 0; start < frames.size() && !extractor.finished(); start += waveFrames) {
+			int end = Math.min(frames.size(), start + waveFrames);
+			IntStream.range(start, end).parallel().forEach(i -> {
+				capacities[i] = coder.capacity(frames.get(i), i);
+				if (capacities[i] >= 0) {
+					chunks[i] = coder.extract(frames.get(i), i);
+				}
+			});
+
+			for (int i = start; i < end && !extractor.finished(); i++) {
+				if (capacities[i] < 0) {
+					continue;
+				}
+				if (chunks[i] == null) {
+					// Frames without a chunk only follow the last chunk
+					throw new SteganoKeyException();
+				}
+				extractor.processBytes(chunks[i], 0, chunks[i].length);
+				if (extractor.isRejected()) {
+					throw new SteganoKeyException();
+				}
+				if (progress != null && extractor.getPayloadLength() != null) {
+					progress.progressUpdate(extractor.getProcessedBytesCount(), extractor.getPayloadLength());
+				}
+			}
+		}
+
+		// The frames ran out before the payload did, we extracted a wrong payload size due to a
+		// wrong stego password
+		if (!extractor.finished()) {
+			throw new SteganoKeyException();
+		}
+	}
+
+	private int[] frameCapacities(List<GIFImage> frames) {
+		return IntStream.range(0, frames.size()).parallel().map(i -> coder.capacity(frames.get(i), i)).toArray();
+	}
+
+	private static int sumCapacities(int[] capacities) {
+		return IntStream.of(capacities).filter(capacity -> capacity > 0).sum();
+	}
+}
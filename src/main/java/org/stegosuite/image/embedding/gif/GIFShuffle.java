@@ -5,9 +5,8 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
@@ -16,6 +15,7 @@ import org.stegosuite.image.embedding.EmbeddingMethod;
 import org.stegosuite.image.embedding.EmbeddingProgress;
 import org.stegosuite.image.embedding.point.PointFilter;
 import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.image.format.IndexedPalette;
 import org.stegosuite.model.exception.SteganoEmbedException;
 import org.stegosuite.model.exception.SteganoExtractException;
 import org.stegosuite.model.exception.SteganoKeyException;
@@ -25,6 +25,7 @@ import org.stegosuite.model.payload.PayloadExtractor;
 import org.stegosuite.util.ByteUtils;
 import org.stegosuite.util.ColorDistance;
 import org.stegosuite.util.CryptoUtils;
+import org.stegosuite.util.PermutationCoder;
 
 /**
  * GIFShuffle embedding and extracting procedures. Source: http://www.darkside.com.au/gifshuffle/
@@ -42,11 +43,55 @@ public class GIFShuffle
 	private static final ColorDistance DISTANCE = ColorDistance.CIEDE_2000;
 
 	/**
-	 * Capacity in bits: sum(log2(n)) for n=2..colorTable.size()
+	 * Shuffles the color table of every frame of animated GIFs. Each frame carries a chunk of the
+	 * payload in the order of its colors, shuffled with a key for the frame.
+	 */
+	private final AnimatedGIFEmbedding animation = new AnimatedGIFEmbedding(new AnimatedGIFEmbedding.FrameCoder() {
+
+		@Override
+		public int capacity(GIFImage frame, int frameIndex) {
+			return doCapacity(frame.getIndexedPalette(DISTANCE).getSortedCount());
+		}
+
+		@Override
+		public void embed(GIFImage frame, int frameIndex, byte[] chunk) {
+			shuffle(frame, AnimatedGIFEmbedding.frameKey(key, frameIndex), chunk);
+		}
+
+		@Override
+		public byte[] extract(GIFImage frame, int frameIndex) {
+			byte[] number = unshuffle(frame, AnimatedGIFEmbedding.frameKey(key, frameIndex));
+			if (number == null || number[0] != 1) {
+				return null;
+			}
+			return Arrays.copyOfRange(number, 1, number.length);
+		}
+	});
+
+	/**
+	 * The key of the current embedding or extraction of an animated GIF
+	 */
+	private String key = null;
+
+	/**
+	 * Capacity in bits: sum(log2(n)) for n=2..number of distinct colors. Duplicate colors are not
+	 * shuffled as their order can't be told apart.
 	 */
 	@Override
 	protected int doCapacity(GIFImage image) {
-		int numColors = image.getColorTable().size();
+		if (image.isAnimated()) {
+			return animation.capacity(image);
+		}
+		return doCapacity(new HashSet<>(image.getColorTable()).size());
+	}
+
+	/**
+	 * Returns the capacity of a color table with the specified number of distinct colors
+	 *
+	 * @param numColors
+	 * @return
+	 */
+	private static int doCapacity(int numColors) {
 		double sum = IntStream.range(2, numColors + 1).mapToDouble(i -> Math.log(i) / Math.log(2)).sum();
 		LOG.debug("Capacity: {}",(int) (sum / 8) - 1);
 		return (int) (sum / 8) - 1;
@@ -56,14 +101,36 @@ public class GIFShuffle
 	protected void doEmbed(GIFImage image, Payload payload, EmbeddingProgress progress)
 			throws SteganoEmbedException {
 
-		List<Color> originalTable = image.getColorTable();
-		List<Color> newTable = new ArrayList<>(originalTable);
-		List<Color> randomTable = image.getSortedColorTable(DISTANCE);
+		PayloadEmbedder embedder = new PayloadEmbedder(payload, this.capacity());
+		if (image.isAnimated()) {
+			key = payload.getSteganoPassword();
+			animation.embed(image, embedder.getPayloadBytes(), progress);
+			return;
+		}
+
+		int numColors = shuffle(image, payload.getSteganoPassword(), embedder.getPayloadBytes());
+		if (progress != null) {
+			progress.progressUpdate(numColors, numColors);
+		}
+	}
+
+	/**
+	 * Reorders the color table of the image so that the order of its colors stands for the bytes
+	 *
+	 * @param image
+	 * @param key
+	 * @param bytes
+	 * @return The number of shuffled colors
+	 */
+	private static int shuffle(GIFImage image, String key, byte[] bytes) {
+		IndexedPalette palette = image.getIndexedPalette(DISTANCE);
+		List<Color> originalTable = palette.getColors();
+		List<Color> randomTable = new ArrayList<>(palette.getSortedColors());
 		
 		LOG.debug("Array: {}",Arrays.toString(originalTable.toArray()));
 		LOG.debug("Array: {}",Arrays.toString(randomTable.toArray()));
 		
-		Collections.shuffle(randomTable, CryptoUtils.seededRandom(payload.getSteganoPassword()));
+		Collections.shuffle(randomTable, CryptoUtils.seededRandom(key));
 
 //		LOG.debug("Array: {}",Arrays.toString(randomTable.toArray()));
 		
@@ -71,74 +138,93 @@ public class GIFShuffle
 		LOG.debug("randomtable size: {}",randomTable.size());
 		
 		// Prepend 1 to the payload so that leading 0 bytes are not cut off
-		PayloadEmbedder embedder = new PayloadEmbedder(payload, this.capacity());
-		BigInteger numPayload = new BigInteger(ByteUtils.concat(new byte[] { 1 }, embedder.getPayloadBytes()));
+		BigInteger numPayload = new BigInteger(ByteUtils.concat(new byte[] { 1 }, bytes));
+
+		// The colors of the random table are inserted into the new table from last to first, the
+		// payload number chooses the insert positions
+		int numColors = randomTable.size();
+		int[] permutation = PermutationCoder.decode(numPayload, numColors);
+		List<Color> newTable = new ArrayList<>(originalTable.size());
+		for (int element : permutation) {
+			newTable.add(randomTable.get(numColors - element - 1));
+		}
 
+		// Duplicate colors and the transparent color of a frame follow in their original order,
+		// so the first occurrence of every color is one of the shuffled colors
 		for (int i = 0; i < originalTable.size(); i++) {
-			int pos = numPayload.mod(BigInteger.valueOf(i + 1)).intValue();
-			numPayload = numPayload.divide(BigInteger.valueOf(i + 1));
-			for (int j = i; j > pos; j--) {
-				newTable.set(j, newTable.get(j - 1));
+			if (palette.toSorted(i) < 0 || palette.fromSorted(palette.toSorted(i)) != i) {
+				newTable.add(originalTable.get(i));
 			}
-			newTable.set(pos, randomTable.get(originalTable.size() - i - 1));
-			progress.progressUpdate(i + 1, originalTable.size());
 		}
 
 		// Update the color table and pixels according to the new color table
-		int[] newPixels = Arrays.stream(image.getPixels()) //
-				.map(pixel -> newTable.indexOf(originalTable.get(pixel))).toArray();
-		image.setPixels(newPixels);
-		image.setColorTable(newTable);
+		image.remapColorTable(newTable, IndexedPalette.remap(originalTable, newTable));
+		return numColors;
 	}
 
 	@Override
 	protected void doExtract(GIFImage image, Payload payload, EmbeddingProgress progress)
 			throws SteganoExtractException {
-		List<Color> table = image.getColorTable();
-		List<Color> randomTable = image.getSortedColorTable(DISTANCE);
+		PayloadExtractor extractor = new PayloadExtractor(payload);
+		if (image.isAnimated()) {
+			key = payload.getSteganoPassword();
+			animation.extract(image, extractor, progress);
+			return;
+		}
+
+		byte[] payloadBytes = unshuffle(image, payload.getSteganoPassword());
+		if (payloadBytes == null) {
+			// The colors were not shuffled by us
+			throw new SteganoKeyException();
+		}
+		if (progress != null) {
+			progress.progressUpdate(payloadBytes.length, payloadBytes.length);
+		}
+
+		// We skip the 1st byte because it's the 1 we prepended during embedding
+		extractor.processBytes(payloadBytes, 1, payloadBytes.length - 1);
+
+		// If the extractor still expects data at this point, we extracted
+		// the wrong payload size due to wrong stego password
+		if (!extractor.finished()) {
+			throw new SteganoKeyException();
+		}
+	}
+
+	/**
+	 * Returns the bytes the order of the colors in the color table stands for, including the
+	 * prepended 1
+	 *
+	 * @param image
+	 * @param key
+	 * @return The bytes, or null if the colors were not shuffled with the key
+	 */
+	private static byte[] unshuffle(GIFImage image, String key) {
+		IndexedPalette palette = image.getIndexedPalette(DISTANCE);
+		List<Color> table = palette.getColors();
+		List<Color> randomTable = new ArrayList<>(palette.getSortedColors());
 				
 		
 		LOG.debug("Array: {}",Arrays.toString(randomTable.toArray()));
 		
-		Collections.shuffle(randomTable, CryptoUtils.seededRandom(payload.getSteganoPassword()));
+		Collections.shuffle(randomTable, CryptoUtils.seededRandom(key));
 		
 		
 //		LOG.debug("Array: {}",Arrays.toString(randomTable.toArray()));
 		
 		
-		Map<Color, Integer> positions = IntStream.range(0, table.size()).boxed()
-				.collect(Collectors.toMap(i -> table.get(i), i -> i));
-
-		BigInteger numPayload = BigInteger.ZERO;
-
-		for (int i = 0; i < table.size() - 1; i++) {
-			int pos = positions.get(randomTable.get(i));
-
-			numPayload = numPayload.multiply(BigInteger.valueOf(table.size() - i));
-			numPayload = numPayload.add(BigInteger.valueOf(pos));
-
-			for (int j = i + 1; j < table.size(); j++) {
-				Color color = randomTable.get(j);
-				if (positions.get(color) > pos) {
-					positions.put(color, positions.get(color) - 1);
-				}
-			}
-
-			progress.progressUpdate(i + 2, table.size());
+		// The shuffled colors are at the start of the table, duplicates follow
+		int numColors = randomTable.size();
+		int[] randomPositions = IndexedPalette.remap(table.subList(0, numColors), randomTable);
+		int[] permutation = new int[numColors];
+		for (int i = 0; i < numColors; i++) {
+			permutation[i] = numColors - randomPositions[i] - 1;
 		}
 
-		// We skip the 1st byte because it's the 1 we prepended during embedding
-		int i = 1;
-		byte[] payloadBytes = numPayload.toByteArray();
-		PayloadExtractor extractor = new PayloadExtractor(payload);
-		while (!extractor.finished() && i < payloadBytes.length) {
-			extractor.processByte(payloadBytes[i++]);
-		}
-
-		// If the extractor still expects data at this point, we extracted
-		// the wrong payload size due to wrong stego password
-		if (!extractor.finished()) {
-			throw new SteganoKeyException();
+		try {
+			return PermutationCoder.encode(permutation).toByteArray();
+		} catch (IllegalArgumentException e) {
+			return null;
 		}
 	}
 }
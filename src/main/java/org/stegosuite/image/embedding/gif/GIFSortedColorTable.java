@@ -9,29 +9,38 @@ import org.stegosuite.image.embedding.Visualizer.VisualizationMode;
 import org.stegosuite.image.embedding.Visualizer.Visualize;
 import org.stegosuite.image.embedding.gif.filter.GIFPointFilterHomogeneous;
 import org.stegosuite.image.embedding.point.PointFilter;
-import org.stegosuite.image.embedding.point.PointGenerator;
+import org.stegosuite.image.embedding.point.PointMask;
+import org.stegosuite.image.embedding.point.PointSequence;
+import org.stegosuite.image.embedding.point.SpreadingMode;
 import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.image.format.IndexedPalette;
 import org.stegosuite.model.exception.SteganoEmbedException;
 import org.stegosuite.model.exception.SteganoExtractException;
 import org.stegosuite.model.exception.SteganoImageException;
 import org.stegosuite.model.exception.SteganoKeyException;
+import org.stegosuite.model.payload.BitCursor;
 import org.stegosuite.model.payload.Payload;
 import org.stegosuite.model.payload.PayloadEmbedder;
 import org.stegosuite.model.payload.PayloadExtractor;
 import org.stegosuite.model.payload.block.FileBlock;
 import org.stegosuite.model.payload.block.MessageBlock;
+import org.stegosuite.util.ByteUtils;
 import org.stegosuite.util.ColorDistance;
 import org.stegosuite.util.ColorUtils;
+import org.stegosuite.util.PaletteDistance;
 
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 
@@ -52,12 +61,89 @@ public class GIFSortedColorTable
 	 */
 	private static final int NUM_SKIP_TRAILING_COLORS = 6;
 
-	private SimpleEntry<GIFImage, Set<Color>> skipColors = null;
+	/**
+	 * The palette of the image the skipped colors have been computed for, and the palette with
+	 * skipped colors
+	 */
+	private SimpleEntry<IndexedPalette, IndexedPalette> palette = null;
+
+	/**
+	 * The way payload bits are spread across the image when embedding. Extraction detects the mode
+	 * from the payload header.
+	 */
+	private SpreadingMode spreadingMode = SpreadingMode.PERMUTATION;
+
+	/**
+	 * Point filters of the frames of an animated GIF, the first frame uses the point filter of the
+	 * method
+	 */
+	private final Map<Integer, PointFilter<GIFImage>> frameFilters = new ConcurrentHashMap<>();
+
+	/**
+	 * Embeds into all frames of animated GIFs. Each frame carries a chunk of the payload preceded
+	 * by the length of the chunk, the chunk is spread by a point permutation keyed for the frame.
+	 */
+	private final AnimatedGIFEmbedding animation = new AnimatedGIFEmbedding(new AnimatedGIFEmbedding.FrameCoder() {
+
+		@Override
+		public int capacity(GIFImage frame, int frameIndex) {
+			// The pixels are counted exactly: pixels carrying a chunk keep a color that isn't
+			// skipped, so a frame carrying a chunk still has enough pixels for it on extraction
+			PointMask filteredPoints = getFrameFilter(frameIndex).getFilteredPoints(frame);
+			return countCarrierPixels(frame.getPixels(), getFramePalette(frame), filteredPoints) / 8
+					- Payload.LENGTH_NUM_BYTES;
+		}
+
+		@Override
+		public void embed(GIFImage frame, int frameIndex, byte[] chunk) {
+			PointFilter<GIFImage> frameFilter = getFrameFilter(frameIndex);
+			byte[] lengthBytes = Arrays.copyOfRange(ByteUtils.intToBytes(chunk.length), 4 - Payload.LENGTH_NUM_BYTES, 4);
+			BitCursor bits = new BitCursor(ByteUtils.concat(lengthBytes, chunk), Payload.BYTE_ORDER);
+			PointSequence pointGenerator = SpreadingMode.PERMUTATION.newPointSequence(frame,
+					AnimatedGIFEmbedding.frameKey(key, frameIndex), frameFilter);
+
+			// Only the first frame is visualized
+			embedBits(frame, getFramePalette(frame), frameFilter, pointGenerator, bits, frameIndex == 0 ? visualizer : null,
+					null);
+		}
+
+		@Override
+		public byte[] extract(GIFImage frame, int frameIndex) {
+			PointFilter<GIFImage> frameFilter = getFrameFilter(frameIndex);
+			IndexedPalette palette = getFramePalette(frame);
+			PointSequence pointGenerator = SpreadingMode.PERMUTATION.newPointSequence(frame,
+					AnimatedGIFEmbedding.frameKey(key, frameIndex), frameFilter);
+			int[] pixels = frame.getPixels();
+
+			try {
+				byte[] lengthBytes = new byte[4];
+				readBytes(pixels, palette, pointGenerator, lengthBytes, 4 - Payload.LENGTH_NUM_BYTES);
+				int length = ByteBuffer.wrap(lengthBytes).getInt();
+				if (length > capacity(frame, frameIndex)) {
+					return null;
+				}
+				byte[] chunk = new byte[length];
+				readBytes(pixels, palette, pointGenerator, chunk, 0);
+				return chunk;
+			} catch (NoSuchElementException e) {
+				return null;
+			}
+		}
+	});
+
+	/**
+	 * The key of the current embedding or extraction of an animated GIF
+	 */
+	private String key = null;
 
 	public GIFSortedColorTable(GIFImage image, PointFilter<GIFImage> pointFilter) {
 		super(image, pointFilter);
 	}
 
+	public void setSpreadingMode(SpreadingMode spreadingMode) {
+		this.spreadingMode = spreadingMode;
+	}
+
 	@Override
 	protected Visualizer createVisualizer(GIFImage image) {
 		return new Visualizer(image, new Visualize(VisualizationMode.ALTERED, Color.RED),
@@ -71,8 +157,28 @@ public class GIFSortedColorTable
 	 */
 	@Override
 	protected int doCapacity(GIFImage image) {
-		Map<Color, Integer> histogram = image.getHistogram();
-		int skipPixelCount = getSkipColors(image).stream().mapToInt(c -> histogram.get(c)).sum();
+		if (image.isAnimated()) {
+			return animation.capacity(image);
+		}
+		return doFrameCapacity(image, getPalette(image), pointFilter);
+	}
+
+	/**
+	 * Returns the capacity of a single frame
+	 *
+	 * @param image
+	 * @param palette
+	 * @param pointFilter
+	 * @return
+	 */
+	private static int doFrameCapacity(GIFImage image, IndexedPalette palette, PointFilter<GIFImage> pointFilter) {
+		int[] histogram = image.getIndexHistogram();
+		int skipPixelCount = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			if (palette.isSkipped(i)) {
+				skipPixelCount += histogram[i];
+			}
+		}
 		int filteredPixelCount = pointFilter.getFilteredPoints(image).size();
 		return (image.getHeight() * image.getWidth() - filteredPixelCount - skipPixelCount) / 8;
 	}
@@ -81,128 +187,151 @@ public class GIFSortedColorTable
 	protected void doEmbed(GIFImage image, Payload payload, EmbeddingProgress progress)
 			throws SteganoEmbedException {
 
-		PointGenerator<GIFImage> pointGenerator = new PointGenerator<>(image, payload.getSteganoPassword(),
+		if (image.isAnimated()) {
+			// Animations are always spread by point permutations
+			PayloadEmbedder embedder = new PayloadEmbedder(payload, this.capacity(),
+					SpreadingMode.PERMUTATION.getHeaderVersion());
+			key = payload.getSteganoPassword();
+			animation.embed(image, embedder.getPayloadBytes(), progress);
+			return;
+		}
+
+		PointSequence pointGenerator = spreadingMode.newPointSequence(image, payload.getSteganoPassword(),
 				pointFilter);
-		PayloadEmbedder embedder = new PayloadEmbedder(payload, this.capacity());
-		int payloadNumBytes = embedder.getPayloadBytes().length;
+		PayloadEmbedder embedder = new PayloadEmbedder(payload, this.capacity(), spreadingMode.getHeaderVersion());
+		embedBits(image, getPalette(image), pointFilter, pointGenerator, embedder.payloadBits(), visualizer, progress);
+	}
 
+	/**
+	 * Embeds bits into the pixels of the point sequence, then reorders the color table by the new
+	 * color frequencies
+	 *
+	 * @param image
+	 * @param palette
+	 * @param pointFilter
+	 * @param pointGenerator
+	 * @param payloadBits
+	 * @param visualizer null if the embedding isn't visualized
+	 * @param progress
+	 */
+	private static void embedBits(GIFImage image, IndexedPalette palette, PointFilter<GIFImage> pointFilter,
+			PointSequence pointGenerator, BitCursor payloadBits, Visualizer visualizer, EmbeddingProgress progress) {
+
+		int payloadNumBytes = (int) (payloadBits.length() / 8);
 		int[] pixels = image.getPixels().clone();
-		List<Color> table = image.getColorTable();
-		List<Color> sortedTable = image.getSortedColorTable(DISTANCE);
+		List<Color> table = palette.getColors();
 		LOG.debug("origtable size: {}",table.size());
-		LOG.debug("sortedtable size: {}",sortedTable.size());
+		LOG.debug("sortedtable size: {}",palette.getSortedCount());
 		
-		Set<Color> unreferencedColorsBefore = ColorUtils.getUnreferencedColors(table, pixels);
+		int[] histogramBefore = mergeDuplicateColors(table, image.getIndexHistogram());
 
-		int currentBit = 0;
-		for (byte bit : embedder.iteratePayloadBits()) {
-			Point point = null;
+		// Pixels that carry payload bits or have been passed over by the point generator
+		int width = image.getWidth();
+		PointMask carriers = new PointMask(width, image.getHeight());
+		while (payloadBits.hasRemaining()) {
+			int bit = payloadBits.nextBit();
 			int pixelIndex = 0;
-			Color currentColor = null;
 
 			do {
-				point = pointGenerator.nextPoint();
-				pixelIndex = (point.y * image.getWidth()) + point.x;
-				currentColor = table.get(pixels[pixelIndex]);
-			} while (getSkipColors(image).contains(currentColor));
+				pixelIndex = pointGenerator.nextIndex();
+				carriers.set(pixelIndex);
+			} while (palette.isSkipped(pixels[pixelIndex]));
 
-			int sortedColorIndex = sortedTable.indexOf(currentColor);
+			int sortedColorIndex = palette.toSorted(pixels[pixelIndex]);
 			boolean pixelMatchesPayloadBit = sortedColorIndex % 2 == bit;
 
 			// Write steganogram
 			if (!pixelMatchesPayloadBit) {
 				// Toggle LSB
-				int newSortedColorIndex = Math.min(sortedColorIndex ^ 0b1, sortedTable.size() - 1);
-				pixels[pixelIndex] = table.indexOf(sortedTable.get(newSortedColorIndex));
+				int newSortedColorIndex = Math.min(sortedColorIndex ^ 0b1, palette.getSortedCount() - 1);
+				pixels[pixelIndex] = palette.fromSorted(newSortedColorIndex);
 			}
 
 			// Write visualization
-			visualizer.visualize(point,
-					pixelMatchesPayloadBit ? VisualizationMode.UNALTERED : VisualizationMode.ALTERED);
+			if (visualizer != null) {
+				visualizer.visualize(pixelIndex % width, pixelIndex / width,
+						pixelMatchesPayloadBit ? VisualizationMode.UNALTERED : VisualizationMode.ALTERED);
+			}
 
 			// Update progress
 			if (progress != null) {
-				progress.progressUpdate(currentBit++ / 8, payloadNumBytes);
+				progress.progressUpdate((int) (payloadBits.position() / 8), payloadNumBytes);
 			}
 		}
 
-		// Check for colors that were referenced before embedding but are now
-		// unreferenced
-		Set<Color> referencedColorsAfter = ColorUtils.getUnreferencedColors(table, pixels);
-		referencedColorsAfter.removeAll(unreferencedColorsBefore);
-		if (!referencedColorsAfter.isEmpty()) {
-			LOG.debug("Reinserting {} unreferenced colors", referencedColorsAfter.size());
-			Map<Color, Integer> histogram = ColorUtils.getHistogram(table, pixels);
-			for (Color unreferencedColor : referencedColorsAfter) {
-				// Sort table by similarity to unreferenced color
-				List<Color> similarColors = new ArrayList<>(table);
-				similarColors.remove(unreferencedColor);
-				similarColors.sort((c1, c2) -> (int) Math
-						.round(DISTANCE.distance(unreferencedColor, c1) - DISTANCE.distance(unreferencedColor, c2)));
-				// Try to replace most similar color with unreferenced color
-				boolean isFixed = false;
-				for (int i = 0; i < similarColors.size() && !isFixed; i++) {
-					Color similarColor = similarColors.get(i);
-					// Only replace it if it's referenced at least twice, we
-					// don't want another unreferenced color
-					if (histogram.get(similarColor) > 1) {
-						int similarColorIndex = table.indexOf(similarColor);
-						// Find first pixel of that color
-						for (int j = 0; j < pixels.length && !isFixed; j++) {
-							if (pixels[j] == similarColorIndex) {
-								// Only modify the pixel if it doesn't carry our
-								// payload
-								Point point = new Point(j % image.getWidth(), j / image.getWidth());
-								if (!pointGenerator.wasGenerated(point)) {
-									pixels[j] = table.indexOf(unreferencedColor);
-									isFixed = true;
-								}
-							}
-						}
-					}
-				}
+		// Give colors that are unreferenced now one of the pixels that don't carry payload bits.
+		// Transparent pixels of frames have no sorted color and keep their color as well.
+		carriers.or(pointFilter.getFilteredPoints(image));
+		for (int i = 0; i < pixels.length; i++) {
+			if (palette.toSorted(pixels[i]) < 0) {
+				carriers.set(i);
 			}
 		}
+		reinsertUnreferencedColors(pixels, table, histogramBefore, carriers);
 
 		// Sort color table by new color frequencies
 		List<Color> colorsSortedByFrequency = image.getHistogram().entrySet().stream()
 				.sorted(Collections.reverseOrder(Entry.comparingByValue())).map(Entry::getKey).collect(toList());
 
 		// Adjust pixels to new sorting of the palette
-		pixels = Arrays.stream(pixels).map(i -> colorsSortedByFrequency.indexOf(table.get(i))).toArray();
-
-		image.setColorTable(colorsSortedByFrequency);
 		image.setPixels(pixels);
+		image.remapColorTable(colorsSortedByFrequency, IndexedPalette.remap(table, colorsSortedByFrequency));
 	}
 
 	@Override
 	protected void doExtract(GIFImage image, Payload payload, EmbeddingProgress progress)
 			throws SteganoExtractException {
 
-		int[] pixels = image.getPixels();
-		List<Color> table = image.getColorTable();
-		List<Color> sortedTable = image.getSortedColorTable(DISTANCE);
+		String key = payload.getSteganoPassword();
+		PayloadExtractor extractor = new PayloadExtractor(payload, SpreadingMode.PERMUTATION.getHeaderVersion());
+		if (image.isAnimated()) {
+			this.key = key;
+			animation.extract(image, extractor, progress);
+			return;
+		}
+		extract(image, SpreadingMode.PERMUTATION.newPointSequence(image, key, pointFilter), extractor, progress);
 
-		PayloadExtractor extractor = new PayloadExtractor(payload);
-		PointGenerator<GIFImage> pointGenerator = new PointGenerator<>(image, payload.getSteganoPassword(),
-				pointFilter);
+		if (extractor.isRejected()) {
+			LOG.debug("No versioned header found, extracting from shuffled points");
+			visualizer = createVisualizer(image);
+			extractor = new PayloadExtractor(payload);
+			extract(image, SpreadingMode.SHUFFLE.newPointSequence(image, key, pointFilter), extractor, progress);
+		}
+	}
+
+	/**
+	 * Extracts bits from the pixels of the point sequence until the extractor is finished
+	 * 
+	 * @param image
+	 * @param pointGenerator
+	 * @param extractor
+	 * @param progress
+	 * @throws SteganoExtractException
+	 */
+	private void extract(GIFImage image, PointSequence pointGenerator, PayloadExtractor extractor,
+			EmbeddingProgress progress)
+			throws SteganoExtractException {
+
+		int[] pixels = image.getPixels();
+		IndexedPalette palette = getPalette(image);
+		int width = image.getWidth();
+		extractor.setCapacity(countCarrierPixels(pixels, palette, pointFilter.getFilteredPoints(image))
+				* (long) pointGenerator.getMaxIterations() / 8);
 
 		try {
 			while (!extractor.finished()) {
-				Point point = pointGenerator.nextPoint();
-				int pixelIndex = (point.y * image.getWidth()) + point.x;
-				Color color = table.get(pixels[pixelIndex]);
+				int pixelIndex = pointGenerator.nextIndex();
 
-				if (getSkipColors(image).contains(color)) {
+				if (palette.isSkipped(pixels[pixelIndex])) {
 					continue;
 				}
 
-				int sortedColorIndex = sortedTable.indexOf(color);
+				int sortedColorIndex = palette.toSorted(pixels[pixelIndex]);
 				byte bit = (byte) (sortedColorIndex % 2);
 				extractor.processBit(bit);
 
 				// Write visualization
-				visualizer.visualize(point, VisualizationMode.ALTERED);
+				visualizer.visualize(pixelIndex % width, pixelIndex / width, VisualizationMode.ALTERED);
 
 				// Update progress
 				if (progress != null && extractor.getPayloadLength() != null) {
@@ -216,26 +345,190 @@ public class GIFSortedColorTable
 	}
 
 	/**
-	 * Returns the a list of colors to skip when embedding and extracting
+	 * Returns the number of pixels a point sequence reads a bit from in each iteration
+	 *
+	 * @param pixels
+	 * @param palette
+	 * @param filteredPoints
+	 * @return
+	 */
+	private static int countCarrierPixels(int[] pixels, IndexedPalette palette, PointMask filteredPoints) {
+		int count = 0;
+		for (int i = 0; i < pixels.length; i++) {
+			if (!filteredPoints.contains(i) && !palette.isSkipped(pixels[i])) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Reads bytes from the pixels of the point sequence, the MSB of each byte first
+	 *
+	 * @param pixels
+	 * @param palette
+	 * @param pointGenerator
+	 * @param target
+	 * @param off The first byte of target to read
+	 * @throws NoSuchElementException if the point sequence runs out of pixels
+	 */
+	private static void readBytes(int[] pixels, IndexedPalette palette, PointSequence pointGenerator, byte[] target,
+			int off) {
+		for (int i = off; i < target.length; i++) {
+			int b = 0;
+			for (int bit = 0; bit < 8; bit++) {
+				int pixelIndex;
+				do {
+					pixelIndex = pointGenerator.nextIndex();
+				} while (palette.isSkipped(pixels[pixelIndex]));
+				b = b << 1 | palette.toSorted(pixels[pixelIndex]) % 2;
+			}
+			target[i] = (byte) b;
+		}
+	}
+
+	/**
+	 * Counts the pixels of each color. Pixels are counted for the first index of their color in
+	 * the table, so duplicate entries of a color share one count.
+	 *
+	 * @param table
+	 * @param pixels
+	 * @return
+	 */
+	static int[] getHistogram(List<Color> table, int[] pixels) {
+		return mergeDuplicateColors(table, ColorUtils.countIndices(pixels, table.size()));
+	}
+
+	/**
+	 * Adds the pixel counts of duplicate colors to the first index of the color
+	 *
+	 * @param table
+	 * @param indexCounts The number of pixels of each index, changed in place
+	 * @return indexCounts
+	 */
+	private static int[] mergeDuplicateColors(List<Color> table, int[] indexCounts) {
+		int[] firstIndices = IndexedPalette.remap(table, table);
+		for (int i = 0; i < indexCounts.length; i++) {
+			if (firstIndices[i] != i) {
+				indexCounts[firstIndices[i]] += indexCounts[i];
+				indexCounts[i] = 0;
+			}
+		}
+		return indexCounts;
+	}
+
+	/**
+	 * Gives every color that was referenced before embedding, but isn't anymore, one pixel of the
+	 * most similar color that is referenced at least twice. Only pixels outside of the carriers are
+	 * changed, so the payload stays intact.
+	 *
+	 * @param pixels The pixels after embedding, changed in place
+	 * @param table
+	 * @param histogramBefore The histogram of the pixels before embedding, see getHistogram()
+	 * @param carriers The pixels that must not be changed
+	 */
+	static void reinsertUnreferencedColors(int[] pixels, List<Color> table, int[] histogramBefore,
+			PointMask carriers) {
+		int colorCount = table.size();
+		int[] firstIndices = IndexedPalette.remap(table, table);
+		int[] histogram = getHistogram(table, pixels);
+		int[] unreferencedColors = IntStream.range(0, colorCount)
+				.filter(i -> firstIndices[i] == i && histogramBefore[i] > 0 && histogram[i] == 0).toArray();
+		if (unreferencedColors.length == 0) {
+			return;
+		}
+		LOG.debug("Reinserting {} unreferenced colors", unreferencedColors.length);
+
+		// Group the pixel indices by color, ascending within each color. The pixels of color i
+		// are at colorStarts[i] to colorStarts[i + 1] - 1 of pixelsByColor.
+		int[] colorStarts = new int[colorCount + 1];
+		for (int pixel : pixels) {
+			colorStarts[firstIndices[pixel] + 1]++;
+		}
+		for (int i = 0; i < colorCount; i++) {
+			colorStarts[i + 1] += colorStarts[i];
+		}
+		int[] nextFree = Arrays.copyOf(colorStarts, colorCount);
+		int[] pixelsByColor = new int[pixels.length];
+		for (int j = 0; j < pixels.length; j++) {
+			pixelsByColor[nextFree[firstIndices[pixels[j]]]++] = j;
+		}
+
+		// From here on, nextFree[i] is the first pixel of color i that might not be a carrier.
+		// Carriers never change and pixels taken away from color i are never given back, so it
+		// only moves forward.
+		System.arraycopy(colorStarts, 0, nextFree, 0, colorCount);
+
+		PaletteDistance distances = DISTANCE.forPalette(table);
+		for (int unreferencedColor : unreferencedColors) {
+			Integer[] similarColors = IntStream.range(0, colorCount)
+					.filter(i -> firstIndices[i] == i && i != unreferencedColor).boxed().toArray(Integer[]::new);
+			Arrays.sort(similarColors, Comparator.comparingDouble(i -> distances.distance(unreferencedColor, i)));
+
+			for (int similarColor : similarColors) {
+				// Only take a pixel if the color is referenced at least twice, we don't want another
+				// unreferenced color
+				if (histogram[similarColor] < 2) {
+					continue;
+				}
+				int end = colorStarts[similarColor + 1];
+				while (nextFree[similarColor] < end && carriers.contains(pixelsByColor[nextFree[similarColor]])) {
+					nextFree[similarColor]++;
+				}
+				if (nextFree[similarColor] < end) {
+					pixels[pixelsByColor[nextFree[similarColor]++]] = unreferencedColor;
+					histogram[similarColor]--;
+					histogram[unreferencedColor]++;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the palette of the image with the colors to skip when embedding and extracting
 	 * 
 	 * @param image
 	 * @return
 	 */
-	private Collection<Color> getSkipColors(GIFImage image) {
-		if (skipColors == null || !skipColors.getKey().equals(image)) {
-			skipColors = new SimpleEntry<>(image, new HashSet<>());
-			List<Color> sortedTable = image.getSortedColorTable(DISTANCE);
-			int sortedTableSize = sortedTable.size();
-
-			// In addition to skipping trailing colors, we skip one more color
-			// if the number of colors in the palette is uneven. Otherwise, we
-			// might switch the last color's LSB from 0 to 1 which increases the
-			// index and therefore causes an ArrayIndexOutOfBoundsException
-			for (int i = 0; i < NUM_SKIP_TRAILING_COLORS + (sortedTableSize % 2); i++) {
-				skipColors.getValue().add(sortedTable.get(sortedTableSize - i - 1));
-			}
+	private IndexedPalette getPalette(GIFImage image) {
+		IndexedPalette indexedPalette = image.getIndexedPalette(DISTANCE);
+		if (palette == null || palette.getKey() != indexedPalette) {
+			palette = new SimpleEntry<>(indexedPalette, skipColors(indexedPalette));
+		}
+		return palette.getValue();
+	}
+
+	/**
+	 * Returns the palette of a frame of an animated GIF with the colors to skip. Frames are
+	 * processed concurrently, so the palette isn't cached here.
+	 *
+	 * @param frame
+	 * @return
+	 */
+	static IndexedPalette getFramePalette(GIFImage frame) {
+		return skipColors(frame.getIndexedPalette(DISTANCE));
+	}
+
+	private static IndexedPalette skipColors(IndexedPalette indexedPalette) {
+		// In addition to skipping trailing colors, we skip one more color
+		// if the number of colors in the palette is uneven. Otherwise, we
+		// might switch the last color's LSB from 0 to 1 which increases the
+		// index and therefore causes an ArrayIndexOutOfBoundsException
+		return indexedPalette.skipTrailingColors(NUM_SKIP_TRAILING_COLORS + (indexedPalette.getSortedCount() % 2));
+	}
+
+	/**
+	 * Returns the point filter of a frame of an animated GIF
+	 *
+	 * @param frameIndex
+	 * @return
+	 */
+	private PointFilter<GIFImage> getFrameFilter(int frameIndex) {
+		if (frameIndex == 0) {
+			return pointFilter;
 		}
-		return skipColors.getValue();
+		return frameFilters.computeIfAbsent(frameIndex, i -> pointFilter.newInstance());
 	}
 
 
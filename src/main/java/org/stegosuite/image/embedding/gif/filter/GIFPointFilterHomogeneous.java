@@ -3,20 +3,16 @@ package org.stegosuite.image.embedding.gif.filter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointMask;
 import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.image.format.IndexedPalette;
 import org.stegosuite.model.exception.SteganoImageException;
 import org.stegosuite.util.ColorDistance;
 
 import java.awt.*;
 import java.io.File;
-import java.util.*;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.IntStream;
 
-import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.toMap;
-
 /**
  * Removes all points that are part of homogeneous areas of a GIF image
  */
@@ -27,9 +23,12 @@ public class GIFPointFilterHomogeneous
 
 	private static final ColorDistance DISTANCE = ColorDistance.CIEDE_2000;
 
-	private Collection<Point> filteredPoints = null;
-	private int[] indices = null;
-	private Map<Integer, Integer> indexToSortedIndex = null;
+	/**
+	 * Minimum number of pixels and rows of a band that is filtered by one task
+	 */
+	private static final int MIN_BAND_PIXELS = 1 << 18;
+
+	private static final int BAND_ROWS = 64;
 
 	@Override
 	public int maxLsbCount() {
@@ -37,126 +36,140 @@ public class GIFPointFilterHomogeneous
 	}
 
 	@Override
-	protected Collection<Point> filter(GIFImage image) {
-		filteredPoints = Collections.newSetFromMap(new ConcurrentHashMap<>());
-		indices = image.getPixels();
-
-		// Compute a mapping from original color indices to the indices in the sorted table,
-		// such that for all colors: table(i) == sortedTable(indexToSortedIndex(i))
-		List<Color> colorTable = image.getColorTable();
-		List<Color> sortedTable = image.getSortedColorTable(DISTANCE);
-		indexToSortedIndex = IntStream.range(0, colorTable.size()).boxed()
-				.collect(toMap(identity(), i -> sortedTable.indexOf(colorTable.get(i))));
+	protected PointMask filter(GIFImage image) {
+		return filter(image, Math.max(MIN_BAND_PIXELS, BAND_ROWS * image.getWidth()));
+	}
 
+	/**
+	 * Computes the mask in bands of about bandPixels pixels on all available cores. Bands are
+	 * aligned to the words of the mask, so every band writes to its own part of the mask only and
+	 * no merging is needed.
+	 *
+	 * @param image
+	 * @param bandPixels
+	 * @return
+	 */
+	PointMask filter(GIFImage image, int bandPixels) {
 		long startTime = System.nanoTime();
 
+		int[] indices = image.getPixels();
+		int[] normalizedIndices = getNormalizedIndices(image);
 		int width = image.getWidth();
 		int height = image.getHeight();
+		PointMask filteredPoints = new PointMask(width, height);
+		if (height < 3) {
+			return filteredPoints;
+		}
 
-		// Partition the image into as many slices as CPU cores we have available
-		int numSlices = Runtime.getRuntime().availableProcessors();
-		int rowsForEachSlice = height / numSlices;
-
-		IntStream.range(0, numSlices).boxed().parallel().forEach(numSlice -> {
-			long startTimeSlice = System.nanoTime();
-
-			// Calculate start & end row of current slice
-			int sliceStartRow = numSlice * rowsForEachSlice;
-			int sliceEndRow = numSlice + 1 < numSlices ? sliceStartRow + rowsForEachSlice : height - 2;
-
-			int[][] normalizedRows = getNormalizedRows(width, sliceStartRow, sliceEndRow + 2);
-			Collection<Point> homogeneousPoints = collectHomogeneousPointsOfRows(normalizedRows, sliceStartRow,
-					sliceEndRow, width);
-			filteredPoints.addAll(homogeneousPoints);
-
-			LOG.debug("Filtered slice {} of {} rows in {} ms", numSlice, sliceEndRow - sliceStartRow,
-					(System.nanoTime() - startTimeSlice) / 1000000);
+		int pixelCount = width * height;
+		int bandSize = (int) (Math.min(bandPixels, pixelCount) + 63L & ~63L);
+		int bandCount = (pixelCount + bandSize - 1) / bandSize;
+		IntStream.range(0, bandCount).parallel().forEach(band -> {
+			int fromIndex = band * bandSize;
+			int toIndex = (int) Math.min(pixelCount, (long) fromIndex + bandSize);
+			filterBand(indices, normalizedIndices, width, height, filteredPoints, fromIndex, toIndex);
 		});
 
-		LOG.debug("Filtered homogeneous points in {} ms", (System.nanoTime() - startTime) / 1000000);
+		LOG.debug("Filtered homogeneous points in {} bands in {} ms", bandCount,
+				(System.nanoTime() - startTime) / 1000000);
 
 		return filteredPoints;
 	}
 
 	/**
-	 * Returns a sub-matrix of all indices with each index having set its LSBs to zero
+	 * Returns a lookup table from color indices to the indices in the sorted table, such that
+	 * table(i) == sortedTable(lut(i)), with the LSB of each sorted index set to zero because it
+	 * will be changed after embedding
 	 *
-	 * @param width The width of the matrix
-	 * @param sliceStartIncl The start row of the pixels, inclusive
-	 * @param sliceEndExcl The end row of the pixels, exclusive
+	 * @param image
 	 * @return
 	 */
-	private int[][] getNormalizedRows(int width, int sliceStartIncl, int sliceEndExcl) {
-		int height = sliceEndExcl - sliceStartIncl;
-		int[][] normalizedRows = new int[width][height];
-
-		for (int y = sliceStartIncl; y < sliceEndExcl; y++) {
-			for (int x = 0; x < width; x++) {
-				int index = indices[y * width + x];
-				int sortedIndex = indexToSortedIndex.get(index);
-
-				// Set last bit of the sorted index to 0 because it will be changed after embedding
-				normalizedRows[x][y - sliceStartIncl] = sortedIndex & ~0b1;
-			}
+	private int[] getNormalizedIndices(GIFImage image) {
+		IndexedPalette palette = image.getIndexedPalette(DISTANCE);
+		int[] normalizedIndices = new int[256];
+		for (int i = 0; i < palette.getColorCount(); i++) {
+			normalizedIndices[i] = palette.toSorted(i) & ~0b1;
 		}
-
-		return normalizedRows;
+		return normalizedIndices;
 	}
 
 	/**
-	 * Returns a list with points of homogeneous areas in the normalizedRows matrix. Each returned
-	 * point has the row offset (sliceStartIncl) added so it is an absolute position in the image.
+	 * Marks the pixels from fromIndex (inclusive) to toIndex (exclusive) that are part of a
+	 * homogeneous area. An area is at least 3 columns of 3 rows of the same normalized index. All
+	 * areas whose rows reach into the band are searched, the rows are read in row-major order.
 	 *
-	 * @param normalizedRows
-	 * @param sliceStartIncl
-	 * @param sliceEndExcl
+	 * @param indices
+	 * @param normalizedIndices
 	 * @param width
+	 * @param height
+	 * @param filteredPoints
+	 * @param fromIndex
+	 * @param toIndex
 	 */
-	private Collection<Point> collectHomogeneousPointsOfRows(int[][] normalizedRows, int sliceStartIncl,
-			int sliceEndExcl, int width) {
+	private void filterBand(int[] indices, int[] normalizedIndices, int width, int height, PointMask filteredPoints,
+			int fromIndex, int toIndex) {
+
+		// Areas start in rows 0 to height - 3
+		int firstRow = Math.max(0, fromIndex / width - 2);
+		int lastRow = Math.min(height - 3, (toIndex - 1) / width);
 
-		Collection<Point> filteredPoints = new ArrayList<>();
+		for (int y = firstRow; y <= lastRow; y++) {
+			int top = y * width;
+			int middle = top + width;
+			int bottom = middle + width;
 
-		for (int y = 0; y < sliceEndExcl - sliceStartIncl; y++) {
-			// Indicates the left-most column of the current homogeneous area. -1 means we are not
-			// in a homogeneous area.
+			// Indicates the left-most column and the normalized index of the current homogeneous
+			// area. -1 means we are not in a homogeneous area.
 			int homogeneousColumnStart = -1;
+			int homogeneousIndex = 0;
 
 			for (int x = 0; x < width; x++) {
-				int thisColumnColor = normalizedRows[x][y];
+				int thisColumnIndex = normalizedIndices[indices[top + x]];
 
 				// True if all 3 pixels of the current column are the same
-				boolean isHomogeneousColumn = normalizedRows[x][y + 1] == thisColumnColor
-						&& normalizedRows[x][y + 2] == thisColumnColor;
-
-				// True if current column is part of a previously started homogeneous area
-				if (isHomogeneousColumn && homogeneousColumnStart != -1
-						&& thisColumnColor == normalizedRows[homogeneousColumnStart][y]) {
-					// Jump to next column if the current column belongs the current homogeneous
-					// field. In the last column we need to pretend we are 1 column ahead so that we
-					// can correctly collect all points.
-					if (x + 1 == width) {
-						x++;
-					} else {
-						continue;
-					}
-				}
+				boolean isHomogeneousColumn = normalizedIndices[indices[middle + x]] == thisColumnIndex
+						&& normalizedIndices[indices[bottom + x]] == thisColumnIndex;
 
-				// Collect all points of the homogeneous area if it's at 3 pixels wide
-				if (homogeneousColumnStart != -1 && x - homogeneousColumnStart >= 3) {
-					for (int dX = homogeneousColumnStart; dX < x; dX++) {
-						for (int dY = 0; dY < 3; dY++) {
-							filteredPoints.add(new Point(dX, sliceStartIncl + y + dY));
-						}
-					}
+				// The current column continues the current homogeneous area
+				if (isHomogeneousColumn && homogeneousColumnStart != -1 && thisColumnIndex == homogeneousIndex) {
+					continue;
 				}
 
+				// Collect all points of the homogeneous area if it's at least 3 pixels wide
+				markArea(filteredPoints, y, width, homogeneousColumnStart, x, fromIndex, toIndex);
+
 				// If this column is homogeneous we are at the beginning of a new homogeneous area
 				homogeneousColumnStart = isHomogeneousColumn ? x : -1;
+				homogeneousIndex = thisColumnIndex;
 			}
+			markArea(filteredPoints, y, width, homogeneousColumnStart, width, fromIndex, toIndex);
 		}
+	}
 
-		return filteredPoints;
+	/**
+	 * Marks the columns from fromX (inclusive) to toX (exclusive) in the 3 rows starting at topY,
+	 * as far as they are part of the band. Areas of less than 3 columns are ignored.
+	 *
+	 * @param filteredPoints
+	 * @param topY
+	 * @param width
+	 * @param fromX -1 if there is no area
+	 * @param toX
+	 * @param fromIndex
+	 * @param toIndex
+	 */
+	private void markArea(PointMask filteredPoints, int topY, int width, int fromX, int toX, int fromIndex,
+			int toIndex) {
+		if (fromX == -1 || toX - fromX < 3) {
+			return;
+		}
+		for (int y = topY; y < topY + 3; y++) {
+			int from = Math.max(fromIndex, y * width + fromX);
+			int to = Math.min(toIndex, y * width + toX);
+			if (from < to) {
+				filteredPoints.setRange(from, to);
+			}
+		}
 	}
 
 	/**
@@ -172,14 +185,15 @@ public class GIFPointFilterHomogeneous
 		image.load(new File("src/test/resources/sunflower.gif"));
 
 		PointFilter<GIFImage> filter = new GIFPointFilterHomogeneous();
-		Collection<Point> filteredPoints = filter.getFilteredPoints(image);
+		PointMask filteredPoints = filter.getFilteredPoints(image);
 
 		LOG.debug("Total pixels: {} * {} = {}", image.getWidth(), image.getHeight(),
 				image.getWidth() * image.getHeight());
 		LOG.debug("Count of non-noise pixels: {}", filteredPoints.size());
 
-		for (Point p : filteredPoints) {
-			image.getBufferedImage().setRGB(p.x, p.y, Color.RED.getRGB());
+		int width = image.getWidth();
+		for (int i = filteredPoints.nextSetIndex(0); i >= 0; i = filteredPoints.nextSetIndex(i + 1)) {
+			image.getBufferedImage().setRGB(i % width, i / width, Color.RED.getRGB());
 		}
 		image.save(new File("src/test/resources/sunflower_noise.gif"));
 	}
@@ -1,12 +1,9 @@
 package org.stegosuite.image.embedding.gif.filter;
 
 import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointMask;
 import org.stegosuite.image.format.GIFImage;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collection;
-
 /**
  * Allows embedding into all points of a GIF image
  */
@@ -19,8 +16,8 @@ public class GIFPointFilterNone
 	}
 
 	@Override
-	protected Collection<Point> filter(GIFImage image) {
-		return new ArrayList<>();
+	protected PointMask filter(GIFImage image) {
+		return new PointMask(image.getWidth(), image.getHeight());
 	}
 
 }
@@ -6,6 +6,8 @@ import org.stegosuite.image.embedding.EmbeddingMethod;
 import org.stegosuite.image.embedding.EmbeddingProgress;
 import org.stegosuite.image.embedding.point.PointFilter;
 import org.stegosuite.image.format.JPGImage;
+import org.stegosuite.image.jpgtemp.james.CoefficientPlane;
+import org.stegosuite.image.jpgtemp.james.DCTMethod;
 import org.stegosuite.image.jpgtemp.james.JpegEncoder;
 import org.stegosuite.image.jpgtemp.net.f5.Extract;
 import org.stegosuite.model.exception.SteganoEmbedException;
@@ -27,29 +29,81 @@ public class JPGF5
 
 	private static final Logger LOG = LoggerFactory.getLogger(JPGF5.class);
 
+	/**
+	 * Quality of the steganogram, 0 is worst, 100 is best
+	 */
+	private static final int QUALITY = 80;
+
+	/**
+	 * The ways the coefficients to embed into are obtained. Extraction works the same for both.
+	 */
+	public enum EmbeddingMode {
+
+		/**
+		 * Embeds into the quantized coefficients of the carrier file, which are entropy coded again
+		 * with its quantization tables. Carriers that were modified or are not baseline JPEGs are
+		 * transcoded instead.
+		 */
+		COEFFICIENTS,
+
+		/**
+		 * Decodes the carrier to pixels and encodes them again at {@link JPGF5#QUALITY}
+		 */
+		TRANSCODE
+	}
+
+	private EmbeddingMode embeddingMode = EmbeddingMode.COEFFICIENTS;
+
+	/**
+	 * The DCT method of transcoded carriers. Extraction reads the coefficients of any method.
+	 */
+	private DCTMethod dctMethod = DCTMethod.FLOAT;
+
 	public JPGF5(JPGImage image, PointFilter<JPGImage> pointFilter) {
 		super(image, pointFilter);
 	}
 
+	public void setEmbeddingMode(EmbeddingMode embeddingMode) {
+		this.embeddingMode = embeddingMode;
+	}
+
+	public void setDCTMethod(DCTMethod dctMethod) {
+		this.dctMethod = dctMethod;
+	}
+
+	/**
+	 * Returns the coefficients to embed into in the current mode
+	 *
+	 * @param image
+	 * @return
+	 */
+	private CoefficientPlane getCoefficientPlane(JPGImage image) {
+		if (embeddingMode == EmbeddingMode.COEFFICIENTS) {
+			CoefficientPlane plane = image.getFileCoefficientPlane();
+			if (plane != null) {
+				return plane;
+			}
+		}
+		return image.getCoefficientPlane(QUALITY, dctMethod);
+	}
+
 	@Override
 	protected int doCapacity(JPGImage image) {
-		JpegEncoder jpg = new JpegEncoder(image.getBufferedImage(), 80, null, null);
-
-		return jpg.getCapacity();
+		return getCoefficientPlane(image).getCapacity();
 	}
 
 	@Override
 	protected void doEmbed(JPGImage image, Payload payload, EmbeddingProgress progress)
 			throws SteganoEmbedException {
 
-		PayloadEmbedder embedder = new PayloadEmbedder(payload, this.capacity());
+		PayloadEmbedder embedder = new PayloadEmbedder(payload, doCapacity(image));
 
 		final String comment = "";
-		final int quality = 80; // 0 is worst, 100 is best
 
 		ByteArrayOutputStream dataOut = new ByteArrayOutputStream();
 
-		JpegEncoder jpg = new JpegEncoder(image.getBufferedImage(), quality, dataOut, comment);
+		// The cloned image shares the coefficients computed for the capacity
+		JpegEncoder jpg = new JpegEncoder(getCoefficientPlane(image), dataOut, comment);
 		jpg.Compress(new ByteArrayInputStream(embedder.getPayloadBytes()), payload.getSteganoPassword());
 		String outputPath = FileUtils.addFileNameSuffix(image.getFile().getAbsolutePath(), "_embed");
 
@@ -101,10 +155,7 @@ public class JPGF5
 			e.printStackTrace();
 		}
 		PayloadExtractor extractor = new PayloadExtractor(payload);
-		int i = 0;
-		while (!extractor.finished() && i < payloadBytes.length) {
-			extractor.processByte(payloadBytes[i++]);
-		}
+		extractor.processBytes(payloadBytes, 0, payloadBytes.length);
 	}
 
 	// TODO: Move this into tests
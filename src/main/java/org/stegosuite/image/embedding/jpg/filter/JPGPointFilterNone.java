@@ -1,12 +1,9 @@
 package org.stegosuite.image.embedding.jpg.filter;
 
 import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointMask;
 import org.stegosuite.image.format.JPGImage;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collection;
-
 /**
  * Allows embedding into all points of a GIF image
  */
@@ -19,7 +16,7 @@ public class JPGPointFilterNone
 	}
 
 	@Override
-	protected Collection<Point> filter(JPGImage image) {
-		return new ArrayList<>();
+	protected PointMask filter(JPGImage image) {
+		return new PointMask(image.getWidth(), image.getHeight());
 	}
 }
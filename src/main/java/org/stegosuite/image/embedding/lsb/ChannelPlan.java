@@ -0,0 +1,51 @@
+package org.stegosuite.image.embedding.lsb;
+
+import org.stegosuite.util.RgbChannel;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes which color samples of a pixel carry payload bits and how many LSBs of each sample
+ * may be used. The payload bits of a point are embedded into the channels in the order of the
+ * plan.
+ */
+public class ChannelPlan {
+
+	/**
+	 * The red, green and blue sample, up to all 8 bits of each
+	 */
+	public static final ChannelPlan RGB = new ChannelPlan(8, RgbChannel.RED, RgbChannel.GREEN, RgbChannel.BLUE);
+
+	private final List<RgbChannel> channels;
+
+	private final int maxLsbCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxLsbCount The number of LSBs of each sample that may carry payload bits
+	 * @param channels The channels that carry payload bits, in embedding order
+	 */
+	public ChannelPlan(int maxLsbCount, RgbChannel... channels) {
+		this.maxLsbCount = maxLsbCount;
+		this.channels = Arrays.asList(channels);
+	}
+
+	public List<RgbChannel> getChannels() {
+		return channels;
+	}
+
+	/**
+	 * Returns the number of payload bits each point carries per LSB
+	 *
+	 * @return
+	 */
+	public int getChannelCount() {
+		return channels.size();
+	}
+
+	public int getMaxLsbCount() {
+		return maxLsbCount;
+	}
+}
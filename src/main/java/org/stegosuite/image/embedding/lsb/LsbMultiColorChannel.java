@@ -0,0 +1,387 @@
+package org.stegosuite.image.embedding.lsb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stegosuite.image.embedding.EmbeddingMethod;
+import org.stegosuite.image.embedding.EmbeddingProgress;
+import org.stegosuite.image.embedding.Visualizer;
+import org.stegosuite.image.embedding.Visualizer.VisualizationMode;
+import org.stegosuite.image.embedding.Visualizer.Visualize;
+import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointPermutation;
+import org.stegosuite.image.embedding.point.PointSequence;
+import org.stegosuite.image.embedding.point.SpreadingMode;
+import org.stegosuite.image.format.ImageFormat;
+import org.stegosuite.model.exception.SteganoEmbedException;
+import org.stegosuite.model.exception.SteganoExtractException;
+import org.stegosuite.model.exception.SteganoKeyException;
+import org.stegosuite.model.payload.BitCursor;
+import org.stegosuite.model.payload.Payload;
+import org.stegosuite.model.payload.PayloadEmbedder;
+import org.stegosuite.model.payload.PayloadExtractor;
+import org.stegosuite.util.RgbChannel;
+
+import java.awt.*;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Embed/Extract into the LSBs of the color samples of raster images using data-spreading. Every
+ * point carries one payload bit in each channel of the {@link ChannelPlan}, filled in the order of
+ * the plan. Once all points have been used, embedding continues with the next higher bit of each
+ * sample, up to the number of LSBs allowed by both the plan and the point filter.
+ *
+ * @param <T> The image format which the embedding method supports
+ */
+public class LsbMultiColorChannel<T extends ImageFormat>
+		extends EmbeddingMethod<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LsbMultiColorChannel.class);
+
+	/**
+	 * The samples that carry the payload bits
+	 */
+	private final ChannelPlan channelPlan;
+
+	/**
+	 * The way payload bits are spread across the image when embedding. Extraction detects the mode
+	 * from the payload header.
+	 */
+	private SpreadingMode spreadingMode = SpreadingMode.PERMUTATION;
+
+	/**
+	 * Constructor
+	 *
+	 * @param image the image to be embedded/extracted
+	 * @param pointFilter the {@link PointFilter} to filter out undesired areas of the given image
+	 * @param channelPlan the samples of each pixel that carry payload bits
+	 */
+	public LsbMultiColorChannel(T image, PointFilter<T> pointFilter, ChannelPlan channelPlan) {
+		super(image, pointFilter);
+		this.channelPlan = channelPlan;
+	}
+
+	public void setSpreadingMode(SpreadingMode spreadingMode) {
+		this.spreadingMode = spreadingMode;
+	}
+
+	/**
+	 * Returns the number of LSBs of each sample that may carry payload bits
+	 *
+	 * @return
+	 */
+	private int maxLsbCount() {
+		return Math.min(pointFilter.maxLsbCount(), channelPlan.getMaxLsbCount());
+	}
+
+	@Override
+	public Visualizer createVisualizer(T image) {
+		return new Visualizer(image, new Visualize(VisualizationMode.ALTERED, Color.RED),
+				new Visualize(VisualizationMode.UNALTERED, Color.GREEN));
+	}
+
+	@Override
+	public int doCapacity(T image) {
+		LOG.debug("Embedding into {} LSBs", maxLsbCount());
+
+		int pixelCount = image.getWidth() * image.getHeight();
+		int filteredPixelCount = pointFilter.getFilteredPoints(image).size();
+		long embeddableBits = (long) (pixelCount - filteredPixelCount) * channelPlan.getChannelCount()
+				* maxLsbCount();
+
+		return (int) Math.min(Integer.MAX_VALUE, embeddableBits / 8);
+	}
+
+	@Override
+	protected void doEmbed(T image, Payload payload, EmbeddingProgress progress)
+			throws SteganoEmbedException {
+
+		LOG.debug("Performing {} LSB embedding", image.getFileExtension());
+
+		PayloadEmbedder payloadEmbedder = new PayloadEmbedder(payload, this.capacity(),
+				spreadingMode.getHeaderVersion());
+		int numPayloadBytes = payloadEmbedder.getPayloadBytes().length;
+
+		LsbRaster raster = LsbRaster.of(image.getBufferedImage());
+		BitCursor payloadBits = payloadEmbedder.payloadBits();
+		if (spreadingMode == SpreadingMode.PERMUTATION && raster.isConcurrentlyWritable()) {
+			embedParallel(raster, new PointPermutation<>(image, payload.getSteganoPassword(), pointFilter),
+					payloadBits, progress);
+			return;
+		}
+
+		// Initialize the data spreader
+		PointSequence pointGenerator = spreadingMode.newPointSequence(image, payload.getSteganoPassword(),
+				pointFilter);
+
+		List<RgbChannel> channels = channelPlan.getChannels();
+		int width = image.getWidth();
+
+		try {
+			while (payloadBits.hasRemaining()) {
+				// Get next point
+				int index = nextIndex(pointGenerator);
+				int bitPosition = pointGenerator.getIterationCount() - 1;
+				boolean altered = false;
+
+				// Embed into all channels of the plan, the last point might carry less bits
+				int numBits = (int) Math.min(channels.size(), payloadBits.remaining());
+				long bits = payloadBits.nextBits(numBits);
+				for (int i = 0; i < numBits; i++) {
+					int bit = (int) (bits >>> (numBits - 1 - i)) & 1;
+					altered |= raster.setBit(index, channels.get(i), bitPosition, bit);
+				}
+
+				// Update visualization
+				visualizer.visualize(index % width, index / width,
+						altered ? VisualizationMode.ALTERED : VisualizationMode.UNALTERED);
+
+				// Update progress
+				if (progress != null) {
+					progress.progressUpdate((int) (payloadBits.position() / 8), numPayloadBytes);
+				}
+			}
+		} catch (NoSuchElementException e) {
+			throw new SteganoEmbedException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Embeds the payload on all available cores. Point number n of the sequence carries the payload
+	 * bits {@code n * c} to {@code n * c + c - 1} for a plan of c channels, so every point can be
+	 * processed independently.
+	 *
+	 * @param raster
+	 * @param permutation
+	 * @param payloadBits
+	 * @param progress
+	 * @throws SteganoEmbedException
+	 */
+	private void embedParallel(LsbRaster raster, PointPermutation<T> permutation, BitCursor payloadBits,
+			EmbeddingProgress progress)
+			throws SteganoEmbedException {
+
+		List<RgbChannel> channels = channelPlan.getChannels();
+		int width = raster.getWidth();
+		long totalBits = payloadBits.length();
+		long numPoints = (totalBits + channels.size() - 1) / channels.size();
+		int numPayloadBytes = (int) (totalBits / 8);
+
+		try {
+			permutation.forEachPoint(numPoints, (iteration, number, index) -> {
+				boolean altered = false;
+
+				// Embed into all channels of the plan, the last point might carry less bits
+				long bitIndex = number * channels.size();
+				int numBits = (int) Math.min(channels.size(), totalBits - bitIndex);
+				long bits = payloadBits.getBits(bitIndex, numBits);
+				for (int i = 0; i < numBits; i++) {
+					int bit = (int) (bits >>> (numBits - 1 - i)) & 1;
+					altered |= raster.setBit(index, channels.get(i), iteration - 1, bit);
+				}
+
+				// Update visualization
+				visualizer.visualize(index % width, index / width,
+						altered ? VisualizationMode.ALTERED : VisualizationMode.UNALTERED);
+
+				// Update progress, points are visited roughly in sequence order
+				if (progress != null && (number & 0xFFF) == 0) {
+					progress.progressUpdate((int) (bitIndex / 8), numPayloadBytes);
+				}
+			});
+		} catch (NoSuchElementException e) {
+			throw new SteganoEmbedException(e.getMessage());
+		}
+
+		if (progress != null) {
+			progress.progressUpdate(numPayloadBytes, numPayloadBytes);
+		}
+	}
+
+	@Override
+	protected void doExtract(T image, Payload payload, EmbeddingProgress progress)
+			throws SteganoExtractException {
+
+		LOG.debug("Performing {} LSB extraction", image.getFileExtension());
+
+		String key = payload.getSteganoPassword();
+		PayloadExtractor payloadExtractor = new PayloadExtractor(payload,
+				SpreadingMode.PERMUTATION.getHeaderVersion());
+		PointPermutation<T> permutation = new PointPermutation<>(image, key, pointFilter);
+		payloadExtractor.setCapacity((long) permutation.getUnfilteredCount() * maxLsbCount()
+				* channelPlan.getChannelCount() / 8);
+		extractParallel(image, permutation, payloadExtractor, progress);
+
+		if (payloadExtractor.isRejected()) {
+			LOG.debug("No versioned header found, extracting from shuffled points");
+			visualizer = createVisualizer(image);
+			payloadExtractor = new PayloadExtractor(payload);
+			extract(image, SpreadingMode.SHUFFLE.newPointSequence(image, key, pointFilter), payloadExtractor,
+					progress);
+		}
+	}
+
+	/**
+	 * Extracts bits from the pixels of the point sequence until the extractor is finished
+	 *
+	 * @param image
+	 * @param pointGenerator
+	 * @param payloadExtractor
+	 * @param progress
+	 * @throws SteganoExtractException
+	 */
+	private void extract(T image, PointSequence pointGenerator, PayloadExtractor payloadExtractor,
+			EmbeddingProgress progress)
+			throws SteganoExtractException {
+
+		LsbRaster raster = LsbRaster.of(image.getBufferedImage());
+		int width = image.getWidth();
+
+		try {
+			while (!payloadExtractor.finished()) {
+				// Get next point
+				int index = nextIndex(pointGenerator);
+				int bitPosition = pointGenerator.getIterationCount() - 1;
+
+				// Extract from all channels of the plan, surplus bits of the last point are ignored
+				payloadExtractor.processBits(getBits(raster, index, bitPosition), channelPlan.getChannelCount());
+
+				// Update visualization
+				visualizer.visualize(index % width, index / width, VisualizationMode.ALTERED);
+
+				// Update progress
+				if (progress != null && payloadExtractor.getPayloadLength() != null) {
+					progress.progressUpdate(payloadExtractor.getProcessedBytesCount(),
+							payloadExtractor.getPayloadLength());
+				}
+			}
+		} catch (NoSuchElementException e) {
+			LOG.debug("Error: The iteration count of the point sequence exceeds its maximum iteration count ({})",
+					maxLsbCount());
+			throw new SteganoKeyException();
+		}
+	}
+
+	/**
+	 * Extracts in two phases: The header is read sequentially until the payload length is known.
+	 * Then the bits of all points that carry the payload are gathered on all available cores into
+	 * a buffer, which is handed to the extractor at once.
+	 *
+	 * @param image
+	 * @param permutation
+	 * @param payloadExtractor
+	 * @param progress
+	 * @throws SteganoExtractException
+	 */
+	private void extractParallel(T image, PointPermutation<T> permutation, PayloadExtractor payloadExtractor,
+			EmbeddingProgress progress)
+			throws SteganoExtractException {
+
+		LsbRaster raster = LsbRaster.of(image.getBufferedImage());
+		int channelCount = channelPlan.getChannelCount();
+		int width = image.getWidth();
+		int headerBits = payloadExtractor.getHeaderLength() * 8;
+
+		try {
+			// Phase 1: Read exactly the bits of the header
+			for (int bitIndex = 0; bitIndex < headerBits && !payloadExtractor.finished(); bitIndex += channelCount) {
+				int index = nextIndex(permutation);
+				long bits = getBits(raster, index, permutation.getIterationCount() - 1);
+				int numBits = Math.min(channelCount, headerBits - bitIndex);
+				payloadExtractor.processBits(bits >>> (channelCount - numBits), numBits);
+
+				visualizer.visualize(index % width, index / width, VisualizationMode.ALTERED);
+			}
+		} catch (NoSuchElementException e) {
+			throw new SteganoKeyException();
+		}
+
+		// The header has a different version
+		if (payloadExtractor.finished()) {
+			return;
+		}
+
+		// Phase 2: Gather the payload bits, starting with the point the header ends in
+		int payloadLength = payloadExtractor.getPayloadLength();
+		long totalBits = headerBits + payloadLength * 8L;
+		long numPoints = (totalBits + channelCount - 1) / channelCount;
+		if (numPoints > (long) permutation.getUnfilteredCount() * maxLsbCount()) {
+			LOG.debug("Error: The payload length exceeds the capacity of the image");
+			throw new SteganoKeyException();
+		}
+
+		long firstNumber = headerBits / channelCount;
+		AtomicLongArray words = new AtomicLongArray((int) ((totalBits + 63) >>> 6));
+		permutation.forEachPoint(numPoints, (iteration, number, index) -> {
+			if (number < firstNumber) {
+				return;
+			}
+
+			// Surplus bits of the last point are dropped
+			long bitIndex = number * channelCount;
+			int numBits = (int) Math.min(channelCount, totalBits - bitIndex);
+			long bits = getBits(raster, index, iteration - 1) >>> (channelCount - numBits);
+
+			// Points of different tasks can share a word
+			int word = (int) (bitIndex >>> 6);
+			int shift = Long.SIZE - (int) (bitIndex & 63) - numBits;
+			if (shift >= 0) {
+				words.getAndAccumulate(word, bits << shift, (a, b) -> a | b);
+			} else {
+				words.getAndAccumulate(word, bits >>> -shift, (a, b) -> a | b);
+				words.getAndAccumulate(word + 1, bits << (Long.SIZE + shift), (a, b) -> a | b);
+			}
+
+			visualizer.visualize(index % width, index / width, VisualizationMode.ALTERED);
+
+			if (progress != null && (number & 0xFFF) == 0) {
+				progress.progressUpdate((int) (bitIndex / 8), payloadLength);
+			}
+		});
+
+		byte[] buffer = new byte[payloadLength];
+		for (int i = 0; i < payloadLength; i++) {
+			long bytePosition = headerBits / 8 + i;
+			buffer[i] = (byte) (words.get((int) (bytePosition >>> 3)) >>> (56 - ((bytePosition & 7) << 3)));
+		}
+		payloadExtractor.processBytes(buffer, 0, payloadLength);
+
+		if (progress != null) {
+			progress.progressUpdate(payloadLength, payloadLength);
+		}
+	}
+
+	/**
+	 * Returns the bits of a pixel in the order of the channel plan, the first channel in the most
+	 * significant position
+	 *
+	 * @param raster
+	 * @param index
+	 * @param bitPosition
+	 * @return
+	 */
+	private long getBits(LsbRaster raster, int index, int bitPosition) {
+		long bits = 0;
+		for (RgbChannel channel : channelPlan.getChannels()) {
+			bits = (bits << 1) | raster.getBit(index, channel, bitPosition);
+		}
+		return bits;
+	}
+
+	/**
+	 * Returns the next point of the sequence as long as its LSB is allowed by the channel plan
+	 *
+	 * @param pointGenerator
+	 * @return
+	 * @throws NoSuchElementException
+	 */
+	private int nextIndex(PointSequence pointGenerator)
+			throws NoSuchElementException {
+		int index = pointGenerator.nextIndex();
+		if (pointGenerator.getIterationCount() > channelPlan.getMaxLsbCount()) {
+			throw new NoSuchElementException("No more points to generate");
+		}
+		return index;
+	}
+}
@@ -0,0 +1,213 @@
+package org.stegosuite.image.embedding.lsb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointMask;
+import org.stegosuite.image.format.ImageFormat;
+import org.stegosuite.model.exception.SteganoImageException;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/**
+ * Removes all points that are part of homogeneous areas of a raster image, i.e. 3x3 areas whose
+ * colors only differ in the LSBs
+ *
+ * @param <T> The image format the filter is applied to
+ */
+public class LsbPointFilterHomogeneous<T extends ImageFormat>
+		extends PointFilter<T> {
+
+	/**
+	 * Sets the LSB of all 3 color channels of a 32bit RGB value to 0
+	 */
+	private static final int MASK_LSBS_TO_ZERO = ~0b10000000100000001;
+
+	/**
+	 * Minimum number of pixels and rows of a band that is filtered by one task
+	 */
+	private static final int MIN_BAND_PIXELS = 1 << 18;
+
+	private static final int BAND_ROWS = 64;
+
+	private static final Logger LOG = LoggerFactory.getLogger(LsbPointFilterHomogeneous.class);
+
+	@Override
+	public int maxLsbCount() {
+		return 1;
+	}
+
+	/**
+	 * Returns a mask of all homogeneous areas
+	 */
+	@Override
+	protected PointMask filter(T image) {
+		return filter(image.getBufferedImage(), Math.max(MIN_BAND_PIXELS, BAND_ROWS * image.getWidth()));
+	}
+
+	/**
+	 * Computes the mask in bands of about bandPixels pixels on all available cores. Bands are
+	 * aligned to the words of the mask, so every band writes to its own part of the mask only.
+	 *
+	 * @param image
+	 * @param bandPixels
+	 * @return
+	 */
+	PointMask filter(BufferedImage image, int bandPixels) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		PointMask filteredPoints = new PointMask(width, height);
+		if (width < 3 || height < 3) {
+			return filteredPoints;
+		}
+
+		LsbRaster raster = LsbRaster.of(image);
+		int pixelCount = width * height;
+		int bandSize = (int) (Math.min(bandPixels, pixelCount) + 63L & ~63L);
+		int bandCount = (pixelCount + bandSize - 1) / bandSize;
+		IntStream.range(0, bandCount).parallel().forEach(band -> {
+			int fromIndex = band * bandSize;
+			int toIndex = (int) Math.min(pixelCount, (long) fromIndex + bandSize);
+			filterBand(raster, height, filteredPoints, fromIndex, toIndex);
+		});
+		return filteredPoints;
+	}
+
+	/**
+	 * Marks the pixels from fromIndex (inclusive) to toIndex (exclusive) that are part of a
+	 * homogeneous area. All centers whose 3x3 area reaches into the band are tested, row by row
+	 * with three rows of normalized RGB values in memory.
+	 *
+	 * @param raster
+	 * @param height
+	 * @param filteredPoints
+	 * @param fromIndex
+	 * @param toIndex
+	 */
+	private void filterBand(LsbRaster raster, int height, PointMask filteredPoints, int fromIndex, int toIndex) {
+		int width = raster.getWidth();
+		int firstCenter = Math.max(1, fromIndex / width - 1);
+		int lastCenter = Math.min(height - 2, (toIndex - 1) / width + 1);
+
+		int[] above = new int[width];
+		int[] center = new int[width];
+		int[] below = new int[width];
+		if (firstCenter <= lastCenter) {
+			readNormalizedRow(raster, firstCenter - 1, center);
+			readNormalizedRow(raster, firstCenter, below);
+		}
+
+		for (int y = firstCenter; y <= lastCenter; y++) {
+			int[] row = above;
+			above = center;
+			center = below;
+			below = row;
+			readNormalizedRow(raster, y + 1, below);
+
+			// Consecutive homogeneous centers are marked as one run
+			int runStart = -1;
+			for (int x = 1; x < width - 1; x++) {
+				if (isHomogeneous(above, center, below, x)) {
+					if (runStart < 0) {
+						runStart = x - 1;
+					}
+				} else if (runStart >= 0) {
+					markRun(filteredPoints, y, width, runStart, x + 1, fromIndex, toIndex);
+					runStart = -1;
+				}
+			}
+			if (runStart >= 0) {
+				markRun(filteredPoints, y, width, runStart, width, fromIndex, toIndex);
+			}
+		}
+	}
+
+	/**
+	 * Marks the columns from fromX (inclusive) to toX (exclusive) in the 3 rows around centerY, as
+	 * far as they are part of the band
+	 *
+	 * @param filteredPoints
+	 * @param centerY
+	 * @param width
+	 * @param fromX
+	 * @param toX
+	 * @param fromIndex
+	 * @param toIndex
+	 */
+	private void markRun(PointMask filteredPoints, int centerY, int width, int fromX, int toX, int fromIndex,
+			int toIndex) {
+		for (int y = centerY - 1; y <= centerY + 1; y++) {
+			int from = Math.max(fromIndex, y * width + fromX);
+			int to = Math.min(toIndex, y * width + toX);
+			if (from < to) {
+				filteredPoints.setRange(from, to);
+			}
+		}
+	}
+
+	/**
+	 * Reads a row of RGB values with the LSBs of the 3 color channels set to zero
+	 *
+	 * @param raster
+	 * @param y
+	 * @param row
+	 */
+	private void readNormalizedRow(LsbRaster raster, int y, int[] row) {
+		raster.getRgbRow(y, row);
+		for (int x = 0; x < row.length; x++) {
+			row[x] &= MASK_LSBS_TO_ZERO;
+		}
+	}
+
+	/**
+	 * Returns true if the 3x3 area around x in the center row is homogeneous, i.e. all points of
+	 * the area are filtered. Only the corners of the area are compared with the center.
+	 *
+	 * @param above
+	 * @param center
+	 * @param below
+	 * @param x
+	 * @return
+	 */
+	private boolean isHomogeneous(int[] above, int[] center, int[] below, int x) {
+		int referenceRgbValue = center[x];
+		// As soon as 1 corner of the area is different from the pixel in
+		// the center, the area is considered NOT to be homogeneous.
+		return above[x - 1] == referenceRgbValue && above[x + 1] == referenceRgbValue
+				&& below[x - 1] == referenceRgbValue && below[x + 1] == referenceRgbValue;
+	}
+
+	/**
+	 * Debug only
+	 *
+	 * @param args
+	 * @throws IOException
+	 * @throws SteganoImageException
+	 */
+	public static void main(String[] args)
+			throws SteganoImageException {
+
+		ImageFormat image = ImageFormat.getImageFormat("resources/Snow.png");
+
+		LOG.debug("Width: {}", image.getWidth());
+		LOG.debug("Height: {}", image.getHeight());
+		LOG.debug("Total pixel: {}", (image.getWidth() * image.getHeight()));
+
+		PointFilter<ImageFormat> filter = new LsbPointFilterHomogeneous<>();
+		PointMask filteredPoints = filter.getFilteredPoints(image);
+		LOG.debug("Count of non-noise pixels: {}", filteredPoints.size());
+
+		BufferedImage bufferedImage = image.getBufferedImage();
+		int width = bufferedImage.getWidth();
+		for (int i = filteredPoints.nextSetIndex(0); i >= 0; i = filteredPoints.nextSetIndex(i + 1)) {
+			bufferedImage.setRGB(i % width, i / width, Color.RED.getRGB());
+		}
+		image.setBufferedImage(bufferedImage);
+
+		image.save(new File("resources/sunflower_Noise2." + image.getFileExtension()));
+	}
+}
@@ -0,0 +1,259 @@
+package org.stegosuite.image.embedding.lsb;
+
+import org.stegosuite.util.RgbChannel;
+
+import java.awt.image.*;
+
+/**
+ * Reads and writes single bits of the color samples of an image. For the common layouts
+ * (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR, TYPE_INT_RGB and TYPE_INT_ARGB) the bits are flipped directly
+ * in the banks of the raster's data buffer, all other images go through getRGB() and setRGB().
+ * Pixels are addressed by their index in row-major order ({@code y * width + x}).
+ */
+public abstract class LsbRaster {
+
+	protected final BufferedImage image;
+
+	protected final int width;
+
+	protected LsbRaster(BufferedImage image) {
+		this.image = image;
+		this.width = image.getWidth();
+	}
+
+	/**
+	 * Creates the fastest raster access that supports the layout of the image
+	 *
+	 * @param image
+	 * @return
+	 */
+	public static LsbRaster of(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		SampleModel sampleModel = raster.getSampleModel();
+		DataBuffer dataBuffer = raster.getDataBuffer();
+
+		// Rasters created by BufferedImage itself start at (0, 0) of their data buffer, child
+		// rasters are left to the generic implementation
+		if (raster.getParent() == null && dataBuffer.getNumBanks() == 1) {
+			switch (image.getType()) {
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				return new InterleavedByteRaster(image, (PixelInterleavedSampleModel) sampleModel,
+						(DataBufferByte) dataBuffer);
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+				return new PackedIntRaster(image, (SinglePixelPackedSampleModel) sampleModel,
+						(DataBufferInt) dataBuffer);
+			default:
+				break;
+			}
+		}
+		return new RgbRaster(image);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the bit at the specified position of a color sample
+	 *
+	 * @param index The index of the pixel
+	 * @param channel
+	 * @param bitPosition 0 for the LSB
+	 * @return
+	 */
+	public abstract byte getBit(int index, RgbChannel channel, int bitPosition);
+
+	/**
+	 * Sets the bit at the specified position of a color sample
+	 *
+	 * @param index The index of the pixel
+	 * @param channel
+	 * @param bitPosition 0 for the LSB
+	 * @param bit
+	 * @return true if the sample has been changed
+	 */
+	public abstract boolean setBit(int index, RgbChannel channel, int bitPosition, int bit);
+
+	/**
+	 * Reads the ARGB values of a row, like {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}
+	 * does for the default RGB color model
+	 *
+	 * @param y
+	 * @param row Receives the values, at least as long as the width of the image
+	 */
+	public void getRgbRow(int y, int[] row) {
+		image.getRGB(0, y, width, 1, row, 0, width);
+	}
+
+	/**
+	 * Returns true if different pixels can be written from different threads at the same time,
+	 * i.e. no two pixels share an element of the data buffer
+	 *
+	 * @return
+	 */
+	public boolean isConcurrentlyWritable() {
+		return !(image.getSampleModel() instanceof MultiPixelPackedSampleModel);
+	}
+
+	/**
+	 * One byte per sample, all samples of a pixel next to each other
+	 */
+	private static class InterleavedByteRaster
+			extends LsbRaster {
+
+		private final byte[] data;
+
+		private final int scanlineStride;
+
+		private final int pixelStride;
+
+		/**
+		 * Offset of each channel within a pixel, in the order of RgbChannel
+		 */
+		private final int[] channelOffsets;
+
+		private final boolean hasAlpha;
+
+		private InterleavedByteRaster(BufferedImage image, PixelInterleavedSampleModel sampleModel,
+				DataBufferByte dataBuffer) {
+			super(image);
+			this.data = dataBuffer.getData();
+			this.scanlineStride = sampleModel.getScanlineStride();
+			this.pixelStride = sampleModel.getPixelStride();
+			int[] bandOffsets = sampleModel.getBandOffsets();
+			this.channelOffsets = new int[RgbChannel.values().length];
+			for (int band = 0; band < bandOffsets.length; band++) {
+				channelOffsets[band] = dataBuffer.getOffset() + bandOffsets[band];
+			}
+			this.hasAlpha = bandOffsets.length > RgbChannel.ALPHA.ordinal();
+		}
+
+		@Override
+		public void getRgbRow(int y, int[] row) {
+			int red = y * scanlineStride + channelOffsets[RgbChannel.RED.ordinal()];
+			int green = y * scanlineStride + channelOffsets[RgbChannel.GREEN.ordinal()];
+			int blue = y * scanlineStride + channelOffsets[RgbChannel.BLUE.ordinal()];
+			int alpha = y * scanlineStride + channelOffsets[RgbChannel.ALPHA.ordinal()];
+			for (int x = 0, position = 0; x < width; x++, position += pixelStride) {
+				row[x] = (hasAlpha ? (data[alpha + position] & 0xFF) << 24 : 0xFF000000)
+						| (data[red + position] & 0xFF) << 16 | (data[green + position] & 0xFF) << 8
+						| data[blue + position] & 0xFF;
+			}
+		}
+
+		private int position(int index, RgbChannel channel) {
+			int y = index / width;
+			return y * scanlineStride + (index - y * width) * pixelStride + channelOffsets[channel.ordinal()];
+		}
+
+		@Override
+		public byte getBit(int index, RgbChannel channel, int bitPosition) {
+			return (byte) ((data[position(index, channel)] >> bitPosition) & 1);
+		}
+
+		@Override
+		public boolean setBit(int index, RgbChannel channel, int bitPosition, int bit) {
+			int position = position(index, channel);
+			byte sample = data[position];
+			byte newSample = (byte) ((sample & ~(1 << bitPosition)) | (bit << bitPosition));
+			data[position] = newSample;
+			return newSample != sample;
+		}
+	}
+
+	/**
+	 * One int per pixel, samples packed as 0xAARRGGBB
+	 */
+	private static class PackedIntRaster
+			extends LsbRaster {
+
+		/**
+		 * Bit offset of each channel within a pixel, in the order of RgbChannel
+		 */
+		private static final int[] CHANNEL_SHIFTS = { 16, 8, 0, 24 };
+
+		private final int[] data;
+
+		private final int scanlineStride;
+
+		private final int offset;
+
+		/**
+		 * Set for images without alpha channel, getRGB() reports them as opaque
+		 */
+		private final int opaque;
+
+		private PackedIntRaster(BufferedImage image, SinglePixelPackedSampleModel sampleModel,
+				DataBufferInt dataBuffer) {
+			super(image);
+			this.data = dataBuffer.getData();
+			this.scanlineStride = sampleModel.getScanlineStride();
+			this.offset = dataBuffer.getOffset();
+			this.opaque = image.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+		}
+
+		@Override
+		public void getRgbRow(int y, int[] row) {
+			int position = offset + y * scanlineStride;
+			for (int x = 0; x < width; x++) {
+				row[x] = data[position + x] | opaque;
+			}
+		}
+
+		private int position(int index) {
+			if (scanlineStride == width) {
+				return offset + index;
+			}
+			int y = index / width;
+			return offset + y * scanlineStride + index - y * width;
+		}
+
+		@Override
+		public byte getBit(int index, RgbChannel channel, int bitPosition) {
+			return (byte) ((data[position(index)] >> (CHANNEL_SHIFTS[channel.ordinal()] + bitPosition)) & 1);
+		}
+
+		@Override
+		public boolean setBit(int index, RgbChannel channel, int bitPosition, int bit) {
+			int position = position(index);
+			int shift = CHANNEL_SHIFTS[channel.ordinal()] + bitPosition;
+			int pixel = data[position];
+			int newPixel = (pixel & ~(1 << shift)) | (bit << shift);
+			data[position] = newPixel;
+			return newPixel != pixel;
+		}
+	}
+
+	/**
+	 * Any other layout, converted from and to sRGB by the color model of the image
+	 */
+	private static class RgbRaster
+			extends LsbRaster {
+
+		private RgbRaster(BufferedImage image) {
+			super(image);
+		}
+
+		@Override
+		public byte getBit(int index, RgbChannel channel, int bitPosition) {
+			int rgb = image.getRGB(index % width, index / width);
+			return (byte) ((rgb >> (PackedIntRaster.CHANNEL_SHIFTS[channel.ordinal()] + bitPosition)) & 1);
+		}
+
+		@Override
+		public boolean setBit(int index, RgbChannel channel, int bitPosition, int bit) {
+			int x = index % width;
+			int y = index / width;
+			int shift = PackedIntRaster.CHANNEL_SHIFTS[channel.ordinal()] + bitPosition;
+			int rgb = image.getRGB(x, y);
+			int newRgb = (rgb & ~(1 << shift)) | (bit << shift);
+			if (newRgb == rgb) {
+				return false;
+			}
+			image.setRGB(x, y, newRgb);
+			return true;
+		}
+	}
+}
@@ -1,12 +1,9 @@
 package org.stegosuite.image.embedding.png.filter;
 
 import org.stegosuite.image.embedding.point.PointFilter;
+import org.stegosuite.image.embedding.point.PointMask;
 import org.stegosuite.image.format.PNGImage;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collection;
-
 /**
  * Allows embedding into all points of a PNG image
  */
@@ -19,8 +16,8 @@ public class PNGPointFilterNone
 	}
 
 	@Override
-	protected Collection<Point> filter(PNGImage image) {
-		return new ArrayList<>();
+	protected PointMask filter(PNGImage image) {
+		return new PointMask(image.getWidth(), image.getHeight());
 	}
 
 }
@@ -2,18 +2,15 @@ package org.stegosuite.image.embedding.point;
 
 import org.stegosuite.image.format.ImageFormat;
 
-import java.awt.*;
-import java.util.Collection;
-
 /**
  * A filter can be applied to prevent certain points from being generated by the PointGenerator
  */
 public abstract class PointFilter<T extends ImageFormat> {
 
 	/**
-	 * Contains the list of points that should be skipped when embedding or extracting
+	 * Contains the points that should be skipped when embedding or extracting
 	 */
-	private Collection<Point> filteredPoints = null;
+	private PointMask filteredPoints = null;
 
 	/**
 	 * Returns the number of LSBs that the filter limits the embedding method to
@@ -23,24 +20,39 @@ public abstract class PointFilter<T extends ImageFormat> {
 	public abstract int maxLsbCount();
 
 	/**
-	 * Generates a list of points that should NOT be used when embedding or extracting. Implemented
+	 * Generates a mask of points that should NOT be used when embedding or extracting. Implemented
 	 * by the subclasses.
 	 * 
 	 * @param image
 	 * @return
 	 */
-	protected abstract Collection<Point> filter(T image);
+	protected abstract PointMask filter(T image);
 
 	/**
-	 * Returns the list of points that should NOT be used when embedding or extracting
+	 * Returns the mask of points that should NOT be used when embedding or extracting
 	 * 
 	 * @return
 	 */
-	public Collection<Point> getFilteredPoints(T image) {
+	public PointMask getFilteredPoints(T image) {
 		if (filteredPoints == null) {
 			filteredPoints = filter(image);
 		}
 		return filteredPoints;
 	}
 
+	/**
+	 * Returns a new filter of the same kind that hasn't filtered any image yet, e.g. to filter
+	 * the frames of an animation independently
+	 * 
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public PointFilter<T> newInstance() {
+		try {
+			return getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Point filter has no public default constructor", e);
+		}
+	}
+
 }
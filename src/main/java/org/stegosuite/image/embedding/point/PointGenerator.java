@@ -4,15 +4,19 @@ import org.stegosuite.image.format.ImageFormat;
 import org.stegosuite.util.CryptoUtils;
 
 import java.awt.*;
-import java.util.*;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 /**
  * This class is used for data spreading. It generates random 2D points using a key as a seed. Use
  * the same key to generate the same sequence of points. All generated points are limited to the
  * given bounds (width and height)
+ * <p>
+ * Points are kept as a permutation of pixel indices ({@code y * width + x}) in a primitive array,
+ * so generating the next point is a single array access.
  */
-public class PointGenerator<T extends ImageFormat> {
+public class PointGenerator<T extends ImageFormat>
+		implements PointSequence {
 
 	/**
 	 * The image to generate points for
@@ -31,9 +35,16 @@ public class PointGenerator<T extends ImageFormat> {
 	private Random random = null;
 
 	/**
-	 * Contains all points that haven't been visited
+	 * Shuffled indices of all points that are not filtered. Allocated on first seeding and reused
+	 * for every further iteration.
 	 */
-	private List<Point> points = new LinkedList<>();
+	private int[] points = null;
+
+	/**
+	 * Position in the points array of the next point to return. Points before this position have
+	 * been visited in the current iteration.
+	 */
+	private int position = 0;
 
 	/**
 	 * The maximum number of times the points list should be seeded
@@ -68,39 +79,73 @@ public class PointGenerator<T extends ImageFormat> {
 			throw new NoSuchElementException("No more points to generate");
 		}
 
-		int width = image.getWidth();
-		int height = image.getHeight();
-
-		Collection<Point> filteredPoints = pointFilter.getFilteredPoints(image);
-
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				Point point = new Point(x, y);
-				if (!filteredPoints.contains(point)) {
-					points.add(point);
-				}
-			}
+		// Start every iteration from the unfiltered points in row-major order
+		PointMask filteredPoints = pointFilter.getFilteredPoints(image);
+		if (points == null) {
+			points = new int[filteredPoints.length() - filteredPoints.size()];
+		}
+		int i = 0;
+		for (int index = filteredPoints.nextClearIndex(0); index >= 0; index = filteredPoints
+				.nextClearIndex(index + 1)) {
+			points[i++] = index;
 		}
 
 		if (random != null) {
-			Collections.shuffle(points, random);
+			shuffle(points, random);
 		}
 
+		position = 0;
 		return ++iterationCount;
 	}
 
 	/**
-	 * Returns the next random point
+	 * Fisher-Yates shuffle that draws exactly the same random numbers as
+	 * {@link java.util.Collections#shuffle(java.util.List, Random)}, so steganograms created with
+	 * the previous list based implementation can still be extracted.
+	 *
+	 * @param array
+	 * @param random
+	 */
+	private static void shuffle(int[] array, Random random) {
+		for (int i = array.length; i > 1; i--) {
+			int j = random.nextInt(i);
+			int tmp = array[i - 1];
+			array[i - 1] = array[j];
+			array[j] = tmp;
+		}
+	}
+
+	/**
+	 * Returns the pixel index ({@code y * width + x}) of the next random point
 	 *
 	 * @return
 	 * @throws NoSuchElementException
 	 */
-	public Point nextPoint()
+	@Override
+	public int nextIndex()
 			throws NoSuchElementException {
-		if (points.isEmpty()) {
+		if (points == null || position == points.length) {
 			seedPoints();
+			// Every point of the image might be filtered
+			if (position == points.length) {
+				throw new NoSuchElementException("No more points to generate");
+			}
 		}
-		return points.remove(0);
+		return points[position++];
+	}
+
+	/**
+	 * Returns the next random point
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 */
+	@Override
+	public Point nextPoint()
+			throws NoSuchElementException {
+		int index = nextIndex();
+		int width = image.getWidth();
+		return new Point(index % width, index / width);
 	}
 
 	/**
@@ -110,10 +155,21 @@ public class PointGenerator<T extends ImageFormat> {
 	 * @param point
 	 * @return
 	 */
+	@Override
 	public boolean wasGenerated(Point point) {
-		return !points.contains(point);
+		if (points == null) {
+			return true;
+		}
+		int index = point.y * image.getWidth() + point.x;
+		for (int i = position; i < points.length; i++) {
+			if (points[i] == index) {
+				return false;
+			}
+		}
+		return true;
 	}
 
+	@Override
 	public int getMaxIterations() {
 		return maxIterations;
 	}
@@ -123,6 +179,7 @@ public class PointGenerator<T extends ImageFormat> {
 	 *
 	 * @return
 	 */
+	@Override
 	public int getIterationCount() {
 		return iterationCount;
 	}
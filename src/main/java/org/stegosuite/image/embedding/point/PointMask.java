@@ -0,0 +1,230 @@
+package org.stegosuite.image.embedding.point;
+
+import java.awt.*;
+
+/**
+ * A dense set of points of an image, stored as one bit per pixel. Pixels are addressed by their
+ * index in row-major order ({@code y * width + x}).
+ */
+public class PointMask {
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private final int width;
+
+	private final int height;
+
+	/**
+	 * Bit {@code i % 64} of word {@code i / 64} is set if the pixel with index {@code i} is part of
+	 * the mask
+	 */
+	private final long[] words;
+
+	/**
+	 * Constructor
+	 *
+	 * @param width The width of the image the mask is created for
+	 * @param height The height of the image the mask is created for
+	 */
+	public PointMask(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.words = new long[((width * height) + 63) >>> ADDRESS_BITS_PER_WORD];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the total number of pixels covered by the mask, set or not
+	 *
+	 * @return
+	 */
+	public int length() {
+		return width * height;
+	}
+
+	/**
+	 * Adds the pixel with the specified index to the mask
+	 *
+	 * @param index
+	 */
+	public void set(int index) {
+		words[index >>> ADDRESS_BITS_PER_WORD] |= 1L << index;
+	}
+
+	/**
+	 * Adds the pixel at the specified coordinates to the mask
+	 *
+	 * @param x
+	 * @param y
+	 */
+	public void set(int x, int y) {
+		set(y * width + x);
+	}
+
+	/**
+	 * Adds all pixels from fromIndex (inclusive) to toIndex (exclusive) to the mask
+	 *
+	 * @param fromIndex
+	 * @param toIndex
+	 */
+	public void setRange(int fromIndex, int toIndex) {
+		if (fromIndex >= toIndex) {
+			return;
+		}
+
+		int startWord = fromIndex >>> ADDRESS_BITS_PER_WORD;
+		int endWord = (toIndex - 1) >>> ADDRESS_BITS_PER_WORD;
+		long firstWordMask = -1L << fromIndex;
+		long lastWordMask = -1L >>> -toIndex;
+
+		if (startWord == endWord) {
+			words[startWord] |= firstWordMask & lastWordMask;
+		} else {
+			words[startWord] |= firstWordMask;
+			for (int i = startWord + 1; i < endWord; i++) {
+				words[i] = -1L;
+			}
+			words[endWord] |= lastWordMask;
+		}
+	}
+
+	/**
+	 * Removes the pixel with the specified index from the mask
+	 *
+	 * @param index
+	 */
+	public void clear(int index) {
+		words[index >>> ADDRESS_BITS_PER_WORD] &= ~(1L << index);
+	}
+
+	/**
+	 * Returns true if the pixel with the specified index is part of the mask
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean contains(int index) {
+		return (words[index >>> ADDRESS_BITS_PER_WORD] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Returns true if the pixel at the specified coordinates is part of the mask
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean contains(int x, int y) {
+		return contains(y * width + x);
+	}
+
+	/**
+	 * Returns true if the point is part of the mask
+	 *
+	 * @param point
+	 * @return
+	 */
+	public boolean contains(Point point) {
+		return contains(point.x, point.y);
+	}
+
+	/**
+	 * Returns the number of pixels that are part of the mask
+	 *
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (long word : words) {
+			size += Long.bitCount(word);
+		}
+		return size;
+	}
+
+	/**
+	 * Returns true if no pixel is part of the mask
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the first pixel at or after fromIndex that is part of the mask, or -1 if
+	 * there is none
+	 *
+	 * @param fromIndex
+	 * @return
+	 */
+	public int nextSetIndex(int fromIndex) {
+		if (fromIndex >= length()) {
+			return -1;
+		}
+
+		int wordIndex = fromIndex >>> ADDRESS_BITS_PER_WORD;
+		long word = words[wordIndex] & (-1L << fromIndex);
+
+		while (word == 0) {
+			if (++wordIndex == words.length) {
+				return -1;
+			}
+			word = words[wordIndex];
+		}
+
+		int index = (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+		return index < length() ? index : -1;
+	}
+
+	/**
+	 * Returns the index of the first pixel at or after fromIndex that is NOT part of the mask, or
+	 * -1 if there is none
+	 *
+	 * @param fromIndex
+	 * @return
+	 */
+	public int nextClearIndex(int fromIndex) {
+		if (fromIndex >= length()) {
+			return -1;
+		}
+
+		int wordIndex = fromIndex >>> ADDRESS_BITS_PER_WORD;
+		long word = ~words[wordIndex] & (-1L << fromIndex);
+
+		while (word == 0) {
+			if (++wordIndex == words.length) {
+				return -1;
+			}
+			word = ~words[wordIndex];
+		}
+
+		int index = (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+		return index < length() ? index : -1;
+	}
+
+	/**
+	 * Adds all pixels of the other mask to this mask. Both masks need to have the same dimensions.
+	 *
+	 * @param other
+	 */
+	public void or(PointMask other) {
+		if (other.width != width || other.height != height) {
+			throw new IllegalArgumentException("Point masks differ in size");
+		}
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other.words[i];
+		}
+	}
+}
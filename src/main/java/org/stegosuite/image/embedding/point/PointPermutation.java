@@ -0,0 +1,484 @@
+package org.stegosuite.image.embedding.point;
+
+import org.stegosuite.image.format.ImageFormat;
+import org.stegosuite.util.CryptoUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Spreads data like {@link PointGenerator}, but instead of shuffling a list of all points it maps
+ * the i-th step of an iteration to a pixel index with a keyed permutation. The permutation is a
+ * balanced Feistel network over the smallest domain of {@code 2^(2k)} indices that covers all
+ * pixels. Results outside of the image are walked through the network again until they fall
+ * inside (cycle-walking). Filtered pixels are skipped on the fly.
+ * <p>
+ * The round function encrypts the iteration, the round and the half with AES under a key derived
+ * from the stego password. A Feistel network with a pseudorandom round function is a
+ * pseudorandom permutation (Luby-Rackoff), so the order of the pixels can't be told from a
+ * random one without the password. Steps are mapped in batches, each round encrypts the blocks
+ * of a whole batch in one call.
+ * <p>
+ * Apart from the filter mask no memory proportional to the image size is needed and no setup work
+ * is done before the first point is returned. As the pixel of every step only depends on the key,
+ * the iteration and the step itself, ranges of steps can be processed independently, see
+ * {@link #forEachPoint(long, PointConsumer)}.
+ */
+public class PointPermutation<T extends ImageFormat>
+		implements PointSequence {
+
+	/**
+	 * Number of Feistel rounds
+	 */
+	private static final int ROUNDS = 6;
+
+	/**
+	 * Number of steps of an iteration that are processed by one task of forEachPoint()
+	 */
+	static final int STEPS_PER_TASK = 1 << 16;
+
+	/**
+	 * Number of steps whose pixel indices are computed together
+	 */
+	private static final int BATCH_STEPS = 1 << 10;
+
+	/**
+	 * Size of an AES block: the iteration and the round as int, followed by the half as long
+	 */
+	private static final int BLOCK_BYTES = 16;
+
+	/**
+	 * Distinguishes the key of the round function from other keys derived from the password
+	 */
+	private static final String KEY_PURPOSE = "stegosuite point permutation";
+
+	/**
+	 * Receives the points visited by {@link PointPermutation#forEachPoint(long, PointConsumer)}
+	 */
+	@FunctionalInterface
+	public interface PointConsumer {
+
+		/**
+		 * @param iteration The iteration the point belongs to, starting at 1
+		 * @param number The position of the point in the sequence, counted over all iterations
+		 * @param index The pixel index ({@code y * width + x}) of the point
+		 */
+		void accept(int iteration, long number, int index);
+	}
+
+	/**
+	 * The image to generate points for
+	 */
+	private T image = null;
+
+	/**
+	 * Pixels that must not be generated
+	 */
+	private PointMask filteredPoints = null;
+
+	/**
+	 * Key of the round function, derived from the key. Null if no key is provided.
+	 */
+	private SecretKey roundKey = null;
+
+	/**
+	 * Ciphers are not thread-safe, forEachPoint() uses one per thread
+	 */
+	private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> CryptoUtils.newBlockCipher(roundKey));
+
+	/**
+	 * Pixel indices of the steps of the current iteration from batchStart on, used by nextIndex()
+	 */
+	private final int[] batch = new int[BATCH_STEPS];
+
+	private int batchStart = 0;
+
+	private int batchLength = 0;
+
+	/**
+	 * Number of steps mapped to pixel indices so far
+	 */
+	private final LongAdder mappedSteps = new LongAdder();
+
+	/**
+	 * Number of pixels of the image
+	 */
+	private final int pixelCount;
+
+	/**
+	 * Number of bits of each half of the Feistel network
+	 */
+	private final int halfBits;
+
+	private final long halfMask;
+
+	/**
+	 * Number of pixels that are not filtered
+	 */
+	private final int unfilteredCount;
+
+	/**
+	 * Step of the current iteration the next point is computed from. Steps before this position
+	 * have been visited in the current iteration.
+	 */
+	private int position = 0;
+
+	/**
+	 * The maximum number of iterations
+	 */
+	private int maxIterations = 1;
+
+	/**
+	 * The number of iterations that have been started
+	 */
+	private int iterationCount = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param image The image to generate points for
+	 * @param key The key to seed the PRNG with. If key is null, pixels are visited in row-major
+	 *        order
+	 * @param pointFilter The filter to apply in order to skip certain pixels when embedding
+	 */
+	public PointPermutation(T image, String key, PointFilter<T> pointFilter) {
+		this.image = image;
+		this.filteredPoints = pointFilter.getFilteredPoints(image);
+		this.maxIterations = pointFilter.maxLsbCount();
+		this.pixelCount = filteredPoints.length();
+		this.unfilteredCount = pixelCount - filteredPoints.size();
+
+		int indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(pixelCount - 1, 1));
+		this.halfBits = (indexBits + 1) / 2;
+		this.halfMask = (1L << halfBits) - 1;
+
+		if (key != null) {
+			roundKey = CryptoUtils.deriveKey(key, KEY_PURPOSE);
+		}
+	}
+
+	/**
+	 * Starts the next iteration
+	 */
+	private void nextIteration() {
+		if (iterationCount >= maxIterations || unfilteredCount == 0) {
+			throw new NoSuchElementException("No more points to generate");
+		}
+		position = 0;
+		iterationCount++;
+		batchLength = 0;
+	}
+
+	/**
+	 * Maps a step of an iteration to a pixel index. The returned pixel might be filtered.
+	 *
+	 * @param iteration The iteration, starting at 1
+	 * @param step
+	 * @return
+	 */
+	public int indexAt(int iteration, int step) {
+		int[] index = new int[1];
+		mapSteps(iteration, step, 1, index);
+		return index[0];
+	}
+
+	/**
+	 * Maps count steps of an iteration, starting at fromStep, to pixel indices. Each round of the
+	 * network is computed for all steps at once.
+	 *
+	 * @param iteration The iteration, starting at 1
+	 * @param fromStep
+	 * @param count
+	 * @param indices Receives the pixel indices
+	 */
+	private void mapSteps(int iteration, int fromStep, int count, int[] indices) {
+		mappedSteps.add(count);
+		if (roundKey == null) {
+			for (int i = 0; i < count; i++) {
+				indices[i] = fromStep + i;
+			}
+			return;
+		}
+
+		long[] values = new long[count];
+		int[] walking = new int[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = fromStep + i;
+			walking[i] = i;
+		}
+
+		// Values outside of the image are encrypted again
+		Cipher cipher = ciphers.get();
+		int walkingCount = count;
+		while (walkingCount > 0) {
+			encrypt(values, walking, walkingCount, iteration, cipher);
+			int outside = 0;
+			for (int i = 0; i < walkingCount; i++) {
+				if (values[walking[i]] >= pixelCount) {
+					walking[outside++] = walking[i];
+				}
+			}
+			walkingCount = outside;
+		}
+
+		for (int i = 0; i < count; i++) {
+			indices[i] = (int) values[i];
+		}
+	}
+
+	/**
+	 * Maps a pixel index to the step of an iteration it is generated at
+	 *
+	 * @param iteration The iteration, starting at 1
+	 * @param index
+	 * @return
+	 */
+	private int stepOf(int iteration, int index) {
+		if (roundKey == null) {
+			return index;
+		}
+		Cipher cipher = ciphers.get();
+		long[] value = { index };
+		do {
+			decrypt(value, iteration, cipher);
+		} while (value[0] >= pixelCount);
+		return (int) value[0];
+	}
+
+	/**
+	 * Encrypts the values at the specified positions in place
+	 *
+	 * @param values
+	 * @param positions
+	 * @param count Number of positions
+	 * @param iteration
+	 * @param cipher
+	 */
+	private void encrypt(long[] values, int[] positions, int count, int iteration, Cipher cipher) {
+		long[] left = new long[count];
+		long[] right = new long[count];
+		for (int i = 0; i < count; i++) {
+			left[i] = values[positions[i]] >>> halfBits;
+			right[i] = values[positions[i]] & halfMask;
+		}
+
+		ByteBuffer blocks = ByteBuffer.allocate(count * BLOCK_BYTES);
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int i = 0; i < count; i++) {
+				blocks.putInt(i * BLOCK_BYTES, iteration).putInt(i * BLOCK_BYTES + 4, round)
+						.putLong(i * BLOCK_BYTES + 8, right[i]);
+			}
+			ByteBuffer output = encryptBlocks(blocks, count, cipher);
+			for (int i = 0; i < count; i++) {
+				long tmp = right[i];
+				right[i] = left[i] ^ (output.getLong(i * BLOCK_BYTES) & halfMask);
+				left[i] = tmp;
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			values[positions[i]] = (left[i] << halfBits) | right[i];
+		}
+	}
+
+	/**
+	 * Decrypts a single value in place
+	 *
+	 * @param value
+	 * @param iteration
+	 * @param cipher
+	 */
+	private void decrypt(long[] value, int iteration, Cipher cipher) {
+		long left = value[0] >>> halfBits;
+		long right = value[0] & halfMask;
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+		for (int round = ROUNDS - 1; round >= 0; round--) {
+			block.putInt(0, iteration).putInt(4, round).putLong(8, left);
+			long tmp = left;
+			left = right ^ (encryptBlocks(block, 1, cipher).getLong(0) & halfMask);
+			right = tmp;
+		}
+		value[0] = (left << halfBits) | right;
+	}
+
+	/**
+	 * Feistel round function of count halves at once: encrypts the first count blocks
+	 *
+	 * @param blocks
+	 * @param count
+	 * @param cipher
+	 * @return The encrypted blocks, the first 8 bytes of each block are used
+	 */
+	private static ByteBuffer encryptBlocks(ByteBuffer blocks, int count, Cipher cipher) {
+		byte[] output = new byte[count * BLOCK_BYTES];
+		try {
+			cipher.doFinal(blocks.array(), 0, output.length, output, 0);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+		return ByteBuffer.wrap(output);
+	}
+
+	@Override
+	public int nextIndex()
+			throws NoSuchElementException {
+		if (iterationCount == 0) {
+			nextIteration();
+		}
+		while (true) {
+			if (position == pixelCount) {
+				nextIteration();
+			}
+			if (position >= batchStart + batchLength || position < batchStart) {
+				batchStart = position;
+				batchLength = Math.min(BATCH_STEPS, pixelCount - position);
+				mapSteps(iterationCount, batchStart, batchLength, batch);
+			}
+			int index = batch[position++ - batchStart];
+			if (!filteredPoints.contains(index)) {
+				return index;
+			}
+		}
+	}
+
+	@Override
+	public Point nextPoint()
+			throws NoSuchElementException {
+		int index = nextIndex();
+		int width = image.getWidth();
+		return new Point(index % width, index / width);
+	}
+
+	@Override
+	public boolean wasGenerated(Point point) {
+		if (iterationCount == 0) {
+			return true;
+		}
+		int index = point.y * image.getWidth() + point.x;
+		return filteredPoints.contains(index) || stepOf(iterationCount, index) < position;
+	}
+
+	/**
+	 * Visits the first pointCount points of the sequence, i.e. the points nextIndex() would return
+	 * on a fresh instance, on all available cores. Iterations are processed one after another, the
+	 * points within an iteration in no particular order. Does not affect the state of nextIndex().
+	 *
+	 * @param pointCount
+	 * @param consumer Receives the points, needs to be thread-safe
+	 * @throws NoSuchElementException if the sequence has less than pointCount points
+	 */
+	public void forEachPoint(long pointCount, PointConsumer consumer)
+			throws NoSuchElementException {
+		if (pointCount > (long) unfilteredCount * maxIterations) {
+			throw new NoSuchElementException("No more points to generate");
+		}
+
+		int taskCount = (pixelCount + STEPS_PER_TASK - 1) / STEPS_PER_TASK;
+		long visited = 0;
+		for (int iteration = 1; visited < pointCount; iteration++) {
+			int currentIteration = iteration;
+			long firstNumber = visited;
+			long lastNumber = Math.min(pointCount, visited + unfilteredCount);
+
+			// Number of the first point of each task. Without filtered pixels every step yields
+			// a point, otherwise the points of the tasks need to be counted first. They are
+			// counted in waves of one task per core, until the tasks reach the last point.
+			long[] taskNumbers = new long[taskCount + 1];
+			taskNumbers[0] = firstNumber;
+			int neededTasks = 0;
+			if (unfilteredCount < pixelCount) {
+				int waveTasks = Math.max(ForkJoinPool.getCommonPoolParallelism(), 1);
+				while (neededTasks < taskCount && taskNumbers[neededTasks] < lastNumber) {
+					int waveEnd = Math.min(taskCount, neededTasks + waveTasks);
+					IntStream.range(neededTasks, waveEnd).parallel()
+							.forEach(task -> taskNumbers[task + 1] = countPoints(currentIteration, task));
+					for (; neededTasks < waveEnd && taskNumbers[neededTasks] < lastNumber; neededTasks++) {
+						taskNumbers[neededTasks + 1] += taskNumbers[neededTasks];
+					}
+				}
+			} else {
+				while (neededTasks < taskCount && taskNumbers[neededTasks] < lastNumber) {
+					neededTasks++;
+					taskNumbers[neededTasks] = firstNumber + (long) neededTasks * STEPS_PER_TASK;
+				}
+			}
+
+			IntStream.range(0, neededTasks).parallel().forEach(task -> {
+				long number = taskNumbers[task];
+				int toStep = (int) Math.min(pixelCount, (task + 1L) * STEPS_PER_TASK);
+				int[] indices = new int[BATCH_STEPS];
+				int step = task * STEPS_PER_TASK;
+				for (; step < toStep && number < lastNumber; step += BATCH_STEPS) {
+					int count = Math.min(BATCH_STEPS, toStep - step);
+					mapSteps(currentIteration, step, count, indices);
+					for (int i = 0; i < count && number < lastNumber; i++) {
+						if (!filteredPoints.contains(indices[i])) {
+							consumer.accept(currentIteration, number++, indices[i]);
+						}
+					}
+				}
+			});
+
+			visited = lastNumber;
+		}
+	}
+
+	/**
+	 * Returns the number of unfiltered points among the steps of a task
+	 *
+	 * @param iteration
+	 * @param task
+	 * @return
+	 */
+	private int countPoints(int iteration, int task) {
+		int count = 0;
+		int toStep = (int) Math.min(pixelCount, (task + 1L) * STEPS_PER_TASK);
+		int[] indices = new int[BATCH_STEPS];
+		for (int step = task * STEPS_PER_TASK; step < toStep; step += BATCH_STEPS) {
+			int batchCount = Math.min(BATCH_STEPS, toStep - step);
+			mapSteps(iteration, step, batchCount, indices);
+			for (int i = 0; i < batchCount; i++) {
+				if (!filteredPoints.contains(indices[i])) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of points of each iteration, i.e. the number of pixels that are not
+	 * filtered
+	 *
+	 * @return
+	 */
+	public int getUnfilteredCount() {
+		return unfilteredCount;
+	}
+
+	/**
+	 * Returns the number of steps mapped to pixel indices so far, counted over all threads
+	 *
+	 * @return
+	 */
+	long getMappedSteps() {
+		return mappedSteps.sum();
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	@Override
+	public int getIterationCount() {
+		return iterationCount;
+	}
+}
@@ -0,0 +1,49 @@
+package org.stegosuite.image.embedding.point;
+
+import java.awt.*;
+import java.util.NoSuchElementException;
+
+/**
+ * A keyed sequence of pixels used for data spreading. Pixels are addressed by their index in
+ * row-major order ({@code y * width + x}). Every iteration visits each pixel that is not filtered
+ * exactly once, after which the next iteration starts in a new order.
+ */
+public interface PointSequence {
+
+	/**
+	 * Returns the pixel index ({@code y * width + x}) of the next random point
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 */
+	int nextIndex()
+			throws NoSuchElementException;
+
+	/**
+	 * Returns the next random point
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 */
+	Point nextPoint()
+			throws NoSuchElementException;
+
+	/**
+	 * Returns true if the passed point has been generated in the current iteration phase or will
+	 * never be generated because it is filtered, otherwise false
+	 *
+	 * @param point
+	 * @return
+	 */
+	boolean wasGenerated(Point point);
+
+	int getMaxIterations();
+
+	/**
+	 * Returns the number of iterations that have been started, i.e. the LSB that the current
+	 * point belongs to
+	 *
+	 * @return
+	 */
+	int getIterationCount();
+}
@@ -0,0 +1,55 @@
+package org.stegosuite.image.embedding.point;
+
+import org.stegosuite.image.format.ImageFormat;
+
+/**
+ * The ways payload bits can be spread across the pixels of an image. The mode is recorded in the
+ * payload header, see {@link org.stegosuite.model.payload.Payload#HEADER_MAGIC}.
+ */
+public enum SpreadingMode {
+
+	/**
+	 * Shuffled list of all unfiltered points, see {@link PointGenerator}. Steganograms using this
+	 * mode carry the original header without a version.
+	 */
+	SHUFFLE(0),
+
+	/**
+	 * Keyed permutation of the pixel indices, see {@link PointPermutation}
+	 */
+	PERMUTATION(1);
+
+	private final int headerVersion;
+
+	SpreadingMode(int headerVersion) {
+		this.headerVersion = headerVersion;
+	}
+
+	/**
+	 * Returns the header version that marks payloads spread in this mode, 0 if the header carries
+	 * no version
+	 *
+	 * @return
+	 */
+	public int getHeaderVersion() {
+		return headerVersion;
+	}
+
+	/**
+	 * Creates the point sequence that spreads the payload in this mode
+	 *
+	 * @param image The image to generate points for
+	 * @param key The key to seed the sequence with. If key is null, pixels are visited in
+	 *        row-major order
+	 * @param pointFilter The filter to apply in order to skip certain pixels
+	 * @return
+	 */
+	public <T extends ImageFormat> PointSequence newPointSequence(T image, String key, PointFilter<T> pointFilter) {
+		switch (this) {
+		case PERMUTATION:
+			return new PointPermutation<>(image, key, pointFilter);
+		default:
+			return new PointGenerator<>(image, key, pointFilter);
+		}
+	}
+}
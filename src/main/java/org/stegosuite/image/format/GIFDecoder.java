@@ -0,0 +1,328 @@
+package org.stegosuite.image.format;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads all frames of a GIF file into byte index planes
+ */
+class GIFDecoder {
+
+	private static final int EXTENSION_INTRODUCER = 0x21;
+
+	private static final int IMAGE_SEPARATOR = 0x2C;
+
+	private static final int TRAILER = 0x3B;
+
+	private static final int GRAPHIC_CONTROL_LABEL = 0xF9;
+
+	private static final int MAX_CODE_SIZE = 12;
+
+	private static final int MAX_CODES = 1 << MAX_CODE_SIZE;
+
+	private final byte[] data;
+
+	private int position = 0;
+
+	private GIFDecoder(byte[] data) {
+		this.data = data;
+	}
+
+	/**
+	 * Decodes a GIF file
+	 *
+	 * @param data The content of the file
+	 * @return
+	 * @throws IOException if the data isn't a GIF or has no image
+	 */
+	static GIFStream decode(byte[] data)
+			throws IOException {
+		return new GIFDecoder(data).readStream();
+	}
+
+	private GIFStream readStream()
+			throws IOException {
+		GIFStream stream = new GIFStream();
+
+		String signature = new String(readBytes(6), StandardCharsets.US_ASCII);
+		if (!signature.startsWith("GIF")) {
+			throw new IOException("Not a GIF file");
+		}
+		stream.version = signature.substring(3);
+
+		// Logical Screen Descriptor
+		stream.width = readShort();
+		stream.height = readShort();
+		int packedFields = readByte();
+		stream.colorResolution = ((packedFields >> 4) & 0x7) + 1;
+		stream.backgroundIndex = readByte();
+		stream.pixelAspectRatio = readByte();
+		if ((packedFields & 0x80) != 0) {
+			stream.globalColorTable = readBytes(3 * (2 << (packedFields & 0x7)));
+		}
+
+		GIFStream.Frame frame = new GIFStream.Frame();
+		loop: while (position < data.length) {
+			switch (readByte()) {
+			case EXTENSION_INTRODUCER:
+				readExtension(frame);
+				break;
+			case IMAGE_SEPARATOR:
+				readImage(frame);
+				stream.frames.add(frame);
+				frame = new GIFStream.Frame();
+				break;
+			case TRAILER:
+				break loop;
+			default:
+				// Garbage after the last block, stop at the data we have
+				if (stream.frames.isEmpty()) {
+					throw new IOException("Unexpected block at byte " + (position - 1));
+				}
+				break loop;
+			}
+		}
+
+		if (stream.frames.isEmpty()) {
+			throw new IOException("GIF file has no image");
+		}
+		stream.trailingExtensions.addAll(frame.extensions);
+		return stream;
+	}
+
+	/**
+	 * Reads an extension block. The Graphic Control Extension is stored in the fields of the
+	 * frame, other extensions as they are.
+	 *
+	 * @param frame The frame the extension precedes
+	 * @throws IOException
+	 */
+	private void readExtension(GIFStream.Frame frame)
+			throws IOException {
+		int start = position - 1;
+		int label = readByte();
+		if (label == GRAPHIC_CONTROL_LABEL) {
+			int blockSize = readByte();
+			int end = position + blockSize;
+			int packedFields = readByte();
+			frame.hasGraphicControl = true;
+			frame.disposalMethod = (packedFields >> 2) & 0x7;
+			frame.userInput = (packedFields & 0x2) != 0;
+			frame.delayTime = readShort();
+			int transparentIndex = readByte();
+			frame.transparentIndex = (packedFields & 0x1) != 0 ? transparentIndex : -1;
+			position = end;
+			skipSubBlocks();
+		} else {
+			skipSubBlocks();
+			frame.extensions.add(Arrays.copyOfRange(data, start, Math.min(position, data.length)));
+		}
+	}
+
+	/**
+	 * Reads the Image Descriptor, the local color table and the image data
+	 *
+	 * @param frame
+	 * @throws IOException
+	 */
+	private void readImage(GIFStream.Frame frame)
+			throws IOException {
+		frame.left = readShort();
+		frame.top = readShort();
+		frame.width = readShort();
+		frame.height = readShort();
+		int packedFields = readByte();
+		frame.interlaced = (packedFields & 0x40) != 0;
+		if ((packedFields & 0x80) != 0) {
+			frame.localColorTable = readBytes(3 * (2 << (packedFields & 0x7)));
+		}
+
+		int minCodeSize = readByte();
+		if (minCodeSize < 1 || minCodeSize >= MAX_CODE_SIZE) {
+			throw new IOException("Invalid LZW code size " + minCodeSize);
+		}
+		byte[] indices = new byte[frame.width * frame.height];
+		decodeLZW(readSubBlocks(), minCodeSize, indices);
+		frame.indices = frame.interlaced ? deinterlace(indices, frame.width, frame.height) : indices;
+	}
+
+	/**
+	 * Decodes LZW compressed pixels. Decoding stops at the end of information code, the end of the
+	 * data or once all pixels are decoded, whatever comes first.
+	 *
+	 * @param compressed
+	 * @param minCodeSize
+	 * @param indices The decoded pixels
+	 */
+	static void decodeLZW(byte[] compressed, int minCodeSize, byte[] indices) {
+		int clearCode = 1 << minCodeSize;
+		int endCode = clearCode + 1;
+
+		// The string of each code is the string of its prefix code followed by its suffix
+		short[] prefixes = new short[MAX_CODES];
+		byte[] suffixes = new byte[MAX_CODES];
+		byte[] stack = new byte[MAX_CODES + 1];
+		for (int code = 0; code < clearCode; code++) {
+			suffixes[code] = (byte) code;
+		}
+
+		int codeSize = minCodeSize + 1;
+		int codeMask = (1 << codeSize) - 1;
+		int nextCode = clearCode + 2;
+		int oldCode = -1;
+		byte firstByte = 0;
+
+		int bits = 0;
+		int bitCount = 0;
+		int in = 0;
+		int out = 0;
+
+		while (out < indices.length) {
+			while (bitCount < codeSize) {
+				if (in == compressed.length) {
+					return;
+				}
+				bits |= (compressed[in++] & 0xFF) << bitCount;
+				bitCount += 8;
+			}
+			int code = bits & codeMask;
+			bits >>>= codeSize;
+			bitCount -= codeSize;
+
+			if (code == clearCode) {
+				codeSize = minCodeSize + 1;
+				codeMask = (1 << codeSize) - 1;
+				nextCode = clearCode + 2;
+				oldCode = -1;
+				continue;
+			}
+			if (code == endCode) {
+				return;
+			}
+			if (oldCode == -1) {
+				if (code > clearCode) {
+					return;
+				}
+				firstByte = suffixes[code];
+				indices[out++] = firstByte;
+				oldCode = code;
+				continue;
+			}
+			if (code > nextCode) {
+				// Corrupt data
+				return;
+			}
+
+			int inCode = code;
+			int top = 0;
+			if (code == nextCode) {
+				stack[top++] = firstByte;
+				code = oldCode;
+			}
+			while (code > clearCode) {
+				stack[top++] = suffixes[code];
+				code = prefixes[code];
+			}
+			firstByte = suffixes[code];
+			stack[top++] = firstByte;
+
+			if (nextCode < MAX_CODES) {
+				prefixes[nextCode] = (short) oldCode;
+				suffixes[nextCode] = firstByte;
+				nextCode++;
+				if ((nextCode & codeMask) == 0 && nextCode < MAX_CODES) {
+					codeSize++;
+					codeMask = (1 << codeSize) - 1;
+				}
+			}
+			oldCode = inCode;
+
+			while (top > 0 && out < indices.length) {
+				indices[out++] = stack[--top];
+			}
+		}
+	}
+
+	/**
+	 * Puts the rows of an interlaced image into their order. Interlaced images store every 8th row
+	 * starting at 0, every 8th row starting at 4, every 4th row starting at 2 and then every 2nd
+	 * row starting at 1.
+	 *
+	 * @param indices
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static byte[] deinterlace(byte[] indices, int width, int height) {
+		byte[] rows = new byte[indices.length];
+		int source = 0;
+		int[][] passes = { { 0, 8 }, { 4, 8 }, { 2, 4 }, { 1, 2 } };
+		for (int[] pass : passes) {
+			for (int y = pass[0]; y < height; y += pass[1]) {
+				System.arraycopy(indices, source, rows, y * width, width);
+				source += width;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Reads data sub-blocks up to the block terminator
+	 *
+	 * @return The concatenated data
+	 */
+	private byte[] readSubBlocks() {
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		while (position < data.length) {
+			int length = data[position++] & 0xFF;
+			if (length == 0) {
+				break;
+			}
+			length = Math.min(length, data.length - position);
+			blocks.write(data, position, length);
+			position += length;
+		}
+		return blocks.toByteArray();
+	}
+
+	private void skipSubBlocks() {
+		while (position < data.length) {
+			int length = data[position++] & 0xFF;
+			if (length == 0) {
+				break;
+			}
+			position += length;
+		}
+	}
+
+	private int readByte()
+			throws IOException {
+		if (position >= data.length) {
+			throw new IOException("Unexpected end of GIF file");
+		}
+		return data[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads an unsigned 16 bit value, least significant byte first
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private int readShort()
+			throws IOException {
+		return readByte() | readByte() << 8;
+	}
+
+	private byte[] readBytes(int length)
+			throws IOException {
+		if (position + length > data.length) {
+			throw new IOException("Unexpected end of GIF file");
+		}
+		byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+		position += length;
+		return bytes;
+	}
+}
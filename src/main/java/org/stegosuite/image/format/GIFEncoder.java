@@ -0,0 +1,316 @@
+package org.stegosuite.image.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes GIF files from byte index planes
+ */
+class GIFEncoder {
+
+	private static final int MAX_CODE_SIZE = 12;
+
+	private static final int MAX_CODES = 1 << MAX_CODE_SIZE;
+
+	/**
+	 * Size of the hash table of the LZW encoder, a prime larger than MAX_CODES so that the table
+	 * is at most 80% full
+	 */
+	private static final int HASH_SIZE = 5003;
+
+	private final OutputStream out;
+
+	private GIFEncoder(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Encodes a GIF file. Frames without local color table use the global color table.
+	 *
+	 * @param stream
+	 * @param out
+	 * @throws IOException
+	 */
+	static void encode(GIFStream stream, OutputStream out)
+			throws IOException {
+		new GIFEncoder(out).writeStream(stream);
+	}
+
+	/**
+	 * Returns a color table of 2 to 256 entries, a power of two, for the colors. Missing entries
+	 * repeat the first color, so that the table has no colors the image doesn't have.
+	 *
+	 * @param reds
+	 * @param greens
+	 * @param blues
+	 * @param colorCount
+	 * @return The table as RGB triples
+	 */
+	static byte[] createColorTable(byte[] reds, byte[] greens, byte[] blues, int colorCount) {
+		int tableSize = 2;
+		while (tableSize < colorCount) {
+			tableSize <<= 1;
+		}
+		byte[] table = new byte[3 * tableSize];
+		for (int i = 0; i < tableSize; i++) {
+			int color = i < colorCount ? i : 0;
+			table[3 * i] = reds[color];
+			table[3 * i + 1] = greens[color];
+			table[3 * i + 2] = blues[color];
+		}
+		return table;
+	}
+
+	private void writeStream(GIFStream stream)
+			throws IOException {
+		out.write(("GIF" + stream.version).getBytes(StandardCharsets.US_ASCII));
+
+		// Logical Screen Descriptor
+		writeShort(stream.width);
+		writeShort(stream.height);
+		int packedFields = (stream.colorResolution - 1) << 4;
+		if (stream.globalColorTable != null) {
+			packedFields |= 0x80 | (tableBits(stream.globalColorTable) - 1);
+		}
+		out.write(packedFields);
+		out.write(stream.backgroundIndex);
+		out.write(stream.pixelAspectRatio);
+		if (stream.globalColorTable != null) {
+			out.write(stream.globalColorTable);
+		}
+
+		for (GIFStream.Frame frame : stream.frames) {
+			writeFrame(frame, stream.globalColorTable);
+		}
+		for (byte[] extension : stream.trailingExtensions) {
+			out.write(extension);
+		}
+		out.write(0x3B);
+	}
+
+	private void writeFrame(GIFStream.Frame frame, byte[] globalColorTable)
+			throws IOException {
+		for (byte[] extension : frame.extensions) {
+			out.write(extension);
+		}
+
+		if (frame.hasGraphicControl || frame.transparentIndex >= 0) {
+			out.write(0x21);
+			out.write(0xF9);
+			out.write(4);
+			int packedFields = (frame.disposalMethod & 0x7) << 2;
+			if (frame.userInput) {
+				packedFields |= 0x2;
+			}
+			if (frame.transparentIndex >= 0) {
+				packedFields |= 0x1;
+			}
+			out.write(packedFields);
+			writeShort(frame.delayTime);
+			out.write(Math.max(frame.transparentIndex, 0));
+			out.write(0);
+		}
+
+		// Image Descriptor
+		byte[] colorTable = frame.localColorTable != null ? frame.localColorTable : globalColorTable;
+		int bitsPerPixel = colorTable != null ? tableBits(colorTable) : 8;
+		out.write(0x2C);
+		writeShort(frame.left);
+		writeShort(frame.top);
+		writeShort(frame.width);
+		writeShort(frame.height);
+		int packedFields = frame.interlaced ? 0x40 : 0;
+		if (frame.localColorTable != null) {
+			packedFields |= 0x80 | (bitsPerPixel - 1);
+		}
+		out.write(packedFields);
+		if (frame.localColorTable != null) {
+			out.write(frame.localColorTable);
+		}
+
+		byte[] indices = frame.interlaced ? interlace(frame.indices, frame.width, frame.height) : frame.indices;
+		int minCodeSize = Math.max(bitsPerPixel, 2);
+		out.write(minCodeSize);
+		new LZWEncoder(minCodeSize).encode(indices);
+	}
+
+	/**
+	 * Returns the number of bits of the indices of a color table
+	 *
+	 * @param colorTable
+	 * @return
+	 */
+	private static int tableBits(byte[] colorTable) {
+		return Integer.numberOfTrailingZeros(colorTable.length / 3);
+	}
+
+	/**
+	 * Puts the rows into the interlaced order, see {@link GIFDecoder#deinterlace(byte[], int, int)}
+	 *
+	 * @param indices
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static byte[] interlace(byte[] indices, int width, int height) {
+		byte[] rows = new byte[indices.length];
+		int target = 0;
+		int[][] passes = { { 0, 8 }, { 4, 8 }, { 2, 4 }, { 1, 2 } };
+		for (int[] pass : passes) {
+			for (int y = pass[0]; y < height; y += pass[1]) {
+				System.arraycopy(indices, y * width, rows, target, width);
+				target += width;
+			}
+		}
+		return rows;
+	}
+
+	private void writeShort(int value)
+			throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >> 8) & 0xFF);
+	}
+
+	/**
+	 * Variable code size LZW compression as used by GIF. The strings of the code table are found
+	 * in an open addressing hash table keyed by the code of the prefix and the appended pixel. When
+	 * the table is full, a clear code starts a new table.
+	 */
+	private class LZWEncoder {
+
+		private final int minCodeSize;
+
+		private final int clearCode;
+
+		private final int endCode;
+
+		/**
+		 * Key of each hash table slot, (pixel << MAX_CODE_SIZE) + prefix code, -1 if empty
+		 */
+		private final int[] hashKeys = new int[HASH_SIZE];
+
+		/**
+		 * Code of the string of each hash table slot
+		 */
+		private final int[] hashCodes = new int[HASH_SIZE];
+
+		private int codeSize;
+
+		private int nextCode;
+
+		private boolean clearing = false;
+
+		private int bits = 0;
+
+		private int bitCount = 0;
+
+		/**
+		 * The data sub-block being filled, preceded by its length
+		 */
+		private final byte[] block = new byte[256];
+
+		private int blockLength = 0;
+
+		LZWEncoder(int minCodeSize) {
+			this.minCodeSize = minCodeSize;
+			this.clearCode = 1 << minCodeSize;
+			this.endCode = clearCode + 1;
+		}
+
+		void encode(byte[] indices)
+				throws IOException {
+			Arrays.fill(hashKeys, -1);
+			codeSize = minCodeSize + 1;
+			nextCode = clearCode + 2;
+			writeCode(clearCode);
+
+			if (indices.length > 0) {
+				int prefix = indices[0] & 0xFF;
+				next: for (int i = 1; i < indices.length; i++) {
+					int pixel = indices[i] & 0xFF;
+					int key = (pixel << MAX_CODE_SIZE) + prefix;
+					int slot = ((pixel << 4) ^ prefix) % HASH_SIZE;
+
+					// Probe with a step depending on the first slot until the key or an empty slot
+					// turns up
+					int step = slot == 0 ? 1 : HASH_SIZE - slot;
+					while (hashKeys[slot] >= 0) {
+						if (hashKeys[slot] == key) {
+							prefix = hashCodes[slot];
+							continue next;
+						}
+						slot -= step;
+						if (slot < 0) {
+							slot += HASH_SIZE;
+						}
+					}
+
+					writeCode(prefix);
+					prefix = pixel;
+					if (nextCode < MAX_CODES) {
+						hashCodes[slot] = nextCode++;
+						hashKeys[slot] = key;
+					} else {
+						Arrays.fill(hashKeys, -1);
+						nextCode = clearCode + 2;
+						clearing = true;
+						writeCode(clearCode);
+					}
+				}
+				writeCode(prefix);
+			}
+			writeCode(endCode);
+
+			if (bitCount > 0) {
+				writeByte(bits & 0xFF);
+			}
+			flushBlock();
+			out.write(0);
+		}
+
+		/**
+		 * Writes a code with the current code size and grows the code size once the next code
+		 * doesn't fit anymore. The decoder grows its code size one code later, as it adds the
+		 * code of a string when it reads the code after it.
+		 *
+		 * @param code
+		 * @throws IOException
+		 */
+		private void writeCode(int code)
+				throws IOException {
+			bits |= code << bitCount;
+			bitCount += codeSize;
+			while (bitCount >= 8) {
+				writeByte(bits & 0xFF);
+				bits >>>= 8;
+				bitCount -= 8;
+			}
+
+			if (clearing) {
+				codeSize = minCodeSize + 1;
+				clearing = false;
+			} else if (nextCode > (1 << codeSize) - 1 && codeSize < MAX_CODE_SIZE) {
+				codeSize++;
+			}
+		}
+
+		private void writeByte(int b)
+				throws IOException {
+			block[++blockLength] = (byte) b;
+			if (blockLength == 255) {
+				flushBlock();
+			}
+		}
+
+		private void flushBlock()
+				throws IOException {
+			if (blockLength > 0) {
+				block[0] = (byte) blockLength;
+				out.write(block, 0, blockLength + 1);
+				blockLength = 0;
+			}
+		}
+	}
+}
@@ -6,18 +6,22 @@ import org.stegosuite.model.exception.SteganoImageException;
 import org.stegosuite.util.ColorDistance;
 import org.stegosuite.util.ColorUtils;
 
-import javax.imageio.*;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.List;
 
-import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Collectors.toList;
 
 public class GIFImage
 		extends ImageFormat {
@@ -26,39 +30,127 @@ public class GIFImage
 
 	public static final String FILE_EXTENSION = "gif";
 
+	/**
+	 * The color index of each pixel, one byte per pixel in rows. This is the data buffer of the
+	 * BufferedImage, so changes show up in the image right away.
+	 */
+	private byte[] indices = null;
+
+	/**
+	 * Cached copy of the indices as returned by getPixels()
+	 */
 	private int[] pixels = null;
 
 	private List<Color> colorTable = null;
 
+	/**
+	 * Number of pixels referencing each index of the color table
+	 */
+	private int[] indexHistogram = null;
+
+	/**
+	 * Set for the indices of the color table that are referenced by at least one pixel
+	 */
+	private BitSet referencedIndices = null;
+
 	private Map<ColorDistance, List<Color>> sortedColorTables = new HashMap<>();
 
+	private Map<ColorDistance, IndexedPalette> indexedPalettes = new HashMap<>();
+
+	/**
+	 * The frames of an animated GIF, starting with this image. Null if the GIF has a single frame.
+	 */
+	private List<GIFImage> frames = null;
+
+	/**
+	 * Logical screen, global color table and trailing extensions of the GIF, only set for animated
+	 * GIFs. Its list of frames is empty.
+	 */
+	private GIFStream streamMetadata = null;
+
 	/**
-	 * Custom parameters for encoding GIF images
+	 * Position, disposal, delay and extensions of this frame, only set for the frames of animated
+	 * GIFs. Its pixels and color table are not set.
 	 */
-	private static class GIFImageWriteParam
-			extends ImageWriteParam {
+	private GIFStream.Frame frameMetadata = null;
 
-		GIFImageWriteParam() {
-			super(null);
-			canWriteCompressed = true;
-			canWriteProgressive = true;
-			compressionTypes = new String[] { "LZW", "lzw" };
-			compressionType = compressionTypes[0];
-			// Disable interlacing to decrease file size
-			progressiveMode = ImageWriteParam.MODE_DISABLED;
+	/**
+	 * Loads all frames of the GIF. The first frame becomes the image, the other frames are only
+	 * available through getFrames().
+	 */
+	@Override
+	public void load(File gifFile)
+			throws SteganoImageException {
+
+		LOG.info("Loading GIF image from {}", gifFile.getAbsolutePath());
+		this.file = gifFile;
+
+		GIFStream stream;
+		try {
+			stream = GIFDecoder.decode(Files.readAllBytes(gifFile.toPath()));
+		} catch (IOException e) {
+			throw new SteganoImageException(e.getMessage());
+		}
+
+		GIFStream.Frame firstFrame = stream.frames.get(0);
+		setIndices(firstFrame.indices, firstFrame.width, firstFrame.height, createColorModel(stream, firstFrame));
+		frames = null;
+		streamMetadata = null;
+		frameMetadata = null;
+
+		if (stream.frames.size() > 1) {
+			LOG.debug("Reading {} frames of animated GIF", stream.frames.size());
+			frames = new ArrayList<>(stream.frames.size());
+			for (GIFStream.Frame streamFrame : stream.frames) {
+				GIFImage frame = this;
+				if (streamFrame != firstFrame) {
+					frame = new GIFImage();
+					frame.file = gifFile;
+					frame.setIndices(streamFrame.indices, streamFrame.width, streamFrame.height,
+							createColorModel(stream, streamFrame));
+				}
+				frame.frameMetadata = streamFrame.copyMetadata();
+				frames.add(frame);
+			}
+			stream.frames.clear();
+			streamMetadata = stream;
 		}
+	}
 
-		@Override
-		public void setCompressionMode(int mode) {
-			if (mode == MODE_DISABLED) {
-				throw new UnsupportedOperationException("MODE_DISABLED is not supported.");
+	/**
+	 * Creates the color model of a frame from its local or the global color table
+	 *
+	 * @param stream
+	 * @param frame
+	 * @return
+	 */
+	private static IndexColorModel createColorModel(GIFStream stream, GIFStream.Frame frame) {
+		byte[] table = frame.localColorTable != null ? frame.localColorTable : stream.globalColorTable;
+		if (table == null) {
+			// No color table at all, fall back to gray levels
+			table = new byte[3 * 256];
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (byte) (i / 3);
 			}
-			super.setCompressionMode(mode);
 		}
+
+		int colorCount = table.length / 3;
+		byte[] reds = new byte[colorCount];
+		byte[] greens = new byte[colorCount];
+		byte[] blues = new byte[colorCount];
+		for (int i = 0; i < colorCount; i++) {
+			reds[i] = table[3 * i];
+			greens[i] = table[3 * i + 1];
+			blues[i] = table[3 * i + 2];
+		}
+		int transparentIndex = frame.transparentIndex < colorCount ? frame.transparentIndex : -1;
+		return new IndexColorModel(8, colorCount, reds, greens, blues, transparentIndex);
 	}
 
 	/**
-	 * Saves the modified GIF to file
+	 * Saves the modified GIF to file. A single image is written with a global color table and
+	 * without interlacing, the frames of an animated GIF keep their metadata and are written with
+	 * local color tables.
 	 */
 	@Override
 	public void save(File gifFile)
@@ -66,23 +158,109 @@ public class GIFImage
 
 		LOG.info("Saving GIF image to {}", gifFile.getAbsolutePath());
 
-		ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
-		ImageWriter writer = ImageIO.getImageWriters(type, FILE_EXTENSION).next();
-
-		try (ImageOutputStream stream = ImageIO.createImageOutputStream(gifFile)) {
-			// gifFile.delete();
-			writer.setOutput(stream);
-			try {
-				writer.write(null, new IIOImage(image, null, null), new GIFImageWriteParam());
-			} finally {
-				writer.dispose();
-				stream.flush();
+		GIFStream stream = new GIFStream();
+		if (frames != null) {
+			stream.version = streamMetadata.version;
+			stream.width = streamMetadata.width;
+			stream.height = streamMetadata.height;
+			stream.colorResolution = streamMetadata.colorResolution;
+			stream.backgroundIndex = streamMetadata.backgroundIndex;
+			stream.pixelAspectRatio = streamMetadata.pixelAspectRatio;
+			stream.globalColorTable = streamMetadata.globalColorTable;
+			stream.trailingExtensions.addAll(streamMetadata.trailingExtensions);
+			for (GIFImage frame : frames) {
+				GIFStream.Frame streamFrame = frame.frameMetadata.copyMetadata();
+				frame.fillFrame(streamFrame);
+				// A local color table equal to the global one is left out
+				if (Arrays.equals(streamFrame.localColorTable, stream.globalColorTable)) {
+					streamFrame.localColorTable = null;
+				}
+				stream.frames.add(streamFrame);
 			}
+		} else {
+			GIFStream.Frame streamFrame = new GIFStream.Frame();
+			fillFrame(streamFrame);
+			stream.width = getWidth();
+			stream.height = getHeight();
+			stream.globalColorTable = streamFrame.localColorTable;
+			streamFrame.localColorTable = null;
+			stream.frames.add(streamFrame);
+		}
+
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(gifFile.toPath()))) {
+			GIFEncoder.encode(stream, out);
 		} catch (IOException e) {
 			throw new SteganoImageException(e.getMessage());
 		}
 	}
 
+	/**
+	 * Sets the size, pixels, color table and transparent index of a frame to write from this image
+	 *
+	 * @param frame
+	 */
+	private void fillFrame(GIFStream.Frame frame) {
+		IndexColorModel colorModel = (IndexColorModel) image.getColorModel();
+		int colorCount = colorModel.getMapSize();
+		byte[] reds = new byte[colorCount];
+		byte[] greens = new byte[colorCount];
+		byte[] blues = new byte[colorCount];
+		colorModel.getReds(reds);
+		colorModel.getGreens(greens);
+		colorModel.getBlues(blues);
+
+		frame.width = getWidth();
+		frame.height = getHeight();
+		frame.indices = indices;
+		frame.localColorTable = GIFEncoder.createColorTable(reds, greens, blues, colorCount);
+		frame.transparentIndex = colorModel.getTransparentPixel();
+	}
+
+	/**
+	 * Returns true if the GIF has more than one frame
+	 *
+	 * @return
+	 */
+	public boolean isAnimated() {
+		return frames != null;
+	}
+
+	/**
+	 * Returns the frames of an animated GIF, starting with this image, or only this image if the
+	 * GIF isn't animated
+	 *
+	 * @return
+	 */
+	public List<GIFImage> getFrames() {
+		return frames == null ? Collections.singletonList(this) : Collections.unmodifiableList(frames);
+	}
+
+	/**
+	 * Clones all frames of an animated GIF. The metadata is shared as it's never modified.
+	 */
+	@Override
+	public GIFImage clone(int imageType) {
+		GIFImage clonedImage = (GIFImage) super.clone(imageType);
+		clonedImage.frameMetadata = frameMetadata;
+		if (frames != null) {
+			clonedImage.streamMetadata = streamMetadata;
+			clonedImage.frames = new ArrayList<>(frames.size());
+			for (GIFImage frame : frames) {
+				GIFImage clonedFrame = clonedImage;
+				if (frame != this) {
+					clonedFrame = frame.clone(frame.image.getType());
+				}
+				clonedImage.frames.add(clonedFrame);
+			}
+		}
+		return clonedImage;
+	}
+
+	@Override
+	public GIFImage clone() {
+		return clone(image.getType());
+	}
+
 	/**
 	 *
 	 */
@@ -92,19 +270,91 @@ public class GIFImage
 	}
 
 	/**
-	 * Sets the internal BufferedImage instance
+	 * Sets the internal BufferedImage instance. Images that don't store their pixels as one byte
+	 * per pixel are converted.
 	 */
 	@Override
 	public void setBufferedImage(BufferedImage image) {
-		super.setBufferedImage(image);
+		if (!(image.getColorModel() instanceof IndexColorModel)) {
+			throw new IllegalArgumentException("GIF images need an indexed color model");
+		}
+
+		if (isIndexPlane(image)) {
+			super.setBufferedImage(image);
+			indices = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			clearCaches();
+			return;
+		}
+
+		int w = image.getWidth();
+		int h = image.getHeight();
+		int[] samples = image.getRaster().getPixels(0, 0, w, h, (int[]) null);
+		byte[] imageIndices = new byte[samples.length];
+		for (int i = 0; i < samples.length; i++) {
+			imageIndices[i] = (byte) samples[i];
+		}
+
+		IndexColorModel colorModel = (IndexColorModel) image.getColorModel();
+		int colorCount = colorModel.getMapSize();
+		byte[] reds = new byte[colorCount];
+		byte[] greens = new byte[colorCount];
+		byte[] blues = new byte[colorCount];
+		colorModel.getReds(reds);
+		colorModel.getGreens(greens);
+		colorModel.getBlues(blues);
+		setIndices(imageIndices, w, h,
+				new IndexColorModel(8, colorCount, reds, greens, blues, colorModel.getTransparentPixel()));
+	}
+
+	/**
+	 * Sets the image to a BufferedImage backed by the indices
+	 *
+	 * @param imageIndices
+	 * @param w
+	 * @param h
+	 * @param colorModel A color model with 8 bits per pixel
+	 */
+	private void setIndices(byte[] imageIndices, int w, int h, IndexColorModel colorModel) {
+		WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(imageIndices, imageIndices.length), w,
+				h, w, 1, new int[] { 0 }, null);
+		super.setBufferedImage(new BufferedImage(colorModel, raster, false, null));
+		indices = imageIndices;
+		clearCaches();
+	}
+
+	/**
+	 * Returns true if the image stores the indices of its pixels in a byte array of width * height
+	 * bytes without gaps
+	 *
+	 * @param image
+	 * @return
+	 */
+	private static boolean isIndexPlane(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		if (image.getColorModel().getPixelSize() != 8 || !(raster.getDataBuffer() instanceof DataBufferByte)
+				|| !(raster.getSampleModel() instanceof ComponentSampleModel) || raster.getParent() != null
+				|| raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+			return false;
+		}
+		ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+		DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+		return dataBuffer.getNumBanks() == 1 && dataBuffer.getOffset() == 0
+				&& dataBuffer.getSize() == image.getWidth() * image.getHeight() && sampleModel.getPixelStride() == 1
+				&& sampleModel.getScanlineStride() == image.getWidth() && sampleModel.getBandOffsets()[0] == 0;
+	}
+
+	private void clearCaches() {
 		pixels = null;
 		colorTable = null;
+		indexHistogram = null;
+		referencedIndices = null;
 		sortedColorTables.clear();
+		indexedPalettes.clear();
 	}
 
 	/**
-	 * Returns up to 256 colors from the GIF color table. The black padding colors at the end of the
-	 * table are skipped.
+	 * Returns up to 256 colors from the GIF color table, including the black padding colors at the
+	 * end of the table. The transparent color of a frame of an animated GIF has an alpha of 0.
 	 *
 	 * @return
 	 */
@@ -123,17 +373,20 @@ public class GIFImage
 			colorModel.getGreens(greens);
 			colorModel.getBlues(blues);
 
+			// The transparent color is opaque in the table of a single image, as before: it is
+			// embedded into like any color and dropped on save once the table has been replaced.
+			// Only frames keep their transparent color out of the embedding.
+			int transparentIndex = frameMetadata == null ? -1 : colorModel.getTransparentPixel();
+
 			colorTable = new ArrayList<>(colorCount);
 			for (int i = 0; i < reds.length; i++) {
-				colorTable.add(new Color(reds[i] & 0xFF, greens[i] & 0xFF, blues[i] & 0xFF));
+				colorTable.add(
+						new Color(reds[i] & 0xFF, greens[i] & 0xFF, blues[i] & 0xFF, i == transparentIndex ? 0 : 255));
 			}
 
-			// Remove trailing blacks if they are unreferenced
-			Set<Integer> referencedColors = Arrays.stream(getPixels()).boxed().collect(toSet());
-			while (colorTable.size() > 1 && colorTable.get(colorTable.size() - 1).equals(Color.BLACK)
-					&& referencedColors.contains(colorTable.get(colorTable.size() - 1))) {
-				colorTable.remove(colorTable.size() - 1);
-			}
+			// Black padding colors at the end of the table are kept even if they are unreferenced.
+			// The sorted color table is computed from all colors, removing them would break the
+			// extraction from existing images.
 
 			LOG.debug("{} colors extracted from GIF color table in {} ms", colorTable.size(),
 					(System.nanoTime() - startTime) / 1000000);
@@ -143,7 +396,8 @@ public class GIFImage
 	}
 
 	/**
-	 * Returns the current color table sorted by the specified color distance
+	 * Returns the current color table sorted by the specified color distance. A transparent color
+	 * is left out, so that no pixel is made transparent or opaque when embedding.
 	 *
 	 * @param colorDistance
 	 * @return
@@ -151,14 +405,16 @@ public class GIFImage
 	public List<Color> getSortedColorTable(ColorDistance colorDistance) {
 		if (!sortedColorTables.containsKey(colorDistance)) {
 			long startTime = System.nanoTime();
-			sortedColorTables.put(colorDistance, ColorUtils.sortColors(getColorTable(), colorDistance));
+			List<Color> opaqueColors = getColorTable().stream().filter(c -> c.getAlpha() != 0).collect(toList());
+			sortedColorTables.put(colorDistance, ColorUtils.sortColors(opaqueColors, colorDistance));
 			LOG.debug("Sorted color table in {} ms", (System.nanoTime() - startTime) / 1000000);
 		}
 		return new ArrayList<>(sortedColorTables.get(colorDistance));
 	}
 
 	/**
-	 * Overwrites the existing color table with a new color table.
+	 * Overwrites the existing color table with a new color table. A color with an alpha of 0
+	 * becomes the transparent color. The pixels keep their indices.
 	 *
 	 * @param table
 	 */
@@ -168,21 +424,114 @@ public class GIFImage
 		byte[] reds = new byte[table.size()];
 		byte[] greens = new byte[table.size()];
 		byte[] blues = new byte[table.size()];
+		int transparentIndex = -1;
 
 		for (int i = 0; i < table.size(); i++) {
 			Color color = table.get(i);
 			reds[i] = (byte) color.getRed();
 			greens[i] = (byte) color.getGreen();
 			blues[i] = (byte) color.getBlue();
+			if (color.getAlpha() == 0 && transparentIndex == -1) {
+				transparentIndex = i;
+			}
 		}
 
-		IndexColorModel colorModel = new IndexColorModel(8, table.size(), reds, greens, blues);
-		WritableRaster raster = colorModel.createCompatibleWritableRaster(getWidth(), getHeight());
-		raster.setPixels(0, 0, getWidth(), getHeight(), getPixels());
-		image = new BufferedImage(colorModel, raster, image.isAlphaPremultiplied(), null);
+		// The new image shares the raster with the old one, the pixels aren't copied
+		IndexColorModel colorModel = new IndexColorModel(8, table.size(), reds, greens, blues, transparentIndex);
+		image = new BufferedImage(colorModel, image.getRaster(), false, null);
+		imageData = null;
 
 		colorTable = null;
+		indexHistogram = null;
+		referencedIndices = null;
 		sortedColorTables.clear();
+		indexedPalettes.clear();
+	}
+
+	/**
+	 * Overwrites the color table and moves every pixel to the index of its color in the new color
+	 * table, in a single pass over the pixels. The counts of the index histogram are moved along
+	 * instead of being counted again. If the new table has the same colors as the current one, the
+	 * sorted color tables are kept as well.
+	 *
+	 * @param table The new color table
+	 * @param indexMap The index in the new color table of each index of the current color table,
+	 *        see {@link IndexedPalette#remap(List, List)}
+	 */
+	public void remapColorTable(List<Color> table, int[] indexMap) {
+		byte[] lookup = new byte[256];
+		for (int i = 0; i < indexMap.length; i++) {
+			lookup[i] = (byte) indexMap[i];
+		}
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = lookup[indices[i] & 0xFF];
+		}
+		if (pixels != null) {
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] = indexMap[pixels[i]];
+			}
+		}
+
+		int[] histogram = indexHistogram;
+		int[] cachedPixels = pixels;
+		Map<ColorDistance, List<Color>> sortedTables = hasSameColors(table, indexMap)
+				? new HashMap<>(sortedColorTables)
+				: Collections.emptyMap();
+		setColorTable(table);
+		pixels = cachedPixels;
+		sortedColorTables.putAll(sortedTables);
+
+		if (histogram != null) {
+			indexHistogram = new int[table.size()];
+			referencedIndices = new BitSet(table.size());
+			for (int i = 0; i < histogram.length; i++) {
+				if (histogram[i] > 0) {
+					indexHistogram[indexMap[i]] += histogram[i];
+					referencedIndices.set(indexMap[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if every color of the current color table is mapped to the same color of the
+	 * new table and the new table has no other colors. The sorted color tables only depend on the
+	 * distinct colors, so they stay valid.
+	 *
+	 * @param table
+	 * @param indexMap
+	 * @return
+	 */
+	private boolean hasSameColors(List<Color> table, int[] indexMap) {
+		List<Color> currentTable = getColorTable();
+		for (int i = 0; i < currentTable.size(); i++) {
+			if (indexMap[i] < 0 || indexMap[i] >= table.size() || !table.get(indexMap[i]).equals(currentTable.get(i))) {
+				return false;
+			}
+		}
+		return new HashSet<>(currentTable).containsAll(table);
+	}
+
+	/**
+	 * Returns the current color table and its order sorted by the specified color distance as
+	 * lookup tables
+	 *
+	 * @param colorDistance
+	 * @return
+	 */
+	public IndexedPalette getIndexedPalette(ColorDistance colorDistance) {
+		return indexedPalettes.computeIfAbsent(colorDistance,
+				d -> new IndexedPalette(new ArrayList<>(getColorTable()), getSortedColorTable(d)));
+	}
+
+	/**
+	 * Returns the color index of each pixel as unsigned byte. The array is the pixel data of the
+	 * image and must not be changed.
+	 *
+	 * @return
+	 */
+	public byte[] getIndices() {
+		return indices;
 	}
 
 	/**
@@ -197,7 +546,10 @@ public class GIFImage
 
 			LOG.debug("Reading {} pixels from GIF file ({}x{})", w * h, w, h);
 
-			pixels = image.getRaster().getPixels(0, 0, w, h, (int[]) null);
+			pixels = new int[indices.length];
+			for (int i = 0; i < indices.length; i++) {
+				pixels[i] = indices[i] & 0xFF;
+			}
 		}
 
 		return pixels;
@@ -214,9 +566,14 @@ public class GIFImage
 
 		LOG.debug("Writing {} pixels to GIF file ({}x{})", w * h, w, h);
 
-		image.getRaster().setPixels(0, 0, w, h, newPixels);
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = (byte) newPixels[i];
+		}
+		imageData = null;
 
 		pixels = null;
+		indexHistogram = null;
+		referencedIndices = null;
 	}
 
 	/**
@@ -225,6 +582,44 @@ public class GIFImage
 	 * @return
 	 */
 	public Map<Color, Integer> getHistogram() {
-		return ColorUtils.getHistogram(getColorTable(), getPixels());
+		return ColorUtils.getHistogramOfCounts(getColorTable(), computeIndexHistogram());
+	}
+
+	/**
+	 * Returns the number of pixels referencing each index of the color table
+	 *
+	 * @return
+	 */
+	public int[] getIndexHistogram() {
+		return computeIndexHistogram().clone();
+	}
+
+	/**
+	 * Returns true if at least one pixel references the index of the color table
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isReferenced(int index) {
+		computeIndexHistogram();
+		return referencedIndices.get(index);
+	}
+
+	private int[] computeIndexHistogram() {
+		if (indexHistogram == null) {
+			long startTime = System.nanoTime();
+
+			indexHistogram = ColorUtils.countIndices(indices, getColorTable().size());
+			referencedIndices = new BitSet(indexHistogram.length);
+			for (int i = 0; i < indexHistogram.length; i++) {
+				if (indexHistogram[i] > 0) {
+					referencedIndices.set(i);
+				}
+			}
+
+			LOG.debug("Counted {} referenced colors in {} ms", referencedIndices.cardinality(),
+					(System.nanoTime() - startTime) / 1000000);
+		}
+		return indexHistogram;
 	}
 }
@@ -0,0 +1,112 @@
+package org.stegosuite.image.format;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The blocks of a GIF file as read by {@link GIFDecoder} and written by {@link GIFEncoder}, see
+ * https://www.w3.org/Graphics/GIF/spec-gif89a.txt. Pixels are kept as one byte per pixel, color
+ * tables as RGB triples.
+ */
+class GIFStream {
+
+	String version = "89a";
+
+	/**
+	 * Logical screen size
+	 */
+	int width = 0;
+
+	int height = 0;
+
+	/**
+	 * Number of bits per primary color of the original image, 1 to 8
+	 */
+	int colorResolution = 8;
+
+	int backgroundIndex = 0;
+
+	int pixelAspectRatio = 0;
+
+	/**
+	 * The global color table, null if there is none
+	 */
+	byte[] globalColorTable = null;
+
+	final List<Frame> frames = new ArrayList<>();
+
+	/**
+	 * Extension blocks after the last image
+	 */
+	final List<byte[]> trailingExtensions = new ArrayList<>();
+
+	/**
+	 * An image of the GIF with its Graphic Control Extension and the other extension blocks in
+	 * front of it
+	 */
+	static class Frame {
+
+		int left = 0;
+
+		int top = 0;
+
+		int width = 0;
+
+		int height = 0;
+
+		boolean interlaced = false;
+
+		/**
+		 * The local color table, null if the frame uses the global color table
+		 */
+		byte[] localColorTable = null;
+
+		/**
+		 * The color index of each pixel, in rows from top to bottom
+		 */
+		byte[] indices = null;
+
+		boolean hasGraphicControl = false;
+
+		int disposalMethod = 0;
+
+		boolean userInput = false;
+
+		/**
+		 * Delay in 1/100 seconds
+		 */
+		int delayTime = 0;
+
+		/**
+		 * -1 if the frame has no transparent color
+		 */
+		int transparentIndex = -1;
+
+		/**
+		 * Extension blocks other than the Graphic Control Extension, each from the introducer to
+		 * the block terminator
+		 */
+		final List<byte[]> extensions = new ArrayList<>();
+
+		/**
+		 * Copies everything but the pixels and the local color table
+		 *
+		 * @return
+		 */
+		Frame copyMetadata() {
+			Frame copy = new Frame();
+			copy.left = left;
+			copy.top = top;
+			copy.width = width;
+			copy.height = height;
+			copy.interlaced = interlaced;
+			copy.hasGraphicControl = hasGraphicControl;
+			copy.disposalMethod = disposalMethod;
+			copy.userInput = userInput;
+			copy.delayTime = delayTime;
+			copy.transparentIndex = transparentIndex;
+			copy.extensions.addAll(extensions);
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package org.stegosuite.image.format;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The color table of an indexed image together with its sorted order, as lookup tables between
+ * color indices and sorted indices. Colors can be marked as skipped, e.g. because they must not
+ * carry payload bits. Colors missing from the sorted order are always skipped.
+ */
+public class IndexedPalette {
+
+	/**
+	 * The colors in the order of the color table
+	 */
+	private final List<Color> colors;
+
+	/**
+	 * The distinct colors in their sorted order
+	 */
+	private final List<Color> sortedColors;
+
+	/**
+	 * Position of each color of the table in the sorted order, -1 if it's not sorted
+	 */
+	private final int[] toSorted;
+
+	/**
+	 * First index in the color table of each sorted color
+	 */
+	private final int[] fromSorted;
+
+	/**
+	 * Set for the indices of colors that are skipped
+	 */
+	private final boolean[] skip;
+
+	/**
+	 * Constructor
+	 *
+	 * @param colors The color table
+	 * @param sortedColors The distinct colors of the table in their sorted order
+	 */
+	public IndexedPalette(List<Color> colors, List<Color> sortedColors) {
+		this(colors, sortedColors, 0);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param colors The color table
+	 * @param sortedColors The distinct colors of the table in their sorted order, not
+	 *        necessarily all of them
+	 * @param skipTrailingColors The number of colors at the end of the sorted order to skip
+	 */
+	public IndexedPalette(List<Color> colors, List<Color> sortedColors, int skipTrailingColors) {
+		this.colors = Collections.unmodifiableList(colors);
+		this.sortedColors = Collections.unmodifiableList(sortedColors);
+		this.toSorted = remap(colors, sortedColors);
+		this.fromSorted = remap(sortedColors, colors);
+		this.skip = new boolean[colors.size()];
+		int firstSkipped = sortedColors.size() - skipTrailingColors;
+		for (int i = 0; i < skip.length; i++) {
+			skip[i] = toSorted[i] < 0 || toSorted[i] >= firstSkipped;
+		}
+	}
+
+	/**
+	 * Returns a copy of this palette that skips the specified number of colors at the end of the
+	 * sorted order
+	 *
+	 * @param count
+	 * @return
+	 */
+	public IndexedPalette skipTrailingColors(int count) {
+		return new IndexedPalette(colors, sortedColors, count);
+	}
+
+	/**
+	 * Returns a lookup table that maps each index of the from list to the first index of the same
+	 * color in the to list, -1 if the color is missing
+	 *
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public static int[] remap(List<Color> from, List<Color> to) {
+		Map<Color, Integer> positions = new HashMap<>(to.size() * 2);
+		for (int i = to.size() - 1; i >= 0; i--) {
+			positions.put(to.get(i), i);
+		}
+
+		int[] lut = new int[from.size()];
+		for (int i = 0; i < lut.length; i++) {
+			lut[i] = positions.getOrDefault(from.get(i), -1);
+		}
+		return lut;
+	}
+
+	/**
+	 * Replaces every pixel by its entry in the lookup table
+	 *
+	 * @param pixels
+	 * @param lut
+	 * @return A new array of pixels
+	 */
+	public static int[] remapPixels(int[] pixels, int[] lut) {
+		int[] remapped = new int[pixels.length];
+		for (int i = 0; i < pixels.length; i++) {
+			remapped[i] = lut[pixels[i]];
+		}
+		return remapped;
+	}
+
+	public List<Color> getColors() {
+		return colors;
+	}
+
+	public List<Color> getSortedColors() {
+		return sortedColors;
+	}
+
+	/**
+	 * Returns the number of entries of the color table
+	 *
+	 * @return
+	 */
+	public int getColorCount() {
+		return colors.size();
+	}
+
+	/**
+	 * Returns the number of distinct colors in the sorted order
+	 *
+	 * @return
+	 */
+	public int getSortedCount() {
+		return sortedColors.size();
+	}
+
+	/**
+	 * Returns the position of a color in the sorted order
+	 *
+	 * @param index The index of the color in the color table
+	 * @return -1 if the color isn't sorted
+	 */
+	public int toSorted(int index) {
+		return toSorted[index];
+	}
+
+	/**
+	 * Returns the index of a sorted color in the color table
+	 *
+	 * @param sortedIndex
+	 * @return
+	 */
+	public int fromSorted(int sortedIndex) {
+		return fromSorted[sortedIndex];
+	}
+
+	/**
+	 * Returns true if the color is skipped
+	 *
+	 * @param index The index of the color in the color table
+	 * @return
+	 */
+	public boolean isSkipped(int index) {
+		return skip[index];
+	}
+}
@@ -1,23 +1,135 @@
 package org.stegosuite.image.format;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stegosuite.image.jpgtemp.james.CoefficientPlane;
+import org.stegosuite.image.jpgtemp.james.DCTMethod;
 import org.stegosuite.model.exception.SteganoImageException;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.HashMap;
+import java.util.Map;
 
 public class JPGImage
 		extends ImageFormat {
 
+	private static final Logger LOG = LoggerFactory.getLogger(JPGImage.class);
+
 	public static final String FILE_EXTENSION = "jpg";
 
+	/**
+	 * The quantized DCT coefficients of the image for each quality and DCT method they were
+	 * requested for. Clones share the map until their image is replaced.
+	 */
+	private Map<SimpleEntry<Integer, DCTMethod>, CoefficientPlane> coefficientPlanes = new HashMap<>();
+
+	/**
+	 * Key of the coefficients decoded from the file in the coefficient planes
+	 */
+	private static final SimpleEntry<Integer, DCTMethod> FILE_KEY = new SimpleEntry<>(-1, null);
+
+	/**
+	 * Whether the image still holds the pixels decoded from its file
+	 */
+	private boolean decodedFromFile = false;
+
 	@Override
 	public String getFileExtension() {
 		return FILE_EXTENSION;
 	}
 
+	@Override
+	public void load(File file)
+			throws SteganoImageException {
+		super.load(file);
+		decodedFromFile = true;
+	}
+
 	@Override
 	public void save(File file)
 			throws SteganoImageException {
 		// temporally nothing because it's already done in embedding
 	}
 
+	@Override
+	public void setBufferedImage(BufferedImage image) {
+		super.setBufferedImage(image);
+		coefficientPlanes = new HashMap<>();
+		decodedFromFile = false;
+	}
+
+	/**
+	 * Returns the quantized DCT coefficients of the image, computed once per quality
+	 *
+	 * @param quality 0 is worst, 100 is best
+	 * @return
+	 */
+	public CoefficientPlane getCoefficientPlane(int quality) {
+		return getCoefficientPlane(quality, DCTMethod.FLOAT);
+	}
+
+	/**
+	 * Returns the quantized DCT coefficients of the image, computed once per quality and DCT
+	 * method
+	 *
+	 * @param quality 0 is worst, 100 is best
+	 * @param method
+	 * @return
+	 */
+	public CoefficientPlane getCoefficientPlane(int quality, DCTMethod method) {
+		Map<SimpleEntry<Integer, DCTMethod>, CoefficientPlane> planes = coefficientPlanes;
+		synchronized (planes) {
+			return planes.computeIfAbsent(new SimpleEntry<>(quality, method),
+					key -> new CoefficientPlane(image, quality, method));
+		}
+	}
+
+	/**
+	 * Returns the quantized DCT coefficients of the file the image was loaded from, decoded once.
+	 * Embedding into them skips color conversion, DCT and quantization and keeps the quality of
+	 * the file.
+	 *
+	 * @return null if the image was not loaded from a file, was replaced since, or the file is not
+	 *         a baseline JPEG the coefficients can be decoded from
+	 */
+	public CoefficientPlane getFileCoefficientPlane() {
+		if (!decodedFromFile) {
+			return null;
+		}
+		Map<SimpleEntry<Integer, DCTMethod>, CoefficientPlane> planes = coefficientPlanes;
+		synchronized (planes) {
+			if (!planes.containsKey(FILE_KEY)) {
+				CoefficientPlane plane = null;
+				try {
+					plane = CoefficientPlane.decode(Files.readAllBytes(file.toPath()));
+				} catch (IOException e) {
+					LOG.info("Cannot embed into the coefficients of {}: {}", file.getName(), e.getMessage());
+				}
+				planes.put(FILE_KEY, plane);
+			}
+			return planes.get(FILE_KEY);
+		}
+	}
+
+	/**
+	 * Clones the image. The coefficient planes are shared, as they are never modified.
+	 */
+	@Override
+	public JPGImage clone(int imageType) {
+		JPGImage clonedImage = (JPGImage) super.clone(imageType);
+		if (imageType == image.getType()) {
+			clonedImage.coefficientPlanes = coefficientPlanes;
+			clonedImage.decodedFromFile = decodedFromFile;
+		}
+		return clonedImage;
+	}
+
+	@Override
+	public JPGImage clone() {
+		return clone(image.getType());
+	}
 }
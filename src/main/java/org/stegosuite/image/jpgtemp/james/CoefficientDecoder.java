@@ -0,0 +1,498 @@
+package org.stegosuite.image.jpgtemp.james;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the quantized DCT coefficients of a baseline JPEG file into a {@link CoefficientPlane},
+ * without dequantization and inverse DCT. Supported are 8 bit Huffman coded files with a single
+ * interleaved scan, either grayscale or YCbCr with subsampled luminance blocks of up to 2x2 and
+ * one block per chrominance component. These are the files the encoder can write again with the
+ * same MCU layout. Files whose Adobe segment marks the components as RGB are not supported, as the
+ * encoder writes them as YCbCr.
+ */
+class CoefficientDecoder {
+
+	private static final int SOF0 = 0xC0, SOF1 = 0xC1, DHT = 0xC4, SOI = 0xD8, EOI = 0xD9, SOS = 0xDA, DQT = 0xDB,
+			DRI = 0xDD, RST0 = 0xD0, RST7 = 0xD7, APP14 = 0xEE;
+
+	/**
+	 * Color transform of the Adobe segment for components that are not transformed, e.g. RGB
+	 */
+	private static final int ADOBE_TRANSFORM_NONE = 0;
+
+	/**
+	 * Number of bits looked up at once when decoding Huffman codes
+	 */
+	private static final int LOOKAHEAD_BITS = 8;
+
+	private final byte[] data;
+
+	private int pos = 0;
+
+	private int width, height;
+
+	private int[] compID, hsamp, vsamp, qtable;
+
+	private final int[][] quantum = new int[4][];
+
+	private final HuffmanTable[] dcTables = new HuffmanTable[4];
+
+	private final HuffmanTable[] acTables = new HuffmanTable[4];
+
+	private int restartInterval = 0;
+
+	/**
+	 * Color transform of the Adobe segment, -1 if there is none
+	 */
+	private int adobeTransform = -1;
+
+	/**
+	 * Entropy coded bits that have been read but not consumed, the lowest bitCount bits
+	 */
+	private long bitBuffer = 0;
+
+	private int bitCount = 0;
+
+	/**
+	 * Number of zero bytes appended to the buffer after a marker was reached
+	 */
+	private int paddingBytes = 0;
+
+	private boolean markerReached = false;
+
+	CoefficientDecoder(final byte[] data) {
+		this.data = data;
+	}
+
+	/**
+	 * Reads the headers and the scan of the file
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	CoefficientPlane decode()
+			throws IOException {
+		if (readMarker() != SOI) {
+			throw new IOException("Not a JPEG file");
+		}
+		while (true) {
+			final int marker = readMarker();
+			if (marker == SOF0 || marker == SOF1) {
+				readFrameHeader();
+			} else if (marker == DHT) {
+				readHuffmanTables();
+			} else if (marker == DQT) {
+				readQuantizationTables();
+			} else if (marker == DRI) {
+				readUnsigned16();
+				this.restartInterval = readUnsigned16();
+			} else if (marker == APP14) {
+				readAdobeSegment();
+			} else if (marker == SOS) {
+				return readScan();
+			} else if (marker == EOI) {
+				throw new IOException("No scan");
+			} else if (marker >= 0xC0 && marker <= 0xCF) {
+				// Progressive, lossless, hierarchical and arithmetic coded frames
+				throw new IOException(String.format("Unsupported frame type %02X", marker));
+			} else {
+				// Application data, comments and other segments are not copied
+				final int length = readUnsigned16();
+				this.pos += length - 2;
+			}
+		}
+	}
+
+	private void readFrameHeader()
+			throws IOException {
+		final int end = this.pos + readUnsigned16();
+		if (readUnsigned8() != 8) {
+			throw new IOException("Unsupported sample precision");
+		}
+		this.height = readUnsigned16();
+		this.width = readUnsigned16();
+		final int components = readUnsigned8();
+		if (this.width == 0 || this.height == 0 || components != 1 && components != 3) {
+			throw new IOException("Unsupported frame");
+		}
+		this.compID = new int[components];
+		this.hsamp = new int[components];
+		this.vsamp = new int[components];
+		this.qtable = new int[components];
+		for (int comp = 0; comp < components; comp++) {
+			this.compID[comp] = readUnsigned8();
+			final int sampling = readUnsigned8();
+			this.hsamp[comp] = sampling >> 4;
+			this.vsamp[comp] = sampling & 0x0F;
+			this.qtable[comp] = readUnsigned8();
+			if (this.qtable[comp] > 3) {
+				throw new IOException("Invalid quantization table number");
+			}
+			final int maxSampling = comp == 0 ? 2 : 1;
+			if (components > 1 && (this.hsamp[comp] < 1 || this.hsamp[comp] > maxSampling || this.vsamp[comp] < 1
+					|| this.vsamp[comp] > maxSampling)) {
+				throw new IOException("Unsupported sampling factors");
+			}
+		}
+		if (components == 1) {
+			// A single component is never interleaved, each MCU is one block
+			this.hsamp[0] = 1;
+			this.vsamp[0] = 1;
+		}
+		this.pos = end;
+	}
+
+	/**
+	 * Reads the color transform of an Adobe segment, other APP14 segments are skipped
+	 *
+	 * @throws IOException
+	 */
+	private void readAdobeSegment()
+			throws IOException {
+		final int end = this.pos + readUnsigned16();
+		// "Adobe", the version and two flag words precede the transform
+		if (end - this.pos >= 12 && new String(this.data, this.pos, 5, StandardCharsets.US_ASCII).equals("Adobe")) {
+			this.pos += 11;
+			this.adobeTransform = readUnsigned8();
+		}
+		this.pos = end;
+	}
+
+	private void readHuffmanTables()
+			throws IOException {
+		final int end = this.pos + readUnsigned16();
+		while (this.pos < end) {
+			final int classAndNumber = readUnsigned8();
+			final int[] counts = new int[17];
+			int total = 0;
+			for (int length = 1; length <= 16; length++) {
+				counts[length] = readUnsigned8();
+				total += counts[length];
+			}
+			if (total > 256 || (classAndNumber & 0x0F) > 3) {
+				throw new IOException("Invalid Huffman table");
+			}
+			final int[] values = new int[total];
+			for (int i = 0; i < total; i++) {
+				values[i] = readUnsigned8();
+			}
+			final HuffmanTable table = new HuffmanTable(counts, values);
+			if (classAndNumber >> 4 == 0) {
+				this.dcTables[classAndNumber & 0x0F] = table;
+			} else {
+				this.acTables[classAndNumber & 0x0F] = table;
+			}
+		}
+	}
+
+	private void readQuantizationTables()
+			throws IOException {
+		final int end = this.pos + readUnsigned16();
+		while (this.pos < end) {
+			final int precisionAndNumber = readUnsigned8();
+			if (precisionAndNumber >> 4 != 0 || (precisionAndNumber & 0x0F) > 3) {
+				throw new IOException("Unsupported quantization table");
+			}
+			final int[] table = new int[64];
+			for (int k = 0; k < 64; k++) {
+				table[JpegEncoder.jpegNaturalOrder[k]] = readUnsigned8();
+			}
+			this.quantum[precisionAndNumber & 0x0F] = table;
+		}
+	}
+
+	/**
+	 * Reads the scan header and decodes all MCUs of the scan
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private CoefficientPlane readScan()
+			throws IOException {
+		if (this.compID == null) {
+			throw new IOException("Scan before frame header");
+		}
+		final int end = this.pos + readUnsigned16();
+		final int components = this.compID.length;
+		if (components == 3 && this.adobeTransform == ADOBE_TRANSFORM_NONE) {
+			throw new IOException("Unsupported color transform, the components are RGB");
+		}
+		if (readUnsigned8() != components) {
+			throw new IOException("Unsupported scan, the components are not interleaved");
+		}
+		final HuffmanTable[] dc = new HuffmanTable[components];
+		final HuffmanTable[] ac = new HuffmanTable[components];
+		for (int comp = 0; comp < components; comp++) {
+			if (readUnsigned8() != this.compID[comp]) {
+				throw new IOException("Unsupported scan, the components are reordered");
+			}
+			final int tables = readUnsigned8();
+			dc[comp] = this.dcTables[tables >> 4 & 3];
+			ac[comp] = this.acTables[tables & 3];
+			if (dc[comp] == null || ac[comp] == null || this.quantum[this.qtable[comp]] == null) {
+				throw new IOException("Missing table");
+			}
+		}
+		if (readUnsigned8() != 0 || readUnsigned8() != 63 || readUnsigned8() != 0) {
+			throw new IOException("Unsupported spectral selection or successive approximation");
+		}
+		this.pos = end;
+
+		int maxHsamp = 1;
+		int maxVsamp = 1;
+		int blocksPerMCU = 0;
+		for (int comp = 0; comp < components; comp++) {
+			maxHsamp = Math.max(maxHsamp, this.hsamp[comp]);
+			maxVsamp = Math.max(maxVsamp, this.vsamp[comp]);
+			blocksPerMCU += this.hsamp[comp] * this.vsamp[comp];
+		}
+		final int mcuColumns = (this.width + 8 * maxHsamp - 1) / (8 * maxHsamp);
+		final int mcuRows = (this.height + 8 * maxVsamp - 1) / (8 * maxVsamp);
+		final int mcuCount = mcuRows * mcuColumns;
+		final int[] coefficients = new int[mcuCount * blocksPerMCU * 64];
+
+		// The blocks are stored in the order they are coded: MCU by MCU, the blocks of each
+		// component row by row, which is the order the encoder writes them in
+		final int[] predictions = new int[components];
+		int offset = 0;
+		for (int mcu = 0; mcu < mcuCount; mcu++) {
+			if (this.restartInterval > 0 && mcu > 0 && mcu % this.restartInterval == 0) {
+				restart();
+				for (int comp = 0; comp < components; comp++) {
+					predictions[comp] = 0;
+				}
+			}
+			for (int comp = 0; comp < components; comp++) {
+				for (int block = this.hsamp[comp] * this.vsamp[comp]; block > 0; block--) {
+					predictions[comp] = decodeBlock(coefficients, offset, dc[comp], ac[comp], predictions[comp]);
+					offset += 64;
+				}
+			}
+		}
+		checkPadding();
+
+		final JpegInfo info = new JpegInfo(this.width, this.height, this.compID, this.hsamp, this.vsamp, this.qtable);
+		final int[][] usedTables = new int[4][];
+		for (int comp = 0; comp < components; comp++) {
+			usedTables[this.qtable[comp]] = this.quantum[this.qtable[comp]];
+		}
+		return new CoefficientPlane(info, usedTables, mcuRows, mcuColumns, coefficients);
+	}
+
+	/**
+	 * Decodes one block into the coefficients in natural order
+	 *
+	 * @param coefficients
+	 * @param offset
+	 * @param dc
+	 * @param ac
+	 * @param prediction the DC value of the previous block of the component
+	 * @return the DC value of the block
+	 * @throws IOException
+	 */
+	private int decodeBlock(final int[] coefficients, final int offset, final HuffmanTable dc, final HuffmanTable ac,
+			final int prediction)
+			throws IOException {
+		int size = decodeHuffman(dc);
+		final int value = prediction + (size == 0 ? 0 : extend(receive(size), size));
+		coefficients[offset] = value;
+		for (int k = 1; k < 64; k++) {
+			final int runAndSize = decodeHuffman(ac);
+			size = runAndSize & 0x0F;
+			if (size == 0) {
+				if (runAndSize != 0xF0) {
+					break; // end of block
+				}
+				k += 15;
+				continue;
+			}
+			k += runAndSize >> 4;
+			if (k > 63) {
+				throw new IOException("Corrupt block");
+			}
+			coefficients[offset + JpegEncoder.jpegNaturalOrder[k]] = extend(receive(size), size);
+		}
+		return value;
+	}
+
+	private int decodeHuffman(final HuffmanTable table)
+			throws IOException {
+		fillBits();
+		final int look = (int) (this.bitBuffer >>> this.bitCount - LOOKAHEAD_BITS) & (1 << LOOKAHEAD_BITS) - 1;
+		final int entry = table.lookup[look];
+		if (entry != 0) {
+			this.bitCount -= entry >> 8;
+			return entry & 0xFF;
+		}
+		for (int length = LOOKAHEAD_BITS + 1; length <= 16; length++) {
+			final int code = (int) (this.bitBuffer >>> this.bitCount - length) & (1 << length) - 1;
+			if (code <= table.maxCode[length]) {
+				this.bitCount -= length;
+				return table.values[table.valuePointer[length] + code - table.minCode[length]];
+			}
+		}
+		throw new IOException("Invalid Huffman code");
+	}
+
+	private int receive(final int size)
+			throws IOException {
+		if (size > 16) {
+			throw new IOException("Invalid coefficient size");
+		}
+		fillBits();
+		this.bitCount -= size;
+		return (int) (this.bitBuffer >>> this.bitCount) & (1 << size) - 1;
+	}
+
+	private static int extend(final int value, final int size) {
+		return value < 1 << size - 1 ? value - (1 << size) + 1 : value;
+	}
+
+	/**
+	 * Fills the bit buffer with at least 32 bits. Stuffed zero bytes are removed; once a marker is
+	 * reached, zero bytes are appended instead, which must not be consumed.
+	 */
+	private void fillBits() {
+		while (this.bitCount <= 56) {
+			int b = 0;
+			if (!this.markerReached && this.pos < this.data.length) {
+				b = this.data[this.pos] & 0xFF;
+				if (b == 0xFF) {
+					final int next = this.pos + 1 < this.data.length ? this.data[this.pos + 1] & 0xFF : -1;
+					if (next == 0) {
+						this.pos += 2;
+					} else {
+						this.markerReached = true;
+						b = 0;
+					}
+				} else {
+					this.pos++;
+				}
+			} else {
+				this.markerReached = true;
+			}
+			if (this.markerReached) {
+				this.paddingBytes++;
+			}
+			this.bitBuffer = this.bitBuffer << 8 | b;
+			this.bitCount += 8;
+		}
+	}
+
+	/**
+	 * Throws an exception if the appended zero bytes were consumed, i.e. if the entropy coded
+	 * segment ended too early
+	 *
+	 * @throws IOException
+	 */
+	private void checkPadding()
+			throws IOException {
+		if (this.bitCount < this.paddingBytes * 8) {
+			throw new IOException("Truncated scan");
+		}
+	}
+
+	/**
+	 * Skips the rest of the entropy coded segment and the following restart marker
+	 *
+	 * @throws IOException
+	 */
+	private void restart()
+			throws IOException {
+		checkPadding();
+		// Only the fill bits of the last byte of the segment can be left
+		while (!this.markerReached && this.pos < this.data.length) {
+			final int b = this.data[this.pos] & 0xFF;
+			if (b == 0xFF && this.pos + 1 < this.data.length && this.data[this.pos + 1] != 0) {
+				break;
+			}
+			this.pos += b == 0xFF ? 2 : 1;
+		}
+		final int marker = readMarker();
+		if (marker < RST0 || marker > RST7) {
+			throw new IOException("Missing restart marker");
+		}
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+		this.paddingBytes = 0;
+		this.markerReached = false;
+	}
+
+	/**
+	 * Reads a marker, skipping fill bytes
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private int readMarker()
+			throws IOException {
+		if (readUnsigned8() != 0xFF) {
+			throw new IOException("Marker expected");
+		}
+		int marker;
+		do {
+			marker = readUnsigned8();
+		} while (marker == 0xFF);
+		return marker;
+	}
+
+	private int readUnsigned8()
+			throws IOException {
+		if (this.pos >= this.data.length) {
+			throw new IOException("Unexpected end of file");
+		}
+		return this.data[this.pos++] & 0xFF;
+	}
+
+	private int readUnsigned16()
+			throws IOException {
+		return readUnsigned8() << 8 | readUnsigned8();
+	}
+
+	/**
+	 * A Huffman decoding table as in section F.2.2.3 of the JPEG standard, with a lookup table
+	 * for codes of up to LOOKAHEAD_BITS bits
+	 */
+	private static class HuffmanTable {
+
+		final int[] values;
+
+		final int[] maxCode = new int[17];
+
+		final int[] minCode = new int[17];
+
+		final int[] valuePointer = new int[17];
+
+		/**
+		 * Code length << 8 | value for each LOOKAHEAD_BITS bit prefix, 0 for longer codes
+		 */
+		final int[] lookup = new int[1 << LOOKAHEAD_BITS];
+
+		HuffmanTable(final int[] counts, final int[] values)
+				throws IOException {
+			this.values = values;
+			int code = 0;
+			int index = 0;
+			for (int length = 1; length <= 16; length++) {
+				this.valuePointer[length] = index;
+				this.minCode[length] = code;
+				for (int i = 0; i < counts[length]; i++) {
+					if (code >= 1 << length) {
+						throw new IOException("Invalid Huffman table");
+					}
+					if (length <= LOOKAHEAD_BITS) {
+						final int shift = LOOKAHEAD_BITS - length;
+						for (int suffix = 0; suffix < 1 << shift; suffix++) {
+							this.lookup[code << shift | suffix] = length << 8 | values[index];
+						}
+					}
+					code++;
+					index++;
+				}
+				this.maxCode[length] = counts[length] > 0 ? code - 1 : -1;
+				code <<= 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package org.stegosuite.image.jpgtemp.james;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/**
+ * The quantized DCT coefficients of an image at one quality, in the order the JpegEncoder writes
+ * them: 64 coefficients per block, blocks grouped by MCU. Color conversion, downsampling, DCT and
+ * quantization are done once when the plane is created, in parallel over MCU rows. Capacity
+ * estimation and entropy coding read the coefficients from here. The plane is never modified,
+ * embedding works on a copy.
+ * <p>
+ * A plane can also be decoded from a baseline JPEG file, see {@link #decode(byte[])}. It then
+ * holds the coefficients and quantization tables of the file, so that they can be written again
+ * without a trip through the pixel domain.
+ */
+public class CoefficientPlane {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CoefficientPlane.class);
+
+	final JpegInfo info;
+
+	/**
+	 * The DCT the coefficients were computed with, null for decoded planes
+	 */
+	final DCT dct;
+
+	/**
+	 * The quantization tables in natural order, indexed by table number. Unused numbers are null.
+	 */
+	final int[][] quantum;
+
+	/**
+	 * The quality, -1 for decoded planes
+	 */
+	final int quality;
+
+	/**
+	 * The DCT method, null for decoded planes
+	 */
+	final DCTMethod method;
+
+	/**
+	 * Number of MCU rows and columns
+	 */
+	final int mcuRows, mcuColumns;
+
+	private final int[] coefficients;
+
+	/**
+	 * Number of AC coefficients F5 can embed a bit into, counting only about half of the
+	 * coefficients with an absolute value of 1 since those often shrink to 0
+	 */
+	private final int expectedBits;
+
+	/**
+	 * Creates the coefficient plane of an image. The pixels are read from the raster, no AWT
+	 * toolkit is needed.
+	 *
+	 * @param image
+	 * @param quality 0 is worst, 100 is best
+	 */
+	public CoefficientPlane(final BufferedImage image, final int quality) {
+		this(image, quality, DCTMethod.FLOAT);
+	}
+
+	/**
+	 * Creates the coefficient plane of an image with the given DCT method
+	 *
+	 * @param image
+	 * @param quality 0 is worst, 100 is best
+	 * @param method
+	 */
+	public CoefficientPlane(final BufferedImage image, final int quality, final DCTMethod method) {
+		this.quality = quality;
+		this.method = method;
+		this.info = new JpegInfo(image, "");
+		this.dct = new DCT(quality);
+		this.quantum = new int[][] { this.dct.quantum_luminance, this.dct.quantum_chrominance };
+
+		final int imageWidth = this.info.imageWidth;
+		final int imageHeight = this.info.imageHeight;
+
+		// This initial setting of MinBlockWidth and MinBlockHeight is done to
+		// ensure they start with values larger than will actually be the case.
+		int minBlockWidth = imageWidth % 8 != 0 ? (int) (Math.floor(imageWidth / 8.0) + 1) * 8 : imageWidth;
+		int minBlockHeight = imageHeight % 8 != 0 ? (int) (Math.floor(imageHeight / 8.0) + 1) * 8 : imageHeight;
+		int blocksPerMCU = 0;
+		for (int comp = 0; comp < this.info.NumberOfComponents; comp++) {
+			minBlockWidth = Math.min(minBlockWidth, this.info.BlockWidth[comp]);
+			minBlockHeight = Math.min(minBlockHeight, this.info.BlockHeight[comp]);
+			blocksPerMCU += this.info.VsampFactor[comp] * this.info.HsampFactor[comp];
+		}
+		this.mcuRows = minBlockHeight;
+		this.mcuColumns = minBlockWidth;
+		this.coefficients = new int[this.mcuRows * this.mcuColumns * blocksPerMCU * 64];
+
+		LOG.debug("{} DCT/quantisation of {} x {} pixels", method, imageWidth, imageHeight);
+		final int rowLength = this.mcuColumns * blocksPerMCU * 64;
+		IntStream.range(0, this.mcuRows).parallel().forEach(r -> transformRow(r, r * rowLength));
+		this.expectedBits = countExpectedBits(this.coefficients);
+	}
+
+	/**
+	 * Creates a plane of coefficients decoded from a JPEG file
+	 *
+	 * @param info
+	 * @param quantum
+	 * @param mcuRows
+	 * @param mcuColumns
+	 * @param coefficients
+	 */
+	CoefficientPlane(final JpegInfo info, final int[][] quantum, final int mcuRows, final int mcuColumns,
+			final int[] coefficients) {
+		this.quality = -1;
+		this.method = null;
+		this.info = info;
+		this.dct = null;
+		this.quantum = quantum;
+		this.mcuRows = mcuRows;
+		this.mcuColumns = mcuColumns;
+		this.coefficients = coefficients;
+		this.expectedBits = countExpectedBits(coefficients);
+	}
+
+	/**
+	 * Decodes the quantized coefficients of a baseline JPEG file. Re-encoding the plane keeps the
+	 * quantization tables and the chroma subsampling of the file, only the Huffman tables are
+	 * replaced by the standard ones.
+	 *
+	 * @param data the JPEG file
+	 * @return
+	 * @throws IOException if the file is not a baseline JPEG with one interleaved scan, or is
+	 *         corrupt
+	 */
+	public static CoefficientPlane decode(final byte[] data)
+			throws IOException {
+		return new CoefficientDecoder(data).decode();
+	}
+
+	private static int countExpectedBits(final int[] coefficients) {
+		int one = 0;
+		int zero = 0;
+		for (int i = 0; i < coefficients.length; i++) {
+			if (i % 64 == 0) {
+				continue;
+			}
+			if (coefficients[i] == 1 || coefficients[i] == -1) {
+				one++;
+			}
+			if (coefficients[i] == 0) {
+				zero++;
+			}
+		}
+		final int large = coefficients.length - zero - one - coefficients.length / 64;
+		final int expectedBits = large + (int) (0.49 * one);
+		LOG.debug("expected capacity: {} bits", expectedBits);
+		return expectedBits;
+	}
+
+	/**
+	 * Transforms and quantizes the blocks of one MCU row into the coefficients, starting at offset.
+	 * Rows do not depend on each other, each call uses its own block buffers.
+	 *
+	 * @param r the MCU row
+	 * @param offset
+	 */
+	private void transformRow(final int r, int offset) {
+		final int imageWidth = this.info.imageWidth;
+		final int imageHeight = this.info.imageHeight;
+		final float dctArray1[] = new float[64];
+		final double dctArray2[] = new double[64];
+		final int integerArray[] = new int[64];
+		final int ypos = r * 8;
+		for (int c = 0; c < this.mcuColumns; c++) {
+			final int xpos = c * 8;
+			for (int comp = 0; comp < this.info.NumberOfComponents; comp++) {
+				final float inputArray[][] = (float[][]) this.info.Components[comp];
+				final int vsamp = this.info.VsampFactor[comp];
+				final int hsamp = this.info.HsampFactor[comp];
+
+				for (int i = 0; i < vsamp; i++) {
+					for (int j = 0; j < hsamp; j++) {
+						final int xblockoffset = j * 8;
+						final int yblockoffset = i * 8;
+						for (int a = 0; a < 8; a++) {
+							for (int b = 0; b < 8; b++) {
+								// westfeld - dirty line fixed, Jun 6 2000
+								int ia = ypos * vsamp + yblockoffset + a;
+								int ib = xpos * hsamp + xblockoffset + b;
+								if (imageHeight / 2 * vsamp <= ia) {
+									ia = imageHeight / 2 * vsamp - 1;
+								}
+								if (imageWidth / 2 * hsamp <= ib) {
+									ib = imageWidth / 2 * hsamp - 1;
+								}
+								dctArray1[a * 8 + b] = inputArray[ia][ib];
+							}
+						}
+						final int code = this.info.QtableNumber[comp];
+						if (this.method == DCTMethod.INTEGER) {
+							this.dct.quantizeBlock(this.dct.forwardDCT(dctArray1, integerArray), code, this.coefficients,
+									offset);
+						} else {
+							this.dct.quantizeBlock(this.dct.forwardDCT(dctArray1, dctArray2), code, this.coefficients,
+									offset);
+						}
+						offset += 64;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the quality the coefficients were computed at, -1 if they were decoded from a file
+	 *
+	 * @return
+	 */
+	public int getQuality() {
+		return this.quality;
+	}
+
+	public DCTMethod getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Returns the number of coefficients, 64 per block
+	 *
+	 * @return
+	 */
+	public int getCoefficientCount() {
+		return this.coefficients.length;
+	}
+
+	/**
+	 * Returns a copy of the coefficients that may be modified
+	 *
+	 * @return
+	 */
+	public int[] copyCoefficients() {
+		return this.coefficients.clone();
+	}
+
+	/**
+	 * Returns the coefficients, which must not be modified
+	 *
+	 * @return
+	 */
+	int[] getCoefficients() {
+		return this.coefficients;
+	}
+
+	/**
+	 * Returns the number of bits F5 is expected to embed with the default code
+	 *
+	 * @return
+	 */
+	public int getExpectedBits() {
+		return this.expectedBits;
+	}
+
+	/**
+	 * Returns the capacity in bytes
+	 *
+	 * @return
+	 */
+	public int getCapacity() {
+		return this.expectedBits / 8;
+	}
+}
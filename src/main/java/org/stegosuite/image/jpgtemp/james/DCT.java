@@ -32,7 +32,30 @@ class DCT {
 
 	public Object quantum[] = new Object[2];
 
-	public Object Divisors[] = new Object[2];
+	public double Divisors[][] = new double[2][];
+
+	/**
+	 * Divisors of the fixed-point method and their reciprocals, scaled by 2^RECIPROCAL_BITS and
+	 * rounded up
+	 */
+	public int IntegerDivisors[][] = new int[2][this.N * this.N];
+
+	public long Reciprocals[][] = new long[2][this.N * this.N];
+
+	/**
+	 * Fractional bits of the fixed-point DCT constants, as in jfdctfst.c
+	 */
+	private static final int CONST_BITS = 8;
+
+	private static final int FIX_0_382683433 = 98;
+
+	private static final int FIX_0_541196100 = 139;
+
+	private static final int FIX_0_707106781 = 181;
+
+	private static final int FIX_1_306562965 = 334;
+
+	private static final int RECIPROCAL_BITS = 40;
 
 	/**
 	 * Quantitization Matrix for luminace.
@@ -62,46 +85,42 @@ class DCT {
 
 	/*
 	 * This method preforms a DCT on a block of image data using the AAN method as implemented in
-	 * the IJG Jpeg-6a library.
+	 * the IJG Jpeg-6a library (the float method). The 64 samples and coefficients are stored row by
+	 * row. Only the tables are read, so one DCT can be shared by several threads as long as each
+	 * passes its own arrays.
 	 */
-	public double[][] forwardDCT(final float input[][]) {
-		final double output[][] = new double[this.N][this.N];
+	public double[] forwardDCT(final float input[], final double output[]) {
 		double tmp0, tmp1, tmp2, tmp3, tmp4, tmp5, tmp6, tmp7;
 		double tmp10, tmp11, tmp12, tmp13;
 		double z1, z2, z3, z4, z5, z11, z13;
 		int i;
-		int j;
 
 		// Subtracts 128 from the input values
-		for (i = 0; i < 8; i++) {
-			for (j = 0; j < 8; j++) {
-				output[i][j] = input[i][j] - 128.0;
-				// input[i][j] -= 128;
-
-			}
+		for (i = 0; i < 64; i++) {
+			output[i] = input[i] - 128.0;
 		}
 
-		for (i = 0; i < 8; i++) {
-			tmp0 = output[i][0] + output[i][7];
-			tmp7 = output[i][0] - output[i][7];
-			tmp1 = output[i][1] + output[i][6];
-			tmp6 = output[i][1] - output[i][6];
-			tmp2 = output[i][2] + output[i][5];
-			tmp5 = output[i][2] - output[i][5];
-			tmp3 = output[i][3] + output[i][4];
-			tmp4 = output[i][3] - output[i][4];
+		for (int row = 0; row < 64; row += 8) {
+			tmp0 = output[row] + output[row + 7];
+			tmp7 = output[row] - output[row + 7];
+			tmp1 = output[row + 1] + output[row + 6];
+			tmp6 = output[row + 1] - output[row + 6];
+			tmp2 = output[row + 2] + output[row + 5];
+			tmp5 = output[row + 2] - output[row + 5];
+			tmp3 = output[row + 3] + output[row + 4];
+			tmp4 = output[row + 3] - output[row + 4];
 
 			tmp10 = tmp0 + tmp3;
 			tmp13 = tmp0 - tmp3;
 			tmp11 = tmp1 + tmp2;
 			tmp12 = tmp1 - tmp2;
 
-			output[i][0] = tmp10 + tmp11;
-			output[i][4] = tmp10 - tmp11;
+			output[row] = tmp10 + tmp11;
+			output[row + 4] = tmp10 - tmp11;
 
 			z1 = (tmp12 + tmp13) * 0.707106781;
-			output[i][2] = tmp13 + z1;
-			output[i][6] = tmp13 - z1;
+			output[row + 2] = tmp13 + z1;
+			output[row + 6] = tmp13 - z1;
 
 			tmp10 = tmp4 + tmp5;
 			tmp11 = tmp5 + tmp6;
@@ -115,33 +134,33 @@ class DCT {
 			z11 = tmp7 + z3;
 			z13 = tmp7 - z3;
 
-			output[i][5] = z13 + z2;
-			output[i][3] = z13 - z2;
-			output[i][1] = z11 + z4;
-			output[i][7] = z11 - z4;
+			output[row + 5] = z13 + z2;
+			output[row + 3] = z13 - z2;
+			output[row + 1] = z11 + z4;
+			output[row + 7] = z11 - z4;
 		}
 
 		for (i = 0; i < 8; i++) {
-			tmp0 = output[0][i] + output[7][i];
-			tmp7 = output[0][i] - output[7][i];
-			tmp1 = output[1][i] + output[6][i];
-			tmp6 = output[1][i] - output[6][i];
-			tmp2 = output[2][i] + output[5][i];
-			tmp5 = output[2][i] - output[5][i];
-			tmp3 = output[3][i] + output[4][i];
-			tmp4 = output[3][i] - output[4][i];
+			tmp0 = output[i] + output[56 + i];
+			tmp7 = output[i] - output[56 + i];
+			tmp1 = output[8 + i] + output[48 + i];
+			tmp6 = output[8 + i] - output[48 + i];
+			tmp2 = output[16 + i] + output[40 + i];
+			tmp5 = output[16 + i] - output[40 + i];
+			tmp3 = output[24 + i] + output[32 + i];
+			tmp4 = output[24 + i] - output[32 + i];
 
 			tmp10 = tmp0 + tmp3;
 			tmp13 = tmp0 - tmp3;
 			tmp11 = tmp1 + tmp2;
 			tmp12 = tmp1 - tmp2;
 
-			output[0][i] = tmp10 + tmp11;
-			output[4][i] = tmp10 - tmp11;
+			output[i] = tmp10 + tmp11;
+			output[32 + i] = tmp10 - tmp11;
 
 			z1 = (tmp12 + tmp13) * 0.707106781;
-			output[2][i] = tmp13 + z1;
-			output[6][i] = tmp13 - z1;
+			output[16 + i] = tmp13 + z1;
+			output[48 + i] = tmp13 - z1;
 
 			tmp10 = tmp4 + tmp5;
 			tmp11 = tmp5 + tmp6;
@@ -155,45 +174,112 @@ class DCT {
 			z11 = tmp7 + z3;
 			z13 = tmp7 - z3;
 
-			output[5][i] = z13 + z2;
-			output[3][i] = z13 - z2;
-			output[1][i] = z11 + z4;
-			output[7][i] = z11 - z4;
+			output[40 + i] = z13 + z2;
+			output[24 + i] = z13 - z2;
+			output[8 + i] = z11 + z4;
+			output[56 + i] = z11 - z4;
 		}
 
 		return output;
 	}
 
 	/*
-	 * This method preforms forward DCT on a block of image data using the literal method specified
-	 * for a 2-D Discrete Cosine Transform. It is included as a curiosity and can give you an idea
-	 * of the difference in the compression result (the resulting image quality) by comparing its
-	 * output to the output of the AAN method below. It is ridiculously inefficient.
+	 * This method preforms a DCT on a block of image data using the fixed-point AAN method of the
+	 * IJG library (jfdctfst.c, the fast integer method). The samples are rounded to integers first.
+	 * The output is scaled like that of the float method, but the constants only have 8 fractional
+	 * bits, so some quantized coefficients differ by one.
 	 */
+	public int[] forwardDCT(final float input[], final int output[]) {
+		int tmp0, tmp1, tmp2, tmp3, tmp4, tmp5, tmp6, tmp7;
+		int tmp10, tmp11, tmp12, tmp13;
+		int z1, z2, z3, z4, z5, z11, z13;
+		int i;
 
-	// For now the final output is unusable. The associated quantization step
-	// needs some tweaking. If you get this part working, please let me know.
-
-	public double[][] forwardDCTExtreme(final float input[][]) {
-		final double output[][] = new double[this.N][this.N];
-		final double tmp0, tmp1, tmp2, tmp3, tmp4, tmp5, tmp6, tmp7;
-		final double tmp10, tmp11, tmp12, tmp13;
-		final double z1, z2, z3, z4, z5, z11, z13;
-		final int i;
-		final int j;
-		int v, u, x, y;
-		for (v = 0; v < 8; v++) {
-			for (u = 0; u < 8; u++) {
-				for (x = 0; x < 8; x++) {
-					for (y = 0; y < 8; y++) {
-						output[v][u] += input[x][y] * Math.cos((double) (2 * x + 1) * (double) u * Math.PI / 16)
-								* Math.cos((double) (2 * y + 1) * (double) v * Math.PI / 16);
-					}
-				}
-				output[v][u] *= 0.25 * (u == 0 ? 1.0 / Math.sqrt(2) : (double) 1.0)
-						* (v == 0 ? 1.0 / Math.sqrt(2) : (double) 1.0);
-			}
+		// Rounds and subtracts 128, the samples are never below -128
+		for (i = 0; i < 64; i++) {
+			output[i] = (int) (input[i] + 128.5f) - 256;
+		}
+
+		for (int row = 0; row < 64; row += 8) {
+			tmp0 = output[row] + output[row + 7];
+			tmp7 = output[row] - output[row + 7];
+			tmp1 = output[row + 1] + output[row + 6];
+			tmp6 = output[row + 1] - output[row + 6];
+			tmp2 = output[row + 2] + output[row + 5];
+			tmp5 = output[row + 2] - output[row + 5];
+			tmp3 = output[row + 3] + output[row + 4];
+			tmp4 = output[row + 3] - output[row + 4];
+
+			tmp10 = tmp0 + tmp3;
+			tmp13 = tmp0 - tmp3;
+			tmp11 = tmp1 + tmp2;
+			tmp12 = tmp1 - tmp2;
+
+			output[row] = tmp10 + tmp11;
+			output[row + 4] = tmp10 - tmp11;
+
+			z1 = (tmp12 + tmp13) * FIX_0_707106781 >> CONST_BITS;
+			output[row + 2] = tmp13 + z1;
+			output[row + 6] = tmp13 - z1;
+
+			tmp10 = tmp4 + tmp5;
+			tmp11 = tmp5 + tmp6;
+			tmp12 = tmp6 + tmp7;
+
+			z5 = (tmp10 - tmp12) * FIX_0_382683433 >> CONST_BITS;
+			z2 = (tmp10 * FIX_0_541196100 >> CONST_BITS) + z5;
+			z4 = (tmp12 * FIX_1_306562965 >> CONST_BITS) + z5;
+			z3 = tmp11 * FIX_0_707106781 >> CONST_BITS;
+
+			z11 = tmp7 + z3;
+			z13 = tmp7 - z3;
+
+			output[row + 5] = z13 + z2;
+			output[row + 3] = z13 - z2;
+			output[row + 1] = z11 + z4;
+			output[row + 7] = z11 - z4;
 		}
+
+		for (i = 0; i < 8; i++) {
+			tmp0 = output[i] + output[56 + i];
+			tmp7 = output[i] - output[56 + i];
+			tmp1 = output[8 + i] + output[48 + i];
+			tmp6 = output[8 + i] - output[48 + i];
+			tmp2 = output[16 + i] + output[40 + i];
+			tmp5 = output[16 + i] - output[40 + i];
+			tmp3 = output[24 + i] + output[32 + i];
+			tmp4 = output[24 + i] - output[32 + i];
+
+			tmp10 = tmp0 + tmp3;
+			tmp13 = tmp0 - tmp3;
+			tmp11 = tmp1 + tmp2;
+			tmp12 = tmp1 - tmp2;
+
+			output[i] = tmp10 + tmp11;
+			output[32 + i] = tmp10 - tmp11;
+
+			z1 = (tmp12 + tmp13) * FIX_0_707106781 >> CONST_BITS;
+			output[16 + i] = tmp13 + z1;
+			output[48 + i] = tmp13 - z1;
+
+			tmp10 = tmp4 + tmp5;
+			tmp11 = tmp5 + tmp6;
+			tmp12 = tmp6 + tmp7;
+
+			z5 = (tmp10 - tmp12) * FIX_0_382683433 >> CONST_BITS;
+			z2 = (tmp10 * FIX_0_541196100 >> CONST_BITS) + z5;
+			z4 = (tmp12 * FIX_1_306562965 >> CONST_BITS) + z5;
+			z3 = tmp11 * FIX_0_707106781 >> CONST_BITS;
+
+			z11 = tmp7 + z3;
+			z13 = tmp7 - z3;
+
+			output[40 + i] = z13 + z2;
+			output[24 + i] = z13 - z2;
+			output[8 + i] = z11 + z4;
+			output[56 + i] = z11 - z4;
+		}
+
 		return output;
 	}
 
@@ -424,43 +510,53 @@ class DCT {
 		this.quantum[1] = this.quantum_chrominance;
 		this.Divisors[1] = this.DivisorsChrominance;
 
+		// The divisors for the fixed-point AAN method: the quantization value times the AAN scale
+		// factors with 14 fractional bits, descaled to a factor of 8 like jcdctmgr.c does
+		for (int code = 0; code < 2; code++) {
+			final int quantumTable[] = (int[]) this.quantum[code];
+			index = 0;
+			for (i = 0; i < 8; i++) {
+				for (j = 0; j < 8; j++) {
+					final long aanScale = Math.round(AANscaleFactor[i] * AANscaleFactor[j] * (1 << 14));
+					final int divisor = (int) (quantumTable[index] * aanScale + (1 << 10) >> 11);
+					this.IntegerDivisors[code][index] = divisor;
+					this.Reciprocals[code][index] = ((1L << RECIPROCAL_BITS) + divisor - 1) / divisor;
+					index++;
+				}
+			}
+		}
 	}
 
 	/*
-	 * This method quantitizes data and rounds it to the nearest integer.
+	 * This method quantitizes data of the float method and rounds it to the nearest integer. The 64
+	 * coefficients are written into outputData starting at offset.
 	 */
-	public int[] quantizeBlock(final double inputData[][], final int code) {
-		final int outputData[] = new int[this.N * this.N];
-		int i, j;
-		int index;
-		index = 0;
-		for (i = 0; i < 8; i++) {
-			for (j = 0; j < 8; j++) {
-				// The second line results in significantly better compression.
-				outputData[index] = (int) Math.round(inputData[i][j] * ((double[]) this.Divisors[code])[index]);
-				// outputData[index] = (int)(((inputData[i][j] * (((double[])
-				// (Divisors[code]))[index])) + 16384.5) -16384);
-				index++;
-			}
+	public int[] quantizeBlock(final double inputData[], final int code, final int outputData[], final int offset) {
+		final double divisors[] = this.Divisors[code];
+		for (int index = 0; index < 64; index++) {
+			// The second line results in significantly better compression.
+			outputData[offset + index] = (int) Math.round(inputData[index] * divisors[index]);
+			// outputData[index] = (int)(((inputData[i][j] * (((double[])
+			// (Divisors[code]))[index])) + 16384.5) -16384);
 		}
 
 		return outputData;
 	}
 
 	/*
-	 * This is the method for quantizing a block DCT'ed with forwardDCTExtreme This method
-	 * quantitizes data and rounds it to the nearest integer.
+	 * This method quantitizes data of the fixed-point method and rounds it to the nearest integer,
+	 * like the division in the IJG library. The division is done by multiplying with the
+	 * precomputed reciprocal of each divisor, which is exact for all values a block can have.
 	 */
-	public int[] quantizeBlockExtreme(final double inputData[][], final int code) {
-		final int outputData[] = new int[this.N * this.N];
-		int i, j;
-		int index;
-		index = 0;
-		for (i = 0; i < 8; i++) {
-			for (j = 0; j < 8; j++) {
-				outputData[index] = (int) Math.round(inputData[i][j] / ((int[]) this.quantum[code])[index]);
-				index++;
-			}
+	public int[] quantizeBlock(final int inputData[], final int code, final int outputData[], final int offset) {
+		final int divisors[] = this.IntegerDivisors[code];
+		final long reciprocals[] = this.Reciprocals[code];
+		for (int index = 0; index < 64; index++) {
+			// Divides the magnitude and restores the sign without branching
+			final int sign = inputData[index] >> 31;
+			final long magnitude = (inputData[index] ^ sign) - sign + (divisors[index] >> 1);
+			final int quotient = (int) (magnitude * reciprocals[index] >>> RECIPROCAL_BITS);
+			outputData[offset + index] = (quotient ^ sign) - sign;
 		}
 
 		return outputData;
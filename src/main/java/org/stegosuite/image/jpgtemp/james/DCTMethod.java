@@ -0,0 +1,19 @@
+package org.stegosuite.image.jpgtemp.james;
+
+/**
+ * The DCT and quantization methods of the encoder. Decoders and F5 extraction read the quantized
+ * coefficients of any method, only the coefficients an image is embedded into differ.
+ */
+public enum DCTMethod {
+
+	/**
+	 * AAN float method, the encoder's original output
+	 */
+	FLOAT,
+
+	/**
+	 * Fixed-point AAN method with reciprocal quantization, using integer arithmetic only. Some
+	 * coefficients differ by one from {@link #FLOAT}, which changes the capacity slightly.
+	 */
+	INTEGER
+}
@@ -25,17 +25,18 @@ import org.stegosuite.image.jpgtemp.net.f5.crypt.F5Random;
 import org.stegosuite.image.jpgtemp.net.f5.crypt.Permutation;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
- * JpegEncoder - The JPEG main program which performs a jpeg compression of an image.
+ * JpegEncoder - The JPEG main program which performs a jpeg compression of an image. BufferedImages
+ * are encoded without an AWT toolkit, so the encoder works in headless mode.
  */
-@SuppressWarnings({ "unused", "serial" })
-public class JpegEncoder
-		extends Frame {
+@SuppressWarnings("unused")
+public class JpegEncoder {
 
 	private static final Logger LOG = LoggerFactory.getLogger(JpegEncoder.class);
 
@@ -47,6 +48,13 @@ public class JpegEncoder
 
 	JpegInfo JpegObj;
 
+	/**
+	 * The quantized coefficients to write
+	 */
+	CoefficientPlane plane;
+
+	String comment;
+
 	Huffman Huf;
 
 	DCT dct;
@@ -69,28 +77,65 @@ public class JpegEncoder
 	int n = 0;
 
 	public JpegEncoder(final Image image, final int quality, final OutputStream out, final String comment) {
-		final MediaTracker tracker = new MediaTracker(this);
+		/*
+		 * Quality of the image. 0 to 100 and from bad image quality, high compression to good image
+		 * quality low compression
+		 */
+		init(new CoefficientPlane(toBufferedImage(image), quality), out, comment);
+	}
+
+	/**
+	 * Creates an encoder that writes the coefficients of a plane, which may be shared with other
+	 * encoders
+	 *
+	 * @param plane
+	 * @param out
+	 * @param comment
+	 */
+	public JpegEncoder(final CoefficientPlane plane, final OutputStream out, final String comment) {
+		init(plane, out, comment);
+	}
+
+	/**
+	 * Returns the image as BufferedImage. Other images, such as the ones loaded by the AWT
+	 * toolkit, are waited for and drawn into a new BufferedImage.
+	 *
+	 * @param image
+	 * @return
+	 */
+	static BufferedImage toBufferedImage(final Image image) {
+		if (image instanceof BufferedImage) {
+			return (BufferedImage) image;
+		}
+		final MediaTracker tracker = new MediaTracker(new Canvas());
 		tracker.addImage(image, 0);
 		try {
 			tracker.waitForID(0);
 		} catch (final InterruptedException e) {
 			// Got to do something?
 		}
-		/*
-		 * Quality of the image. 0 to 100 and from bad image quality, high compression to good image
-		 * quality low compression
-		 */
-		this.Quality = quality;
+		final BufferedImage bufferedImage = new BufferedImage(image.getWidth(null), image.getHeight(null),
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics2D graphics = bufferedImage.createGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return bufferedImage;
+	}
+
+	private void init(final CoefficientPlane plane, final OutputStream out, final String comment) {
+		this.plane = plane;
+		this.Quality = plane.quality;
 
 		/*
 		 * Getting picture information It takes the Width, Height and RGB scans of the image.
 		 */
-		this.JpegObj = new JpegInfo(image, comment);
+		this.JpegObj = plane.info;
+		this.comment = comment == null ? "" : comment;
 
 		this.imageHeight = this.JpegObj.imageHeight;
 		this.imageWidth = this.JpegObj.imageWidth;
 		this.outStream = new BufferedOutputStream(out);
-		this.dct = new DCT(this.Quality);
+		this.dct = plane.dct;
 		this.Huf = new Huffman(this.imageWidth, this.imageHeight);
 	}
 
@@ -116,7 +161,13 @@ public class JpegEncoder
 	}
 
 	public void setQuality(final int quality) {
-		this.dct = new DCT(quality);
+		if (this.JpegObj.imageobj == null) {
+			throw new IllegalStateException("The coefficients were decoded from a file");
+		}
+		this.plane = new CoefficientPlane(this.JpegObj.imageobj, quality, this.plane.method);
+		this.Quality = quality;
+		this.JpegObj = this.plane.info;
+		this.dct = this.plane.dct;
 	}
 
 	void WriteArray(final byte[] data, final BufferedOutputStream out) {
@@ -131,176 +182,28 @@ public class JpegEncoder
 	}
 
 	public void WriteCompressedData(final BufferedOutputStream outStream) {
-		final int offset;
-		int i, j, r, c, a, b;
-		final int temp = 0;
-		int comp, xpos, ypos, xblockoffset, yblockoffset;
-		float inputArray[][];
-		final float dctArray1[][] = new float[8][8];
-		double dctArray2[][] = new double[8][8];
+		int i, j, r, c, comp;
 		int dctArray3[] = new int[8 * 8];
 
 		/*
-		 * This method controls the compression of the image. Starting at the upper left of the
-		 * image, it compresses 8x8 blocks of data until the entire image has been compressed.
+		 * The coefficients of all 8x8 blocks have been computed by the coefficient plane, starting
+		 * at the upper left of the image.
 		 */
 
 		final int lastDCvalue[] = new int[this.JpegObj.NumberOfComponents];
-		final int zeroArray[] = new int[64]; // initialized to hold all zeros
-		int Width = 0, Height = 0;
-		final int nothing = 0, not;
-		int MinBlockWidth, MinBlockHeight;
-		// This initial setting of MinBlockWidth and MinBlockHeight is done to
-		// ensure they start with values larger than will actually be the case.
-		MinBlockWidth = this.imageWidth % 8 != 0 ? (int) (Math.floor(this.imageWidth / 8.0) + 1) * 8 : this.imageWidth;
-		MinBlockHeight = this.imageHeight % 8 != 0 ? (int) (Math.floor(this.imageHeight / 8.0) + 1) * 8
-				: this.imageHeight;
-		for (comp = 0; comp < this.JpegObj.NumberOfComponents; comp++) {
-			MinBlockWidth = Math.min(MinBlockWidth, this.JpegObj.BlockWidth[comp]);
-			MinBlockHeight = Math.min(MinBlockHeight, this.JpegObj.BlockHeight[comp]);
-		}
-		xpos = 0;
-		// westfeld
-		// Before we enter these loops, we initialise the
-		// coeff for steganography here:
+		final int MinBlockWidth = this.plane.mcuColumns;
+		final int MinBlockHeight = this.plane.mcuRows;
 		int shuffledIndex = 0;
-		int coeffCount = 0;
-		for (r = 0; r < MinBlockHeight; r++) {
-			for (c = 0; c < MinBlockWidth; c++) {
-				for (comp = 0; comp < this.JpegObj.NumberOfComponents; comp++) {
-					for (i = 0; i < this.JpegObj.VsampFactor[comp]; i++) {
-						for (j = 0; j < this.JpegObj.HsampFactor[comp]; j++) {
-							coeffCount += 64;
-						}
-					}
-				}
-			}
-		}
-		final int coeff[] = new int[coeffCount];
-
-		//LOG.debug("DCT/quantisation starts");
-		LOG.debug(this.imageWidth + " x " + this.imageHeight);
-		for (r = 0; r < MinBlockHeight; r++) {
-			for (c = 0; c < MinBlockWidth; c++) {
-				xpos = c * 8;
-				ypos = r * 8;
-				for (comp = 0; comp < this.JpegObj.NumberOfComponents; comp++) {
-					Width = this.JpegObj.BlockWidth[comp];
-					Height = this.JpegObj.BlockHeight[comp];
-					inputArray = (float[][]) this.JpegObj.Components[comp];
-
-					for (i = 0; i < this.JpegObj.VsampFactor[comp]; i++) {
-						for (j = 0; j < this.JpegObj.HsampFactor[comp]; j++) {
-							xblockoffset = j * 8;
-							yblockoffset = i * 8;
-							for (a = 0; a < 8; a++) {
-								for (b = 0; b < 8; b++) {
-
-									// I believe this is where the dirty line at
-									// the bottom of the image is
-									// coming from. I need to do a check here to
-									// make sure I'm not reading past
-									// image data.
-									// This seems to not be a big issue right
-									// now. (04/04/98)
-
-									// westfeld - dirty line fixed, Jun 6 2000
-									int ia = ypos * this.JpegObj.VsampFactor[comp] + yblockoffset + a;
-									int ib = xpos * this.JpegObj.HsampFactor[comp] + xblockoffset + b;
-									if (this.imageHeight / 2 * this.JpegObj.VsampFactor[comp] <= ia) {
-										ia = this.imageHeight / 2 * this.JpegObj.VsampFactor[comp] - 1;
-									}
-									if (this.imageWidth / 2 * this.JpegObj.HsampFactor[comp] <= ib) {
-										ib = this.imageWidth / 2 * this.JpegObj.HsampFactor[comp] - 1;
-									}
-									// dctArray1[a][b] = inputArray[ypos +
-									// yblockoffset + a][xpos + xblockoffset +
-									// b];
-									dctArray1[a][b] = inputArray[ia][ib];
-								}
-							}
-							// The following code commented out because on some
-							// images this technique
-							// results in poor right and bottom borders.
-							// if ((!JpegObj.lastColumnIsDummy[comp] || c <
-							// Width - 1) && (!JpegObj.lastRowIsDummy[comp] || r
-							// < Height - 1)) {
-							dctArray2 = this.dct.forwardDCT(dctArray1);
-							dctArray3 = this.dct.quantizeBlock(dctArray2, this.JpegObj.QtableNumber[comp]);
-							// }
-							// else {
-							// zeroArray[0] = dctArray3[0];
-							// zeroArray[0] = lastDCvalue[comp];
-							// dctArray3 = zeroArray;
-							// }
-							// westfeld
-							// For steganography, all dct
-							// coefficients are collected in
-							// coeff[] first. We do not encode
-							// any Huffman Blocks here (we'll do
-							// this later).
-							System.arraycopy(dctArray3, 0, coeff, shuffledIndex, 64);
-							shuffledIndex += 64;
-
-						}
-					}
-				}
-			}
-		}
-//		LOG.debug("got " + coeffCount + " DCT AC/DC coefficients");
+		final int coeffCount = this.plane.getCoefficientCount();
+		// westfeld
+		// For steganography, all dct coefficients are collected in coeff[]
+		// first. Embedding changes them, so it works on a copy of the plane.
+		final int coeff[] = this.embeddedData != null ? this.plane.copyCoefficients() : this.plane.getCoefficients();
 		int _changed = 0;
 		int _embedded = 0;
 		int _examined = 0;
-		int _expected = 0;
-		int _one = 0;
-		int _large = 0;
 		int _thrown = 0;
-		int _zero = 0;
-		for (i = 0; i < coeffCount; i++) {
-			if (i % 64 == 0) {
-				continue;
-			}
-			if (coeff[i] == 1) {
-				_one++;
-			}
-			if (coeff[i] == -1) {
-				_one++;
-			}
-			if (coeff[i] == 0) {
-				_zero++;
-			}
-		}
-		_large = coeffCount - _zero - _one - coeffCount / 64;
-		_expected = _large + (int) (0.49 * _one);
-		//
-		// System.out.println("zero="+_zero);
-//		LOG.debug("one=" + _one);
-//		LOG.debug("large=" + _large);
-		//
-		LOG.debug("expected capacity: " + _expected + " bits");
-//		System.out.println("expected capacity with");
-		for (i = 1; i < 8; i++) {
-			int usable, changed, n;
-			n = (1 << i) - 1;
-			usable = _expected * i / n - _expected * i / n % n;
-			changed = coeffCount - _zero - coeffCount / 64;
-			changed = changed * i / n - changed * i / n % n;
-			changed = n * changed / (n + 1) / i;
-			//
-			changed = _large - _large % (n + 1);
-			changed = (changed + _one + _one / 2 - _one / (n + 1)) / (n + 1);
-			usable /= 8;
-			if (usable == 0) {
-				break;
-			}
-			if (i == 1) {
-//				LOG.debug("default");
-			} else {
-//				LOG.debug("(1, " + n + ", " + i + ")");
-			}
-//			LOG.debug(" code: " + usable + " bytes (efficiency: " + usable * 8 / changed + "."
-//					+ usable * 80 / changed % 10 + " bits per change)");
-		}
+		final int _expected = this.plane.getExpectedBits();
 
 		// westfeld
 		if (this.embeddedData != null) {
@@ -603,36 +506,45 @@ public class JpegEncoder
 		JFIF[16] = (byte) 0x00;
 		JFIF[17] = (byte) 0x00;
 
-		if (this.JpegObj.getComment().equals("JPEG Encoder Copyright 1998, James R. Weeks and BioElectroMech.  ")) {
+		if (this.comment.equals("JPEG Encoder Copyright 1998, James R. Weeks and BioElectroMech.  ")) {
 			JFIF[10] = (byte) 0x00; // 1.00
 		}
 		WriteArray(JFIF, out);
 
 		// Comment Header
-		String comment = new String();
-		comment = this.JpegObj.getComment();
-		length = comment.length();
+		length = this.comment.length();
 		if (length != 0) {
 			final byte COM[] = new byte[length + 4];
 			COM[0] = (byte) 0xFF;
 			COM[1] = (byte) 0xFE;
 			COM[2] = (byte) (length >> 8 & 0xFF);
 			COM[3] = (byte) (length & 0xFF);
-			java.lang.System.arraycopy(this.JpegObj.Comment.getBytes(), 0, COM, 4, this.JpegObj.Comment.length());
+			java.lang.System.arraycopy(this.comment.getBytes(), 0, COM, 4, this.comment.length());
 			WriteArray(COM, out);
 		}
 
 		// The DQT header
-		// 0 is the luminance index and 1 is the chrominance index
-		final byte DQT[] = new byte[134];
+		// 0 is the luminance index and 1 is the chrominance index, planes decoded
+		// from a file keep the table numbers of the file
+		int tables = 0;
+		for (i = 0; i < this.plane.quantum.length; i++) {
+			if (this.plane.quantum[i] != null) {
+				tables++;
+			}
+		}
+		length = 2 + tables * 65;
+		final byte DQT[] = new byte[length + 2];
 		DQT[0] = (byte) 0xFF;
 		DQT[1] = (byte) 0xDB;
-		DQT[2] = (byte) 0x00;
-		DQT[3] = (byte) 0x84;
+		DQT[2] = (byte) (length >> 8 & 0xFF);
+		DQT[3] = (byte) (length & 0xFF);
 		offset = 4;
-		for (i = 0; i < 2; i++) {
+		for (i = 0; i < this.plane.quantum.length; i++) {
+			tempArray = this.plane.quantum[i];
+			if (tempArray == null) {
+				continue;
+			}
 			DQT[offset++] = (byte) ((0 << 4) + i);
-			tempArray = (int[]) this.dct.quantum[i];
 			for (j = 0; j < 64; j++) {
 				DQT[offset++] = (byte) tempArray[jpegNaturalOrder[j]];
 			}
@@ -640,11 +552,11 @@ public class JpegEncoder
 		WriteArray(DQT, out);
 
 		// Start of Frame Header
-		final byte SOF[] = new byte[19];
+		final byte SOF[] = new byte[10 + 3 * this.JpegObj.NumberOfComponents];
 		SOF[0] = (byte) 0xFF;
 		SOF[1] = (byte) 0xC0;
 		SOF[2] = (byte) 0x00;
-		SOF[3] = (byte) 17;
+		SOF[3] = (byte) (SOF.length - 2);
 		SOF[4] = (byte) this.JpegObj.Precision;
 		SOF[5] = (byte) (this.JpegObj.imageHeight >> 8 & 0xFF);
 		SOF[6] = (byte) (this.JpegObj.imageHeight & 0xFF);
@@ -694,11 +606,11 @@ public class JpegEncoder
 		WriteArray(DHT4, out);
 
 		// Start of Scan Header
-		final byte SOS[] = new byte[14];
+		final byte SOS[] = new byte[8 + 2 * this.JpegObj.NumberOfComponents];
 		SOS[0] = (byte) 0xFF;
 		SOS[1] = (byte) 0xDA;
 		SOS[2] = (byte) 0x00;
-		SOS[3] = (byte) 12;
+		SOS[3] = (byte) (SOS.length - 2);
 		SOS[4] = (byte) this.JpegObj.NumberOfComponents;
 		index = 5;
 		for (i = 0; i < SOS[4]; i++) {
@@ -724,153 +636,6 @@ public class JpegEncoder
 	 * returns capacity in bytes
 	 */
 	public int getCapacity() {
-		final int offset;
-		int i, j, r, c, a, b;
-		final int temp = 0;
-		int comp, xpos, ypos, xblockoffset, yblockoffset;
-		float inputArray[][];
-		final float dctArray1[][] = new float[8][8];
-		double dctArray2[][] = new double[8][8];
-		int dctArray3[] = new int[8 * 8];
-
-		/*
-		 * This method controls the compression of the image. Starting at the upper left of the
-		 * image, it compresses 8x8 blocks of data until the entire image has been compressed.
-		 */
-
-		final int lastDCvalue[] = new int[this.JpegObj.NumberOfComponents];
-		final int zeroArray[] = new int[64]; // initialized to hold all zeros
-		int Width = 0, Height = 0;
-		final int nothing = 0, not;
-		int MinBlockWidth, MinBlockHeight;
-		// This initial setting of MinBlockWidth and MinBlockHeight is done to
-		// ensure they start with values larger than will actually be the case.
-		MinBlockWidth = this.imageWidth % 8 != 0 ? (int) (Math.floor(this.imageWidth / 8.0) + 1) * 8 : this.imageWidth;
-		MinBlockHeight = this.imageHeight % 8 != 0 ? (int) (Math.floor(this.imageHeight / 8.0) + 1) * 8
-				: this.imageHeight;
-		for (comp = 0; comp < this.JpegObj.NumberOfComponents; comp++) {
-			MinBlockWidth = Math.min(MinBlockWidth, this.JpegObj.BlockWidth[comp]);
-			MinBlockHeight = Math.min(MinBlockHeight, this.JpegObj.BlockHeight[comp]);
-		}
-		xpos = 0;
-		// westfeld
-		// Before we enter these loops, we initialise the
-		// coeff for steganography here:
-		int shuffledIndex = 0;
-		int coeffCount = 0;
-		for (r = 0; r < MinBlockHeight; r++) {
-			for (c = 0; c < MinBlockWidth; c++) {
-				for (comp = 0; comp < this.JpegObj.NumberOfComponents; comp++) {
-					for (i = 0; i < this.JpegObj.VsampFactor[comp]; i++) {
-						for (j = 0; j < this.JpegObj.HsampFactor[comp]; j++) {
-							coeffCount += 64;
-						}
-					}
-				}
-			}
-		}
-		final int coeff[] = new int[coeffCount];
-
-//		LOG.debug("DCT/quantisation starts");
-//		LOG.debug(this.imageWidth + " x " + this.imageHeight);
-		for (r = 0; r < MinBlockHeight; r++) {
-			for (c = 0; c < MinBlockWidth; c++) {
-				xpos = c * 8;
-				ypos = r * 8;
-				for (comp = 0; comp < this.JpegObj.NumberOfComponents; comp++) {
-					Width = this.JpegObj.BlockWidth[comp];
-					Height = this.JpegObj.BlockHeight[comp];
-					inputArray = (float[][]) this.JpegObj.Components[comp];
-
-					for (i = 0; i < this.JpegObj.VsampFactor[comp]; i++) {
-						for (j = 0; j < this.JpegObj.HsampFactor[comp]; j++) {
-							xblockoffset = j * 8;
-							yblockoffset = i * 8;
-							for (a = 0; a < 8; a++) {
-								for (b = 0; b < 8; b++) {
-
-									// I believe this is where the dirty line at
-									// the bottom of the image is
-									// coming from. I need to do a check here to
-									// make sure I'm not reading past
-									// image data.
-									// This seems to not be a big issue right
-									// now. (04/04/98)
-
-									// westfeld - dirty line fixed, Jun 6 2000
-									int ia = ypos * this.JpegObj.VsampFactor[comp] + yblockoffset + a;
-									int ib = xpos * this.JpegObj.HsampFactor[comp] + xblockoffset + b;
-									if (this.imageHeight / 2 * this.JpegObj.VsampFactor[comp] <= ia) {
-										ia = this.imageHeight / 2 * this.JpegObj.VsampFactor[comp] - 1;
-									}
-									if (this.imageWidth / 2 * this.JpegObj.HsampFactor[comp] <= ib) {
-										ib = this.imageWidth / 2 * this.JpegObj.HsampFactor[comp] - 1;
-									}
-									// dctArray1[a][b] = inputArray[ypos +
-									// yblockoffset + a][xpos + xblockoffset +
-									// b];
-									dctArray1[a][b] = inputArray[ia][ib];
-								}
-							}
-							// The following code commented out because on some
-							// images this technique
-							// results in poor right and bottom borders.
-							// if ((!JpegObj.lastColumnIsDummy[comp] || c <
-							// Width - 1) && (!JpegObj.lastRowIsDummy[comp] || r
-							// < Height - 1)) {
-							dctArray2 = this.dct.forwardDCT(dctArray1);
-							dctArray3 = this.dct.quantizeBlock(dctArray2, this.JpegObj.QtableNumber[comp]);
-							// }
-							// else {
-							// zeroArray[0] = dctArray3[0];
-							// zeroArray[0] = lastDCvalue[comp];
-							// dctArray3 = zeroArray;
-							// }
-							// westfeld
-							// For steganography, all dct
-							// coefficients are collected in
-							// coeff[] first. We do not encode
-							// any Huffman Blocks here (we'll do
-							// this later).
-							System.arraycopy(dctArray3, 0, coeff, shuffledIndex, 64);
-							shuffledIndex += 64;
-
-						}
-					}
-				}
-			}
-		}
-//		LOG.debug("got " + coeffCount + " DCT AC/DC coefficients");
-		int _changed = 0;
-		int _embedded = 0;
-		int _examined = 0;
-		int _expected = 0;
-		int _one = 0;
-		int _large = 0;
-		int _thrown = 0;
-		int _zero = 0;
-		for (i = 0; i < coeffCount; i++) {
-			if (i % 64 == 0) {
-				continue;
-			}
-			if (coeff[i] == 1) {
-				_one++;
-			}
-			if (coeff[i] == -1) {
-				_one++;
-			}
-			if (coeff[i] == 0) {
-				_zero++;
-			}
-		}
-		_large = coeffCount - _zero - _one - coeffCount / 64;
-		_expected = _large + (int) (0.49 * _one);
-		//
-		// System.out.println("zero="+_zero);
-//		LOG.debug("one=" + _one);
-//		LOG.debug("large=" + _large);
-		//
-//		LOG.debug("expected capacity: " + _expected + " bits");
-		return (_expected / 8);
+		return this.plane.getCapacity();
 	}
 }
@@ -14,18 +14,24 @@
 
 package org.stegosuite.image.jpgtemp.james;
 
-import java.awt.*;
-import java.awt.image.PixelGrabber;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 
 /**
  * JpegInfo - Given an image, sets default information about it and divides it into its constituant
- * components, downsizing those that need to be.
+ * components, downsizing those that need to be. The pixels are read from the raster of the image,
+ * which works without an AWT toolkit.
  */
 class JpegInfo {
 
 	String Comment;
 
-	public Image imageobj;
+	/**
+	 * Number of pixels read from the image at once
+	 */
+	private static final int STRIP_PIXELS = 1 << 16;
+
+	public BufferedImage imageobj;
 
 	public int imageHeight;
 
@@ -74,21 +80,55 @@ class JpegInfo {
 
 	public int MaxVsampFactor;
 
-	public JpegInfo(final Image image, final String comment) {
+	public JpegInfo(final BufferedImage image, final String comment) {
 		this.Components = new Object[this.NumberOfComponents];
 		this.compWidth = new int[this.NumberOfComponents];
 		this.compHeight = new int[this.NumberOfComponents];
 		this.BlockWidth = new int[this.NumberOfComponents];
 		this.BlockHeight = new int[this.NumberOfComponents];
 		this.imageobj = image;
-		this.imageWidth = image.getWidth(null);
-		this.imageHeight = image.getHeight(null);
+		this.imageWidth = image.getWidth();
+		this.imageHeight = image.getHeight();
 		// Comment =
 		// "JPEG Encoder Copyright 1998, James R. Weeks and BioElectroMech. ";
 		this.Comment = comment;
 		getYCCArray();
 	}
 
+	/**
+	 * Creates the information of a decoded JPEG file. There is no image and there are no
+	 * components, the coefficients are read from the file.
+	 *
+	 * @param width
+	 * @param height
+	 * @param compID the component identifiers of the frame
+	 * @param hsamp
+	 * @param vsamp
+	 * @param qtable the quantization table of each component
+	 */
+	JpegInfo(final int width, final int height, final int[] compID, final int[] hsamp, final int[] vsamp,
+			final int[] qtable) {
+		this.imageWidth = width;
+		this.imageHeight = height;
+		this.Comment = "";
+		this.NumberOfComponents = compID.length;
+		this.CompID = compID;
+		this.HsampFactor = hsamp;
+		this.VsampFactor = vsamp;
+		this.QtableNumber = qtable;
+		// The encoder has a luminance and a chrominance Huffman table
+		this.DCtableNumber = new int[this.NumberOfComponents];
+		this.ACtableNumber = new int[this.NumberOfComponents];
+		this.MaxHsampFactor = 1;
+		this.MaxVsampFactor = 1;
+		for (int comp = 0; comp < this.NumberOfComponents; comp++) {
+			this.DCtableNumber[comp] = comp == 0 ? 0 : 1;
+			this.ACtableNumber[comp] = comp == 0 ? 0 : 1;
+			this.MaxHsampFactor = Math.max(this.MaxHsampFactor, hsamp[comp]);
+			this.MaxVsampFactor = Math.max(this.MaxVsampFactor, vsamp[comp]);
+		}
+	}
+
 	float[][] DownSample(final float[][] C, final int comp) {
 		int inrow, incol;
 		int outrow, outcol;
@@ -124,18 +164,7 @@ class JpegInfo {
 	 */
 
 	private void getYCCArray() {
-		final int values[] = new int[this.imageWidth * this.imageHeight];
 		int r, g, b, y, x;
-		// In order to minimize the chance that grabPixels will throw an
-		// exception
-		// it may be necessary to grab some pixels every few scanlines and
-		// process
-		// those before going for more. The time expense may be prohibitive.
-		// However, for a situation where memory overhead is a concern, this may
-		// be
-		// the only choice.
-		final PixelGrabber grabber = new PixelGrabber(this.imageobj.getSource(), 0, 0, this.imageWidth,
-				this.imageHeight, values, 0, this.imageWidth);
 		this.MaxHsampFactor = 1;
 		this.MaxVsampFactor = 1;
 		for (y = 0; y < this.NumberOfComponents; y++) {
@@ -160,42 +189,56 @@ class JpegInfo {
 			}
 			this.BlockHeight[y] = (int) Math.ceil(this.compHeight[y] / 8.0);
 		}
-		try {
-			if (grabber.grabPixels() != true) {
-				try {
-					throw new AWTException("Grabber returned false: " + grabber.getStatus());
-				} catch (final Exception e) {}
-
-			}
-		} catch (final InterruptedException e) {}
 
 		final float Y[][] = new float[this.compHeight[0]][this.compWidth[0]];
 		final float Cr1[][] = new float[this.compHeight[0]][this.compWidth[0]];
 		final float Cb1[][] = new float[this.compHeight[0]][this.compWidth[0]];
 		float Cb2[][] = new float[this.compHeight[1]][this.compWidth[1]];
 		float Cr2[][] = new float[this.compHeight[2]][this.compWidth[2]];
-		int index = 0;
-		for (y = 0; y < this.imageHeight; ++y) {
-			for (x = 0; x < this.imageWidth; ++x) {
-				r = values[index] >> 16 & 0xff;
-				g = values[index] >> 8 & 0xff;
-				b = values[index] & 0xff;
-
-				// The following three lines are a more correct color conversion
-				// but
-				// the current conversion technique is sufficient and results in
-				// a higher
-				// compression rate.
-				// Y[y][x] = 16 + (float)(0.8588*(0.299 * (float)r + 0.587 *
-				// (float)g + 0.114 * (float)b ));
-				// Cb1[y][x] = 128 + (float)(0.8784*(-0.16874 * (float)r -
-				// 0.33126 * (float)g + 0.5 * (float)b));
-				// Cr1[y][x] = 128 + (float)(0.8784*(0.5 * (float)r - 0.41869 *
-				// (float)g - 0.08131 * (float)b));
-				Y[y][x] = (float) (0.299 * r + 0.587 * g + 0.114 * b);
-				Cb1[y][x] = 128 + (float) (-0.16874 * r - 0.33126 * g + 0.5 * b);
-				Cr1[y][x] = 128 + (float) (0.5 * r - 0.41869 * g - 0.08131 * b);
-				index++;
+		// The pixels are read in strips of rows straight from the raster, so that there is no copy
+		// of the whole image and no image producer
+		final WritableRaster raster = this.imageobj.getRaster();
+		final boolean rgbSamples = hasRGBSamples(this.imageobj);
+		final int stripHeight = Math.max(1, Math.min(this.imageHeight, STRIP_PIXELS / Math.max(1, this.imageWidth)));
+		final int[] strip = new int[stripHeight * this.imageWidth * (rgbSamples ? raster.getNumBands() : 1)];
+		for (int stripY = 0; stripY < this.imageHeight; stripY += stripHeight) {
+			final int rows = Math.min(stripHeight, this.imageHeight - stripY);
+			if (rgbSamples) {
+				raster.getPixels(0, stripY, this.imageWidth, rows, strip);
+			} else {
+				this.imageobj.getRGB(0, stripY, this.imageWidth, rows, strip, 0, this.imageWidth);
+			}
+			final int bands = raster.getNumBands();
+			int index = 0;
+			for (y = stripY; y < stripY + rows; ++y) {
+				for (x = 0; x < this.imageWidth; ++x) {
+					if (rgbSamples) {
+						r = strip[index];
+						g = strip[index + 1];
+						b = strip[index + 2];
+						index += bands;
+					} else {
+						r = strip[index] >> 16 & 0xff;
+						g = strip[index] >> 8 & 0xff;
+						b = strip[index] & 0xff;
+						index++;
+					}
+
+					// The following three lines are a more correct color conversion
+					// but
+					// the current conversion technique is sufficient and results in
+					// a higher
+					// compression rate.
+					// Y[y][x] = 16 + (float)(0.8588*(0.299 * (float)r + 0.587 *
+					// (float)g + 0.114 * (float)b ));
+					// Cb1[y][x] = 128 + (float)(0.8784*(-0.16874 * (float)r -
+					// 0.33126 * (float)g + 0.5 * (float)b));
+					// Cr1[y][x] = 128 + (float)(0.8784*(0.5 * (float)r - 0.41869 *
+					// (float)g - 0.08131 * (float)b));
+					Y[y][x] = (float) (0.299 * r + 0.587 * g + 0.114 * b);
+					Cb1[y][x] = 128 + (float) (-0.16874 * r - 0.33126 * g + 0.5 * b);
+					Cr1[y][x] = 128 + (float) (0.5 * r - 0.41869 * g - 0.08131 * b);
+				}
 			}
 		}
 
@@ -213,6 +256,26 @@ class JpegInfo {
 		this.Components[2] = Cr2;
 	}
 
+	/**
+	 * Returns true if the raster of the image holds 8 bit red, green and blue samples in its first
+	 * three bands, which then are the same values getRGB() returns
+	 *
+	 * @param image
+	 * @return
+	 */
+	private static boolean hasRGBSamples(final BufferedImage image) {
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_BGR:
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	public void setComment(final String comment) {
 		this.Comment.concat(comment);
 	}
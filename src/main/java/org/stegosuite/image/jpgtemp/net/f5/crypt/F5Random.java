@@ -1,5 +1,6 @@
 package org.stegosuite.image.jpgtemp.net.f5.crypt;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 import org.slf4j.Logger;
@@ -16,13 +17,26 @@ public class F5Random {
     private final byte[] b;
 
     public F5Random(final String password) {
-        this.random = new SecureRandom();
+        this.random = newRandom();
         long seed = stringToNumber(password);
         LOG.debug("Seed: {}", seed);
         this.random.setSeed(seed);
         this.b = new byte[1];
     }
 
+    /**
+     * Returns a generator whose output only depends on the seed. The platform default, e.g.
+     * NativePRNG on Linux, mixes the seed with system entropy, so the extraction wouldn't find
+     * the permutation of the embedding.
+     */
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     // get a random byte
     public int getNextByte() {
         this.random.nextBytes(this.b);
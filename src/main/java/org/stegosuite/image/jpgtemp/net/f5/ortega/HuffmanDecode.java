@@ -444,8 +444,15 @@ public class HuffmanDecode {
 
 	private void dqt() {
 
-		// Read in quatization tables
-		this.Lq = getInt();
+		// Read in quatization tables, a segment may hold several of them
+		this.Lq = getInt() - 2;
+		while (this.Lq >= 65) {
+			this.Lq -= 65;
+			readQuantizationTable();
+		}
+	}
+
+	private void readQuantizationTable() {
 		this.Pq = getByte();
 		this.Tq = this.Pq & 0x0f;
 		this.Pq >>= 4;
@@ -0,0 +1,144 @@
+package org.stegosuite.model.payload;
+
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the bits of a byte array up to 64 at a time, in the same order as
+ * {@link org.stegosuite.util.ByteUtils#iterateBits(byte[], ByteOrder)} yields them. Multiple bits
+ * are returned right-aligned with the first bit in the most significant position.
+ */
+public class BitCursor {
+
+	/**
+	 * The bit stream, bit i is stored in bit {@code 63 - i % 64} of word {@code i / 64}
+	 */
+	private final long[] words;
+
+	private final long length;
+
+	/**
+	 * Position of the next bit to read
+	 */
+	private long position = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes
+	 * @param byteOrder ByteOrder.BIG_ENDIAN if the MSB of each byte comes first, ByteOrder.LITTLE_ENDIAN
+	 *        if the LSB comes first
+	 */
+	public BitCursor(byte[] bytes, ByteOrder byteOrder) {
+		this.length = bytes.length * 8L;
+		this.words = new long[(bytes.length + 7) / 8];
+		boolean reverse = byteOrder == ByteOrder.LITTLE_ENDIAN;
+		for (int i = 0; i < bytes.length; i++) {
+			long b = (reverse ? Integer.reverse(bytes[i]) >>> 24 : bytes[i]) & 0xFF;
+			words[i >>> 3] |= b << (56 - ((i & 7) << 3));
+		}
+	}
+
+	/**
+	 * Returns the total number of bits
+	 *
+	 * @return
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Returns the position of the next bit to read
+	 *
+	 * @return
+	 */
+	public long position() {
+		return position;
+	}
+
+	public long remaining() {
+		return length - position;
+	}
+
+	public boolean hasRemaining() {
+		return position < length;
+	}
+
+	/**
+	 * Reads the next bit
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 */
+	public int nextBit()
+			throws NoSuchElementException {
+		if (position >= length) {
+			throw new NoSuchElementException("No more bits to read");
+		}
+		int bit = (int) (words[(int) (position >>> 6)] >>> (63 - (position & 63))) & 1;
+		position++;
+		return bit;
+	}
+
+	/**
+	 * Reads the next n bits
+	 *
+	 * @param n Number of bits, between 0 and 64
+	 * @return
+	 * @throws NoSuchElementException if less than n bits remain
+	 */
+	public long nextBits(int n)
+			throws NoSuchElementException {
+		long bits = getBits(position, n);
+		position += n;
+		return bits;
+	}
+
+	/**
+	 * Reads n bits at the specified position without moving the cursor
+	 *
+	 * @param bitPosition
+	 * @param n Number of bits, between 0 and 64
+	 * @return
+	 * @throws NoSuchElementException if less than n bits remain after bitPosition
+	 */
+	public long getBits(long bitPosition, int n)
+			throws NoSuchElementException {
+		if (n < 0 || n > Long.SIZE) {
+			throw new IllegalArgumentException("Can only read 0 to 64 bits at once");
+		}
+		if (bitPosition < 0 || bitPosition + n > length) {
+			throw new NoSuchElementException("No more bits to read");
+		}
+		if (n == 0) {
+			return 0;
+		}
+
+		int wordIndex = (int) (bitPosition >>> 6);
+		int offset = (int) (bitPosition & 63);
+		long bits = words[wordIndex] << offset;
+		if (offset + n > Long.SIZE) {
+			bits |= words[wordIndex + 1] >>> (Long.SIZE - offset);
+		}
+		return bits >>> (Long.SIZE - n);
+	}
+
+	/**
+	 * Reads the next bits into the passed words, 64 bits per word with the first bit in the most
+	 * significant position. If less bits remain than fit into the words, the last word is padded
+	 * with zeros.
+	 *
+	 * @param target
+	 * @return The number of bits read
+	 */
+	public int fill(long[] target) {
+		int read = 0;
+		for (int i = 0; i < target.length; i++) {
+			int n = (int) Math.min(Long.SIZE, remaining());
+			target[i] = n == 0 ? 0 : nextBits(n) << (Long.SIZE - n);
+			read += n;
+		}
+		return read;
+	}
+}
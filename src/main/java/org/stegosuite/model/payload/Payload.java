@@ -31,6 +31,38 @@ public class Payload {
 	 */
 	public static final int LENGTH_NUM_BYTES = 3;
 
+	/**
+	 * First byte of a versioned header. A versioned header starts with this byte and the header
+	 * version, followed by the payload length. Payloads with header version 0 only have the length
+	 * field.
+	 */
+	public static final byte HEADER_MAGIC = 0x53;
+
+	/**
+	 * The number of bytes preceding the payload length in a versioned header
+	 */
+	public static final int VERSION_NUM_BYTES = 2;
+
+	/**
+	 * Returns the number of header bytes of a payload with the given header version
+	 *
+	 * @param headerVersion
+	 * @return
+	 */
+	public static int headerLength(int headerVersion) {
+		return (headerVersion == 0 ? 0 : VERSION_NUM_BYTES) + LENGTH_NUM_BYTES;
+	}
+
+	/**
+	 * Returns the bytes preceding the payload length in a header of the given version
+	 *
+	 * @param headerVersion
+	 * @return
+	 */
+	static byte[] versionBytes(int headerVersion) {
+		return headerVersion == 0 ? new byte[0] : new byte[] { HEADER_MAGIC, (byte) headerVersion };
+	}
+
 	/**
 	 * Default value if no stegano key is provided by user
 	 */
@@ -24,13 +24,25 @@ public class PayloadEmbedder {
 	private byte[] data = null;
 
 	/**
-	 * Constructor
+	 * Constructor for payloads with the original, unversioned header
 	 * @param payload The payload instance that hold the data to be embedded
 	 * @param capacity capacity according to the embeddingMethod
 	 * @throws SteganoEmbedException
 	 */
 	public PayloadEmbedder(Payload payload, int capacity)
 			throws SteganoEmbedException {
+		this(payload, capacity, 0);
+	}
+
+	/**
+	 * Constructor
+	 * @param payload The payload instance that hold the data to be embedded
+	 * @param capacity capacity according to the embeddingMethod
+	 * @param headerVersion version of the header to prepend, 0 for the original header
+	 * @throws SteganoEmbedException
+	 */
+	public PayloadEmbedder(Payload payload, int capacity, int headerVersion)
+			throws SteganoEmbedException {
 
 		if (payload.hasNoBlocks()) {
 			throw new SteganoEmbedException("No data to embed");
@@ -57,7 +69,8 @@ public class PayloadEmbedder {
 		}
 
 		// Prepend header
-		data = ByteUtils.concat(new byte[Payload.LENGTH_NUM_BYTES], packed);
+		byte[] versionBytes = Payload.versionBytes(headerVersion);
+		data = ByteUtils.concat(versionBytes, new byte[Payload.LENGTH_NUM_BYTES], packed);
 
 		// Check if we crossed the maximum supported payload size
 		int maxPayloadLength = (int) Math.pow(2, Payload.LENGTH_NUM_BYTES * 8);
@@ -74,7 +87,7 @@ public class PayloadEmbedder {
 
 		// Fill header with length and encryption flag
 		byte[] lengthBytes = Arrays.copyOfRange(ByteUtils.intToBytes(data.length), 4 - Payload.LENGTH_NUM_BYTES, 4);
-		data = ByteBuffer.wrap(data).put(lengthBytes).array();
+		data = ByteBuffer.wrap(data).put(versionBytes).put(lengthBytes).array();
 		
 		LOG.debug("lengthBytes-Array: {}",Arrays.toString(lengthBytes));
 		LOG.debug("data-Array: {}",Arrays.toString(data));
@@ -92,6 +105,15 @@ public class PayloadEmbedder {
 		return ByteUtils.iterateBits(data, Payload.BYTE_ORDER);
 	}
 
+	/**
+	 * Returns a cursor that reads the bits of the serialized payload, up to 64 bits at a time
+	 *
+	 * @return
+	 */
+	public BitCursor payloadBits() {
+		return new BitCursor(data, Payload.BYTE_ORDER);
+	}
+
 	/**
 	 * Returns the compiled payload bytes that should be embedded
 	 *
@@ -5,12 +5,12 @@ import org.slf4j.LoggerFactory;
 import org.stegosuite.model.exception.SteganoEncryptionException;
 import org.stegosuite.model.exception.SteganoExtractException;
 import org.stegosuite.model.exception.SteganoKeyException;
-import org.stegosuite.util.ByteUtils;
 import org.stegosuite.util.CompressionUtils;
 import org.stegosuite.util.CryptoUtils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 public class PayloadExtractor {
@@ -22,6 +22,32 @@ public class PayloadExtractor {
 	 */
 	private Payload payload = null;
 
+	/**
+	 * Version of the header the extracted data is expected to start with
+	 */
+	private int headerVersion = 0;
+
+	/**
+	 * The bytes expected to precede the payload length
+	 */
+	private byte[] versionBytes = null;
+
+	/**
+	 * Current position of the versionBytes array
+	 */
+	private int versionPos = 0;
+
+	/**
+	 * Set if the extracted data does not start with the expected header version, or if a versioned
+	 * header holds an impossible payload length
+	 */
+	private boolean rejected = false;
+
+	/**
+	 * The number of bytes the point sequence can hold, including the header
+	 */
+	private long capacity = Long.MAX_VALUE;
+
 	/**
 	 * Array of 4 bytes containing the total message length
 	 */
@@ -43,12 +69,12 @@ public class PayloadExtractor {
 	private int dataSizePos = 4 - Payload.LENGTH_NUM_BYTES;
 
 	/**
-	 * Buffer that holds the bits
+	 * The bits of the byte currently being assembled, in the order they have been processed
 	 */
-	private byte[] bits = new byte[8];
+	private int bits = 0;
 
 	/**
-	 * Current position of the bit
+	 * Number of bits of the byte currently being assembled
 	 */
 	private int dataSizeBitPos = 0;
 
@@ -58,57 +84,91 @@ public class PayloadExtractor {
 	private int dataPos = 0;
 
 	/**
-	 * Constructor
+	 * Set once all data has been extracted and the payload instance has been populated
+	 */
+	private boolean finished = false;
+
+	/**
+	 * Constructor for payloads with the original, unversioned header
 	 *
 	 * @param payload The payload instance that should be populated with the extracted data
 	 */
 	public PayloadExtractor(Payload payload) {
+		this(payload, 0);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param payload The payload instance that should be populated with the extracted data
+	 * @param headerVersion The header version the extracted data is expected to start with, 0 for
+	 *        the original header
+	 */
+	public PayloadExtractor(Payload payload, int headerVersion) {
 		this.payload = payload;
+		this.headerVersion = headerVersion;
+		this.versionBytes = Payload.versionBytes(headerVersion);
+	}
+
+	/**
+	 * Sets the number of bytes the point sequence can hold, including the header. A versioned
+	 * header whose payload length exceeds it is rejected, see {@link #isRejected()}.
+	 *
+	 * @param capacity
+	 */
+	public void setCapacity(long capacity) {
+		this.capacity = capacity;
 	}
 
 	/**
-	 * Signals whether the reader has processed all the data. If finished() returns true, (optional)
-	 * decryption and decompression is applied and the payload instance is fed with the extracted
-	 * data
+	 * Signals whether the reader has processed all the data. Once the last byte has been processed,
+	 * (optional) decryption and decompression is applied and the payload instance is fed with the
+	 * extracted data. Also returns true as soon as the header turns out to have a different version,
+	 * see {@link #isRejected()}.
 	 *
 	 * @return true if the payload instance is successfully populated with the extracted data
 	 * @throws SteganoExtractException
 	 */
 	public boolean finished()
 			throws SteganoExtractException {
+		return finished || rejected;
+	}
 
-		boolean finished = dataPos > 0 && dataPos == data.length;
-
-		if (finished && dataSizeBytes != null) {
-			LOG.debug("Unpacking payload from {} extracted bytes", ByteBuffer.wrap(dataSizeBytes).getInt());
+	/**
+	 * Decrypts and decompresses the extracted data and feeds the payload instance with it. Called
+	 * exactly once, after the last byte of the payload has been processed.
+	 *
+	 * @throws SteganoExtractException
+	 */
+	private void unpack()
+			throws SteganoExtractException {
 
-			byte[] payloadBytes = Arrays.copyOfRange(data, 0, data.length);
+		LOG.debug("Unpacking payload from {} extracted bytes", ByteBuffer.wrap(dataSizeBytes).getInt());
 
-			if (payload.getEncryptionPassword() == null) {
-				payload.setEncryptionPassword("");
-			}
+		byte[] payloadBytes = data;
 
-			try {
-				payloadBytes = CryptoUtils.decrypt(payloadBytes, payload.getEncryptionPassword());
-			} catch (Exception e) {
-				LOG.debug(e.getMessage());
-				throw new SteganoEncryptionException("Wrong decryption password.");
-			}
+		if (payload.getEncryptionPassword() == null) {
+			payload.setEncryptionPassword("");
+		}
 
-			try {
-				payloadBytes = CompressionUtils.decompress(payloadBytes);
-			} catch (IOException e) {
-				throw new SteganoKeyException();
-			}
+		try {
+			payloadBytes = CryptoUtils.decrypt(payloadBytes, payload.getEncryptionPassword());
+		} catch (Exception e) {
+			LOG.debug(e.getMessage());
+			throw new SteganoEncryptionException("Wrong decryption password.");
+		}
 
-			LOG.debug("Unpacked {} bytes of payload", payloadBytes.length);
+		try {
+			payloadBytes = CompressionUtils.decompress(payloadBytes);
+		} catch (IOException e) {
+			throw new SteganoKeyException();
+		}
 
-			payload.unpack(payloadBytes);
+		LOG.debug("Unpacked {} bytes of payload", payloadBytes.length);
 
-			dataSizeBytes = null;
-		}
+		payload.unpack(payloadBytes);
 
-		return finished;
+		finished = true;
 	}
 
 	/**
@@ -128,30 +188,94 @@ public class PayloadExtractor {
 			throw new SteganoExtractException("Cannot process byte while processing bits");
 		}
 
-		if (dataSizePos < 4) {
-			dataSizeBytes[dataSizePos] = b;
-			if (dataSizePos == 3) {
-				// The bytes containing the payload length have been processed,
-				// initialize main buffer for the encryption flag and the whole
-				// payload.
-				payloadLength = ByteBuffer.wrap(dataSizeBytes).getInt() - Payload.LENGTH_NUM_BYTES;
+		if (versionPos < versionBytes.length) {
+			rejected = b != versionBytes[versionPos++];
+		} else if (dataSizePos < 4) {
+			processDataSizeByte(b);
+		} else {
+			data[dataPos++] = b;
+			if (dataPos == data.length) {
+				unpack();
+			}
+		}
+	}
+
+	/**
+	 * Processes len bytes of the passed array, starting at off. Bytes beyond the end of the payload
+	 * are ignored.
+	 *
+	 * @param bytes
+	 * @param off
+	 * @param len
+	 * @throws SteganoExtractException
+	 */
+	public void processBytes(byte[] bytes, int off, int len)
+			throws SteganoExtractException {
 
-				// If (dataSize minus encryption flag byte) is negative it's a
-				// strong indicator that the stegano password was wrong
-				if (payloadLength - 1 < 0) {
-					throw new SteganoKeyException();
-				}
+		int end = off + len;
 
-				LOG.debug("Payload of {} bytes to be extracted", payloadLength + Payload.LENGTH_NUM_BYTES);
-				LOG.debug("Array: {}",Arrays.toString(dataSizeBytes));
+		// Header bytes
+		while (off < end && !finished() && dataSizePos < 4) {
+			processByte(bytes[off++]);
+		}
+
+		if (off == end || finished()) {
+			return;
+		}
+
+		if (dataSizeBitPos != 0) {
+			throw new SteganoExtractException("Cannot process byte while processing bits");
+		}
 
-				data = new byte[payloadLength];
-				dataPos = 0;
+		// Payload bytes are copied at once
+		int count = Math.min(end - off, data.length - dataPos);
+		System.arraycopy(bytes, off, data, dataPos, count);
+		dataPos += count;
+		if (dataPos == data.length) {
+			unpack();
+		}
+	}
+
+	/**
+	 * Stores a byte of the payload length and sets up the buffer for the payload once all of them
+	 * have been processed
+	 *
+	 * @param b
+	 * @throws SteganoExtractException
+	 */
+	private void processDataSizeByte(byte b)
+			throws SteganoExtractException {
+
+		dataSizeBytes[dataSizePos] = b;
+		if (dataSizePos == 3) {
+			// The bytes containing the payload length have been processed,
+			// initialize main buffer for the encryption flag and the whole
+			// payload.
+			int dataSize = ByteBuffer.wrap(dataSizeBytes).getInt();
+			payloadLength = dataSize - Payload.headerLength(headerVersion);
+
+			// If (dataSize minus encryption flag byte) is negative or the
+			// payload doesn't fit into the image it's a strong indicator
+			// that the stegano password was wrong. The version bytes of a
+			// versioned header may also have matched by chance, so the
+			// header is rejected and other versions can be tried.
+			if (payloadLength - 1 < 0 || dataSize > capacity) {
+				if (headerVersion != 0) {
+					LOG.debug("Rejecting header with a payload length of {} bytes", payloadLength);
+					payloadLength = null;
+					rejected = true;
+					return;
+				}
+				throw new SteganoKeyException();
 			}
-			dataSizePos++;
-		} else {
-			data[dataPos++] = b;
+
+			LOG.debug("Payload of {} bytes to be extracted", payloadLength + Payload.headerLength(headerVersion));
+			LOG.debug("Array: {}",Arrays.toString(dataSizeBytes));
+
+			data = new byte[payloadLength];
+			dataPos = 0;
 		}
+		dataSizePos++;
 	}
 
 	/**
@@ -167,13 +291,80 @@ public class PayloadExtractor {
 			return;
 		}
 
-		bits[dataSizeBitPos] = bit;
+		bits = (bits << 1) | (bit & 1);
+
+		if (++dataSizeBitPos == 8) {
+			processAssembledByte();
+		}
+	}
+
+	/**
+	 * Processes count bits at once. The bits are right-aligned in the passed value, the first bit
+	 * in the most significant position. Bits beyond the end of the payload are ignored.
+	 *
+	 * @param bits
+	 * @param count Number of bits, between 0 and 64
+	 * @throws SteganoExtractException
+	 */
+	public void processBits(long bits, int count)
+			throws SteganoExtractException {
+
+		// Complete the byte currently being assembled
+		while (count > 0 && dataSizeBitPos != 0 && !finished()) {
+			processBit((byte) (bits >>> --count));
+		}
+
+		// Whole bytes
+		while (count >= 8 && !finished()) {
+			count -= 8;
+			this.bits = (int) (bits >>> count) & 0xFF;
+			dataSizeBitPos = 8;
+			processAssembledByte();
+		}
 
-		if ((dataSizeBitPos = ++dataSizeBitPos % 8) == 0) {
-			processByte(ByteUtils.bitsToByte(bits, Payload.BYTE_ORDER));
+		// Remaining bits start the next byte
+		while (count > 0 && !finished()) {
+			processBit((byte) (bits >>> --count));
 		}
 	}
 
+	/**
+	 * Processes the 8 bits collected in the bits field as one byte
+	 *
+	 * @throws SteganoExtractException
+	 */
+	private void processAssembledByte()
+			throws SteganoExtractException {
+
+		int b = bits;
+		if (Payload.BYTE_ORDER == ByteOrder.LITTLE_ENDIAN) {
+			b = Integer.reverse(b) >>> 24;
+		}
+		bits = 0;
+		dataSizeBitPos = 0;
+		processByte((byte) b);
+	}
+
+	/**
+	 * Returns the number of bytes of the header that precedes the payload
+	 *
+	 * @return
+	 */
+	public int getHeaderLength() {
+		return Payload.headerLength(headerVersion);
+	}
+
+	/**
+	 * Returns true if the extracted data does not start with the expected header version, or if
+	 * the payload length of a versioned header is negative or exceeds the capacity. The
+	 * steganogram was then either created with a different header version or a wrong key.
+	 *
+	 * @return
+	 */
+	public boolean isRejected() {
+		return rejected;
+	}
+
 	/**
 	 * Returns the total number of bytes that the extractor needs to process. Note that this method
 	 * returns {@link null} if called until the extractor has processed at least
@@ -1,12 +1,12 @@
 package org.stegosuite.util;
 
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
- * 
+ * Distance metrics between RGB colors. Every metric maps a color to 3 coordinates first, palettes
+ * can precompute the coordinates of all their colors with {@link #forPalette(List)}. Distances
+ * between single colors are kept in a bounded cache per metric.
  */
 public enum ColorDistance {
 
@@ -16,9 +16,17 @@ public enum ColorDistance {
 	RGB_EUCLID {
 
 		@Override
-		protected Double getDistance(Color rgb1, Color rgb2) {
-			return Math.sqrt(Math.pow(rgb1.getRed() - rgb2.getRed(), 2) + Math.pow(rgb1.getGreen() - rgb2.getGreen(), 2)
-					+ Math.pow(rgb1.getBlue() - rgb2.getBlue(), 2));
+		protected void toCoordinates(int rgb, double[] coordinates, int offset) {
+			coordinates[offset] = (rgb >> 16) & 0xFF;
+			coordinates[offset + 1] = (rgb >> 8) & 0xFF;
+			coordinates[offset + 2] = rgb & 0xFF;
+		}
+
+		@Override
+		protected double getDistance(double[] coordinates1, int offset1, double[] coordinates2, int offset2) {
+			return Math.sqrt(Math.pow(coordinates1[offset1] - coordinates2[offset2], 2)
+					+ Math.pow(coordinates1[offset1 + 1] - coordinates2[offset2 + 1], 2)
+					+ Math.pow(coordinates1[offset1 + 2] - coordinates2[offset2 + 2], 2));
 		}
 	},
 
@@ -28,24 +36,63 @@ public enum ColorDistance {
 	CIEDE_2000 {
 
 		@Override
-		protected Double getDistance(Color rgb1, Color rgb2) {
-			double[] lab1 = rgb2lab(rgb1.getRed(), rgb1.getGreen(), rgb1.getBlue());
-			double[] lab2 = rgb2lab(rgb2.getRed(), rgb2.getGreen(), rgb2.getBlue());
-			return ciede2000(lab1, lab2);
+		protected void toCoordinates(int rgb, double[] coordinates, int offset) {
+			rgb2lab((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, coordinates, offset);
+		}
+
+		@Override
+		protected double getDistance(double[] coordinates1, int offset1, double[] coordinates2, int offset2) {
+			return ciede2000(coordinates1, offset1, coordinates2, offset2);
 		}
 	};
 
-	protected abstract Double getDistance(Color rgb1, Color rgb2);
+	/**
+	 * Number of coordinates of each color
+	 */
+	static final int DIMENSIONS = 3;
 
-	private static Map<ColorDistance, Map<InterchangeablePair<Color, Color>, Double>> cache = null;
+	/**
+	 * Default number of distances kept in the cache of each metric
+	 */
+	private static final int DEFAULT_CACHE_CAPACITY = 1 << 16;
+
+	/**
+	 * Linear intensity of each 8 bit sRGB value, scaled to [0, 1]
+	 */
+	private static final double[] SRGB_TO_LINEAR = new double[256];
 
 	static {
-		cache = new HashMap<>(ColorDistance.values().length);
-		for (ColorDistance distance : ColorDistance.values()) {
-			cache.put(distance, new ConcurrentHashMap<>());
+		for (int i = 0; i < SRGB_TO_LINEAR.length; i++) {
+			double c = i / 255.0;
+			SRGB_TO_LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
 		}
 	}
 
+	/**
+	 * Distances between pairs of colors computed by {@link #distance(Color, Color)}
+	 */
+	private final DistanceCache cache = new DistanceCache(DEFAULT_CACHE_CAPACITY);
+
+	/**
+	 * Writes the coordinates of a color to coordinates[offset] to coordinates[offset + 2]
+	 *
+	 * @param rgb
+	 * @param coordinates
+	 * @param offset
+	 */
+	protected abstract void toCoordinates(int rgb, double[] coordinates, int offset);
+
+	/**
+	 * Returns the distance between two colors given by their coordinates
+	 *
+	 * @param coordinates1
+	 * @param offset1
+	 * @param coordinates2
+	 * @param offset2
+	 * @return
+	 */
+	protected abstract double getDistance(double[] coordinates1, int offset1, double[] coordinates2, int offset2);
+
 	/**
 	 * Compares two RGB colors according to the current distance algorithm.
 	 * 
@@ -62,9 +109,48 @@ public enum ColorDistance {
 			return 0.0;
 		}
 
-		InterchangeablePair<Color, Color> pair = new InterchangeablePair<>(rgb1, rgb2);
+		int value1 = rgb1.getRGB() & 0xFFFFFF;
+		int value2 = rgb2.getRGB() & 0xFFFFFF;
+		long key = value1 < value2 ? (long) value1 << 32 | value2 : (long) value2 << 32 | value1;
+
+		return cache.computeIfAbsent(key, k -> {
+			double[] coordinates = new double[2 * DIMENSIONS];
+			toCoordinates(value1, coordinates, 0);
+			toCoordinates(value2, coordinates, DIMENSIONS);
+			return getDistance(coordinates, 0, coordinates, DIMENSIONS);
+		});
+	}
+
+	/**
+	 * Returns the cache of the distances computed by {@link #distance(Color, Color)}
+	 *
+	 * @return
+	 */
+	public DistanceCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Precomputes the coordinates of the colors of a palette, so that distances between them can
+	 * be computed without any caching
+	 *
+	 * @param colors
+	 * @return
+	 */
+	public PaletteDistance forPalette(List<Color> colors) {
+		return new PaletteDistance(this, colors);
+	}
 
-		return cache.get(this).computeIfAbsent(pair, k -> getDistance(rgb1, rgb2));
+	/**
+	 * Computes the distances between all pairs of the passed colors on all available cores. The
+	 * distance between colors i and j is stored at {@code i * n + j} and {@code j * n + i} of the
+	 * returned array for n colors.
+	 *
+	 * @param colors
+	 * @return
+	 */
+	public double[] distanceMatrix(List<Color> colors) {
+		return forPalette(colors).distanceMatrix();
 	}
 
 	/**
@@ -78,33 +164,29 @@ public enum ColorDistance {
 	 * @param ri Red component of the RGB color.
 	 * @param gi Green component of the RGB color.
 	 * @param bi Blue component of the RGB color.
-	 * @return The color in the L*a*b color space
+	 * @param lab Receives the color in the L*a*b color space
+	 * @param offset Position of L in lab
 	 */
-	private static double[] rgb2lab(int ri, int gi, int bi) {
-		// first, normalize RGB values
-		double r = ri / 255.0;
-		double g = gi / 255.0;
-		double b = bi / 255.0;
-
+	private static void rgb2lab(int ri, int gi, int bi, double[] lab, int offset) {
 		// D65 standard referent
 		double X = 0.950470, Y = 1.0, Z = 1.088830;
 
-		// second, map sRGB to CIE XYZ
-		r = r <= 0.04045 ? r / 12.92 : Math.pow((r + 0.055) / 1.055, 2.4);
-		g = g <= 0.04045 ? g / 12.92 : Math.pow((g + 0.055) / 1.055, 2.4);
-		b = b <= 0.04045 ? b / 12.92 : Math.pow((b + 0.055) / 1.055, 2.4);
+		// first, normalize RGB values and map sRGB to CIE XYZ
+		double r = SRGB_TO_LINEAR[ri];
+		double g = SRGB_TO_LINEAR[gi];
+		double b = SRGB_TO_LINEAR[bi];
 		double x = ((0.4124564 * r) + (0.3575761 * g) + (0.1804375 * b)) / X,
 				y = ((0.2126729 * r) + (0.7151522 * g) + (0.0721750 * b)) / Y,
 				z = ((0.0193339 * r) + (0.1191920 * g) + (0.9503041 * b)) / Z;
 
-		// third, map CIE XYZ to CIE L*a*b* and return
+		// then map CIE XYZ to CIE L*a*b*
 		x = x > 0.008856 ? Math.pow(x, 1.0 / 3) : (7.787037 * x) + (4.0 / 29);
 		y = y > 0.008856 ? Math.pow(y, 1.0 / 3) : (7.787037 * y) + (4.0 / 29);
 		z = z > 0.008856 ? Math.pow(z, 1.0 / 3) : (7.787037 * z) + (4.0 / 29);
 
-		double L = (116 * y) - 16, A = 500 * (x - y), B = 200 * (y - z);
-
-		return new double[] { L, A, B };
+		lab[offset] = (116 * y) - 16;
+		lab[offset + 1] = 500 * (x - y);
+		lab[offset + 2] = 200 * (y - z);
 	}
 
 	/**
@@ -115,11 +197,13 @@ public enum ColorDistance {
 	 * /vis/color/LAB.java
 	 *
 	 * @param lab1 First color represented in L*a*b color space.
+	 * @param offset1 Position of the first color in lab1
 	 * @param lab2 Second color represented in L*a*b color space.
+	 * @param offset2 Position of the second color in lab2
 	 * @return The degree of similarity between the two input colors according to the CIEDE2000
 	 *         color-difference formula.
 	 */
-	private static Double ciede2000(double[] lab1, double[] lab2) {
+	private static double ciede2000(double[] lab1, int offset1, double[] lab2, int offset2) {
 		// adapted from Sharma et al's MATLAB implementation at
 		// http://www.ece.rochester.edu/~gsharma/ciede2000/
 
@@ -127,8 +211,9 @@ public enum ColorDistance {
 		double kl = 1, kc = 1, kh = 1;
 
 		// compute terms
-		double pi = Math.PI, L1 = lab1[0], a1 = lab1[1], b1 = lab1[2], Cab1 = Math.sqrt((a1 * a1) + (b1 * b1)),
-				L2 = lab2[0], a2 = lab2[1], b2 = lab2[2], Cab2 = Math.sqrt((a2 * a2) + (b2 * b2)),
+		double pi = Math.PI, L1 = lab1[offset1], a1 = lab1[offset1 + 1], b1 = lab1[offset1 + 2],
+				Cab1 = Math.sqrt((a1 * a1) + (b1 * b1)), L2 = lab2[offset2], a2 = lab2[offset2 + 1],
+				b2 = lab2[offset2 + 2], Cab2 = Math.sqrt((a2 * a2) + (b2 * b2)),
 				Cab = 0.5 * (Cab1 + Cab2),
 				G = 0.5 * (1 - Math.sqrt(Math.pow(Cab, 7) / (Math.pow(Cab, 7) + Math.pow(25, 7)))), ap1 = (1 + G) * a1,
 				ap2 = (1 + G) * a2, Cp1 = Math.sqrt((ap1 * ap1) + (b1 * b1)), Cp2 = Math.sqrt((ap2 * ap2) + (b2 * b2)),
@@ -6,7 +6,7 @@ import java.awt.image.WritableRaster;
 import java.util.*;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.*;
@@ -17,6 +17,11 @@ import static java.util.stream.Collectors.*;
  */
 public class ColorUtils {
 
+	/**
+	 * Number of pixels counted by one task of countIndices()
+	 */
+	private static final int COUNT_CHUNK_SIZE = 1 << 16;
+
 	/**
 	 * Sorts a list of RGB colors with a specific color distance algorithm
 	 *
@@ -25,33 +30,38 @@ public class ColorUtils {
 	 * @return
 	 */
 	public static List<Color> sortColors(List<Color> colors, ColorDistance colorDistance) {
+		return sortColors(colors, colorDistance, 0);
+	}
+
+	/**
+	 * Sorts a list of RGB colors with a specific color distance algorithm. The order is the
+	 * shortest greedy nearest neighbour path through the colors, optionally shortened further by
+	 * 2-opt moves.
+	 *
+	 * @param colors
+	 * @param colorDistance
+	 * @param refinementPasses The maximum number of 2-opt passes, 0 to keep the nearest neighbour
+	 *        order. Embedding and extraction need to use the same value.
+	 * @return
+	 */
+	public static List<Color> sortColors(List<Color> colors, ColorDistance colorDistance, int refinementPasses) {
 		if (colors.size() < 2) {
 			return colors;
 		}
 		//TODO: Do not remove duplicated colors, the size of the List should stay the same (Gifshuffle needs this to work)
-		Set<Color> unsortedBase = new HashSet<>(colors);
-		Map<Double, List<Color>> sortedLists = new ConcurrentHashMap<>();
-
-		unsortedBase.parallelStream().forEach(base -> {
-			List<Color> unsorted = new ArrayList<>(unsortedBase);
-			unsorted.remove(base);
-
-			List<Color> sorted = new ArrayList<>(unsortedBase.size());
-			sorted.add(base);
-
-			Double sumDistance = 0.0;
-			while (!unsorted.isEmpty()) {
-				List<Double> distances = unsorted.stream()
-						.map(c -> colorDistance.distance(c, sorted.get(sorted.size() - 1))).collect(toList());
-				Double minDistance = Collections.min(distances);
-				sumDistance += minDistance;
-				sorted.add(unsorted.remove(distances.indexOf(minDistance)));
-			}
+		List<Color> unsortedBase = new ArrayList<>(new HashSet<>(colors));
 
-			sortedLists.put(sumDistance, sorted);
-		});
+		PaletteOrdering ordering = new PaletteOrdering(colorDistance.distanceMatrix(unsortedBase));
+		int[] path = ordering.nearestNeighbourPath();
+		if (refinementPasses > 0) {
+			ordering.twoOpt(path, refinementPasses);
+		}
 
-		return sortedLists.get(Collections.min(sortedLists.keySet()));
+		List<Color> sorted = new ArrayList<>(path.length);
+		for (int index : path) {
+			sorted.add(unsortedBase.get(index));
+		}
+		return sorted;
 	}
 
 	/**
@@ -62,11 +72,73 @@ public class ColorUtils {
 	 * @return
 	 */
 	public static Map<Color, Integer> getHistogram(List<Color> colors, int[] pixels) {
+		return getHistogramOfCounts(colors, countIndices(pixels, colors.size()));
+	}
+
+	/**
+	 * Returns a histogram (or frequency map) of the colors from the number of pixels referencing
+	 * each index of the color table. Duplicate colors are counted together.
+	 *
+	 * @param colors
+	 * @param indexCounts The number of pixels of each index, see countIndices()
+	 * @return
+	 */
+	public static Map<Color, Integer> getHistogramOfCounts(List<Color> colors, int[] indexCounts) {
 		Map<Color, Integer> histogram = new HashSet<>(colors).stream().collect(toMap(identity(), c -> 0));
-		Arrays.stream(pixels).mapToObj(colors::get).forEach(color -> histogram.put(color, histogram.get(color) + 1));
+		for (int i = 0; i < colors.size(); i++) {
+			if (indexCounts[i] > 0) {
+				histogram.merge(colors.get(i), indexCounts[i], Integer::sum);
+			}
+		}
 		return histogram;
 	}
 
+	/**
+	 * Counts the pixels referencing each index of a color table, on all available cores
+	 *
+	 * @param pixels
+	 * @param colorCount The size of the color table, all pixels need to be smaller
+	 * @return
+	 */
+	public static int[] countIndices(int[] pixels, int colorCount) {
+		int chunkCount = (pixels.length + COUNT_CHUNK_SIZE - 1) / COUNT_CHUNK_SIZE;
+		return IntStream.range(0, chunkCount).parallel().mapToObj(chunk -> {
+			int[] counts = new int[colorCount];
+			int to = (int) Math.min(pixels.length, (chunk + 1L) * COUNT_CHUNK_SIZE);
+			for (int i = chunk * COUNT_CHUNK_SIZE; i < to; i++) {
+				counts[pixels[i]]++;
+			}
+			return counts;
+		}).reduce(new int[colorCount], ColorUtils::addCounts);
+	}
+
+	/**
+	 * Counts the pixels referencing each index of a color table, on all available cores
+	 *
+	 * @param indices The unsigned color index of each pixel
+	 * @param colorCount The size of the color table, all pixels need to be smaller
+	 * @return
+	 */
+	public static int[] countIndices(byte[] indices, int colorCount) {
+		int chunkCount = (indices.length + COUNT_CHUNK_SIZE - 1) / COUNT_CHUNK_SIZE;
+		return IntStream.range(0, chunkCount).parallel().mapToObj(chunk -> {
+			int[] counts = new int[colorCount];
+			int to = (int) Math.min(indices.length, (chunk + 1L) * COUNT_CHUNK_SIZE);
+			for (int i = chunk * COUNT_CHUNK_SIZE; i < to; i++) {
+				counts[indices[i] & 0xFF]++;
+			}
+			return counts;
+		}).reduce(new int[colorCount], ColorUtils::addCounts);
+	}
+
+	private static int[] addCounts(int[] a, int[] b) {
+		int[] sum = new int[a.length];
+		for (int i = 0; i < sum.length; i++) {
+			sum[i] = a[i] + b[i];
+		}
+		return sum;
+	}
+
 	/**
 	 * Returns the colors that are present in the color table but not referenced by any pixel
 	 *
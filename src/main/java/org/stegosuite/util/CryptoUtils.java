@@ -8,6 +8,7 @@ import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -37,6 +38,8 @@ public class CryptoUtils {
 
 	private static final String CIPHER_MODE_PADDING_ALGORITHM = CIPHER_ALGORITHM + "/CTR/NoPadding";
 
+	private static final String BLOCK_CIPHER_ALGORITHM = CIPHER_ALGORITHM + "/ECB/NoPadding";
+
 	/**
 	 * Can be constant because we use CTR mode and we salt the key
 	 */
@@ -44,6 +47,8 @@ public class CryptoUtils {
 
 	private static final String RANDOM_MESSAGE_DIGEST_ALGORITHM = "SHA-256";
 
+	private static final String RANDOM_ALGORITHM = "SHA1PRNG";
+
 	/**
 	 * Encrypts a byte array
 	 *
@@ -93,6 +98,41 @@ public class CryptoUtils {
 		return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), CIPHER_ALGORITHM);
 	}
 
+	/**
+	 * Derives a 256 bit AES key from the specified key. Keys derived for different purposes are
+	 * independent of each other.
+	 *
+	 * @param key
+	 * @param purpose
+	 * @return
+	 */
+	public static SecretKey deriveKey(String key, String purpose) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(RANDOM_MESSAGE_DIGEST_ALGORITHM);
+			digest.update(purpose.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			return new SecretKeySpec(digest.digest(key.getBytes(StandardCharsets.UTF_8)), CIPHER_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates an AES cipher that encrypts independent 16 byte blocks with the specified key
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static Cipher newBlockCipher(SecretKey key) {
+		try {
+			Cipher cipher = Cipher.getInstance(BLOCK_CIPHER_ALGORITHM);
+			cipher.init(Cipher.ENCRYPT_MODE, key);
+			return cipher;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Creates a Random instance seeded with the specified key
 	 * 
@@ -105,7 +145,9 @@ public class CryptoUtils {
 			long rndSeed = ByteBuffer.wrap(output).getLong();
 			ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
 			buffer.putLong(rndSeed);
-			return new SecureRandom(buffer.array());
+			SecureRandom random = SecureRandom.getInstance(RANDOM_ALGORITHM);
+			random.setSeed(buffer.array());
+			return random;
 		} catch (NoSuchAlgorithmException e) {
 			// Should never happen
 		}
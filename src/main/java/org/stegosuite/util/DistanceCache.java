@@ -0,0 +1,123 @@
+package org.stegosuite.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * A bounded cache of color distances that evicts the least recently used entries. Keeps
+ * statistics about hits, misses and evictions.
+ */
+public class DistanceCache {
+
+	/**
+	 * Maximum number of entries, 0 disables caching
+	 */
+	private int capacity;
+
+	private final Map<Long, Double> entries = new LinkedHashMap<Long, Double>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+			if (size() > capacity) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity The maximum number of entries, 0 disables caching
+	 */
+	public DistanceCache(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the cached distance for the key or computes and caches it. The distance is computed
+	 * outside of the lock, so concurrent misses of the same key may compute it more than once.
+	 *
+	 * @param key
+	 * @param function
+	 * @return
+	 */
+	public double computeIfAbsent(long key, LongToDoubleFunction function) {
+		synchronized (this) {
+			Double distance = entries.get(key);
+			if (distance != null) {
+				hits++;
+				return distance;
+			}
+			misses++;
+		}
+
+		double distance = function.applyAsDouble(key);
+
+		synchronized (this) {
+			if (capacity > 0) {
+				entries.put(key, distance);
+			}
+		}
+		return distance;
+	}
+
+	/**
+	 * Changes the maximum number of entries, 0 disables caching. Surplus entries are evicted.
+	 *
+	 * @param capacity
+	 */
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+		while (entries.size() > capacity) {
+			entries.remove(entries.keySet().iterator().next());
+			evictions++;
+		}
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Removes all entries and resets the statistics
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d/%d entries, %d hits, %d misses, %d evictions", entries.size(), capacity, hits, misses,
+				evictions);
+	}
+}
@@ -67,16 +67,19 @@ public class ImageSwtAwtConverter {
 		} else if (bufferedImage.getColorModel() instanceof ComponentColorModel) {
 			ComponentColorModel cm = (ComponentColorModel) bufferedImage.getColorModel();
 			PaletteData paletteData = new PaletteData(0x0000FF, 0x00FF00, 0xFF0000);
-			ImageData imageData = new ImageData(w, h, cm.getPixelSize(), paletteData);
+			// Grayscale images have a single color band, which is expanded to RGB
+			boolean gray = cm.getNumColorComponents() == 1;
+			ImageData imageData = new ImageData(w, h, gray ? 24 : cm.getPixelSize(), paletteData);
 			WritableRaster raster = bufferedImage.getRaster();
 			int[] pixelArray = new int[bufferedImage.getColorModel().getComponentSize().length];
 
 			IntStream.range(0, h).forEach(y -> IntStream.range(0, w).forEach(x -> {
 				raster.getPixel(x, y, pixelArray);
-				int pixel = paletteData.getPixel(new RGB(pixelArray[0], pixelArray[1], pixelArray[2]));
+				int pixel = gray ? paletteData.getPixel(new RGB(pixelArray[0], pixelArray[0], pixelArray[0]))
+						: paletteData.getPixel(new RGB(pixelArray[0], pixelArray[1], pixelArray[2]));
 				imageData.setPixel(x, y, pixel);
 				if (cm.hasAlpha()) {
-					imageData.setAlpha(x, y, pixelArray[3]);
+					imageData.setAlpha(x, y, pixelArray[pixelArray.length - 1]);
 				}
 			}));
 			return imageData;
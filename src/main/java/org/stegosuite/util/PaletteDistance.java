@@ -0,0 +1,101 @@
+package org.stegosuite.util;
+
+import java.awt.*;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Distances between the colors of one palette. The coordinates of all colors (e.g. their L*a*b
+ * values) are computed once, so no distances need to be cached.
+ */
+public class PaletteDistance {
+
+	private final ColorDistance colorDistance;
+
+	/**
+	 * RGB values of the colors, without alpha
+	 */
+	private final int[] rgbs;
+
+	/**
+	 * Coordinates of color i at {@code i * 3} to {@code i * 3 + 2}
+	 */
+	private final double[] coordinates;
+
+	/**
+	 * Constructor
+	 *
+	 * @param colorDistance
+	 * @param colors
+	 */
+	PaletteDistance(ColorDistance colorDistance, List<Color> colors) {
+		this.colorDistance = colorDistance;
+		this.rgbs = new int[colors.size()];
+		this.coordinates = new double[colors.size() * ColorDistance.DIMENSIONS];
+		for (int i = 0; i < rgbs.length; i++) {
+			rgbs[i] = colors.get(i).getRGB() & 0xFFFFFF;
+			colorDistance.toCoordinates(rgbs[i], coordinates, i * ColorDistance.DIMENSIONS);
+		}
+	}
+
+	/**
+	 * Returns the number of colors of the palette
+	 *
+	 * @return
+	 */
+	public int size() {
+		return rgbs.length;
+	}
+
+	/**
+	 * Returns the distance between the colors i and j of the palette
+	 *
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public double distance(int i, int j) {
+		if (rgbs[i] == rgbs[j]) {
+			return 0.0;
+		}
+		return colorDistance.getDistance(coordinates, i * ColorDistance.DIMENSIONS, coordinates,
+				j * ColorDistance.DIMENSIONS);
+	}
+
+	/**
+	 * Returns the distance between a color and the color j of the palette
+	 *
+	 * @param color
+	 * @param j
+	 * @return
+	 */
+	public double distance(Color color, int j) {
+		int rgb = color.getRGB() & 0xFFFFFF;
+		if (rgb == rgbs[j]) {
+			return 0.0;
+		}
+		double[] colorCoordinates = new double[ColorDistance.DIMENSIONS];
+		colorDistance.toCoordinates(rgb, colorCoordinates, 0);
+		return colorDistance.getDistance(colorCoordinates, 0, coordinates, j * ColorDistance.DIMENSIONS);
+	}
+
+	/**
+	 * Computes the distances between all pairs of colors on all available cores. The distance
+	 * between colors i and j is stored at {@code i * n + j} and {@code j * n + i} of the returned
+	 * array for n colors.
+	 *
+	 * @return
+	 */
+	public double[] distanceMatrix() {
+		int n = rgbs.length;
+		double[] matrix = new double[n * n];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			for (int j = i + 1; j < n; j++) {
+				double distance = distance(i, j);
+				matrix[i * n + j] = distance;
+				matrix[j * n + i] = distance;
+			}
+		});
+		return matrix;
+	}
+}
@@ -0,0 +1,180 @@
+package org.stegosuite.util;
+
+import java.util.stream.IntStream;
+
+/**
+ * Orders the colors of a palette such that similar colors are next to each other, working on a
+ * precomputed distance matrix (see {@link ColorDistance#distanceMatrix(java.util.List)}). The
+ * result only depends on the matrix, ties are always resolved in favor of the lower index, so
+ * embedding and extraction compute the same order.
+ */
+public class PaletteOrdering {
+
+	/**
+	 * Minimum improvement of a 2-opt move, smaller ones are rounding noise
+	 */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * Distances between all pairs of colors, row-major
+	 */
+	private final double[] matrix;
+
+	/**
+	 * Number of colors
+	 */
+	private final int n;
+
+	/**
+	 * Constructor
+	 *
+	 * @param matrix The distances between all pairs of n colors, row-major
+	 */
+	public PaletteOrdering(double[] matrix) {
+		this.matrix = matrix;
+		this.n = (int) Math.round(Math.sqrt(matrix.length));
+		if (n * n != matrix.length) {
+			throw new IllegalArgumentException("Distance matrix is not square");
+		}
+	}
+
+	/**
+	 * Returns the greedy nearest neighbour path with the lowest total distance. A path is started
+	 * from every color: It always continues with the closest color that has not been visited yet.
+	 * Paths are computed on all available cores.
+	 *
+	 * @return The indices of the colors in their sorted order
+	 */
+	public int[] nearestNeighbourPath() {
+		if (n == 0) {
+			return new int[0];
+		}
+
+		double[] lengths = new double[n];
+		int[][] paths = new int[n][];
+		IntStream.range(0, n).parallel().forEach(start -> {
+			paths[start] = new int[n];
+			lengths[start] = nearestNeighbourPath(start, paths[start]);
+		});
+
+		int best = 0;
+		for (int start = 1; start < n; start++) {
+			if (Double.compare(lengths[start], lengths[best]) < 0) {
+				best = start;
+			}
+		}
+		return paths[best];
+	}
+
+	/**
+	 * Computes the greedy nearest neighbour path from a start color
+	 *
+	 * @param start
+	 * @param path Receives the indices of the path
+	 * @return The total distance of the path
+	 */
+	private double nearestNeighbourPath(int start, int[] path) {
+		boolean[] visited = new boolean[n];
+		visited[start] = true;
+		path[0] = start;
+
+		double length = 0.0;
+		int current = start;
+		for (int step = 1; step < n; step++) {
+			int row = current * n;
+			int nearest = -1;
+			double minDistance = 0.0;
+			for (int i = 0; i < n; i++) {
+				if (!visited[i] && (nearest < 0 || Double.compare(matrix[row + i], minDistance) < 0)) {
+					nearest = i;
+					minDistance = matrix[row + i];
+				}
+			}
+			visited[nearest] = true;
+			path[step] = nearest;
+			length += minDistance;
+			current = nearest;
+		}
+		return length;
+	}
+
+	/**
+	 * Shortens a path with 2-opt moves, i.e. by reversing sections of the path whenever that
+	 * lowers the total distance. Moves are searched in a fixed order and applied right away.
+	 *
+	 * @param path The indices of the colors, modified in place
+	 * @param maxPasses The maximum number of passes over all sections. The refinement is bounded
+	 *        by passes instead of time, so that the result is the same on every machine.
+	 * @return The number of applied moves
+	 */
+	public int twoOpt(int[] path, int maxPasses) {
+		int moves = 0;
+		boolean improved = true;
+		for (int pass = 0; pass < maxPasses && improved; pass++) {
+			improved = false;
+			// Reverse path[i + 1 .. j], i == -1 reverses a prefix
+			for (int i = -1; i < n - 2; i++) {
+				for (int j = i + 2; j < n; j++) {
+					if (gain(path, i, j) > EPSILON) {
+						reverse(path, i + 1, j);
+						improved = true;
+						moves++;
+					}
+				}
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Returns by how much reversing path[i + 1 .. j] shortens the path
+	 *
+	 * @param path
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	private double gain(int[] path, int i, int j) {
+		double gain = 0.0;
+		if (i >= 0) {
+			gain += distance(path[i], path[i + 1]) - distance(path[i], path[j]);
+		}
+		if (j + 1 < n) {
+			gain += distance(path[j], path[j + 1]) - distance(path[i + 1], path[j + 1]);
+		}
+		return gain;
+	}
+
+	private void reverse(int[] path, int from, int to) {
+		for (; from < to; from++, to--) {
+			int tmp = path[from];
+			path[from] = path[to];
+			path[to] = tmp;
+		}
+	}
+
+	/**
+	 * Returns the distance between two colors
+	 *
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public double distance(int i, int j) {
+		return matrix[i * n + j];
+	}
+
+	/**
+	 * Returns the total distance along a path
+	 *
+	 * @param path
+	 * @return
+	 */
+	public double length(int[] path) {
+		double length = 0.0;
+		for (int i = 1; i < path.length; i++) {
+			length += distance(path[i - 1], path[i]);
+		}
+		return length;
+	}
+}
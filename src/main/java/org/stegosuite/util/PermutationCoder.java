@@ -0,0 +1,232 @@
+package org.stegosuite.util;
+
+import java.math.BigInteger;
+
+/**
+ * Converts between numbers and permutations of n elements in the factorial number system. A number
+ * N has the digits d_i = (N / i!) mod (i + 1). The permutation is built by inserting the elements
+ * 0 to n-1 one after another, element i at position d_i among the elements inserted before it.
+ * <p>
+ * Positions are found with a Fenwick tree in O(n log n). The digits are converted from and to
+ * the number by splitting it at products of the radices recursively, so the big number arithmetic
+ * works on operands of similar size instead of dividing by one small radix at a time.
+ */
+public class PermutationCoder {
+
+	/**
+	 * Maximum number of digits that are converted one at a time
+	 */
+	private static final int LEAF_DIGITS = 32;
+
+	/**
+	 * Returns the permutation of n elements the number stands for. Numbers of n! and above are
+	 * reduced modulo n!.
+	 *
+	 * @param number
+	 * @param n
+	 * @return The element at each position
+	 */
+	public static int[] decode(BigInteger number, int n) {
+		int[] digits = toDigits(number, n);
+		int[] permutation = new int[n];
+		FenwickTree freePositions = FenwickTree.ofOnes(n);
+		for (int i = n - 1; i >= 0; i--) {
+			// Elements inserted after i don't change the order of the elements before them, so
+			// element i takes the d_i-th position that isn't taken by them
+			int position = freePositions.findNth(digits[i]);
+			permutation[position] = i;
+			freePositions.add(position, -1);
+		}
+		return permutation;
+	}
+
+	/**
+	 * Returns the number a permutation stands for, the inverse of {@link #decode(BigInteger, int)}
+	 *
+	 * @param permutation The element at each position
+	 * @return
+	 * @throws IllegalArgumentException if the elements are not 0 to n-1, each exactly once
+	 */
+	public static BigInteger encode(int[] permutation)
+			throws IllegalArgumentException {
+		int n = permutation.length;
+		int[] positions = new int[n];
+		boolean[] seen = new boolean[n];
+		for (int position = 0; position < n; position++) {
+			int element = permutation[position];
+			if (element < 0 || element >= n || seen[element]) {
+				throw new IllegalArgumentException("Not a permutation of " + n + " elements");
+			}
+			seen[element] = true;
+			positions[element] = position;
+		}
+
+		int[] digits = new int[n];
+		FenwickTree freePositions = FenwickTree.ofOnes(n);
+		for (int i = n - 1; i >= 0; i--) {
+			digits[i] = freePositions.sum(positions[i]);
+			freePositions.add(positions[i], -1);
+		}
+		return fromDigits(digits);
+	}
+
+	/**
+	 * Returns the digits d_0 to d_n-1 of a number modulo n!
+	 *
+	 * @param number
+	 * @param n
+	 * @return
+	 */
+	static int[] toDigits(BigInteger number, int n) {
+		int[] digits = new int[n];
+		if (n > 0) {
+			BigInteger[] products = radixProducts(n);
+			toDigits(number.mod(products[1]), products, 1, 0, n, digits);
+		}
+		return digits;
+	}
+
+	/**
+	 * Returns the number with the digits d_0 to d_n-1
+	 *
+	 * @param digits
+	 * @return
+	 */
+	static BigInteger fromDigits(int[] digits) {
+		if (digits.length == 0) {
+			return BigInteger.ZERO;
+		}
+		return fromDigits(digits, radixProducts(digits.length), 1, 0, digits.length);
+	}
+
+	/**
+	 * Writes the digits lo to hi-1 of a value smaller than the product of their radices
+	 */
+	private static void toDigits(BigInteger value, BigInteger[] products, int node, int lo, int hi, int[] digits) {
+		if (hi - lo <= LEAF_DIGITS) {
+			for (int i = lo; i < hi && value.signum() > 0; i++) {
+				BigInteger[] quotientAndRemainder = value.divideAndRemainder(BigInteger.valueOf(i + 1));
+				digits[i] = quotientAndRemainder[1].intValue();
+				value = quotientAndRemainder[0];
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		BigInteger[] highAndLow = value.divideAndRemainder(products[2 * node]);
+		toDigits(highAndLow[1], products, 2 * node, lo, mid, digits);
+		toDigits(highAndLow[0], products, 2 * node + 1, mid, hi, digits);
+	}
+
+	private static BigInteger fromDigits(int[] digits, BigInteger[] products, int node, int lo, int hi) {
+		if (hi - lo <= LEAF_DIGITS) {
+			BigInteger value = BigInteger.ZERO;
+			for (int i = hi - 1; i >= lo; i--) {
+				value = value.multiply(BigInteger.valueOf(i + 1)).add(BigInteger.valueOf(digits[i]));
+			}
+			return value;
+		}
+		int mid = (lo + hi) >>> 1;
+		BigInteger low = fromDigits(digits, products, 2 * node, lo, mid);
+		BigInteger high = fromDigits(digits, products, 2 * node + 1, mid, hi);
+		return high.multiply(products[2 * node]).add(low);
+	}
+
+	/**
+	 * Computes the product of the radices (i + 1) of the digits lo to hi-1 for every range the
+	 * conversions split the digits into. The ranges form a binary tree stored like a heap, node 1
+	 * covers all digits and node k is split into the nodes 2k and 2k+1.
+	 *
+	 * @param n
+	 * @return
+	 */
+	private static BigInteger[] radixProducts(int n) {
+		int leaves = (n + LEAF_DIGITS - 1) / LEAF_DIGITS;
+		BigInteger[] products = new BigInteger[4 * Integer.highestOneBit(Math.max(leaves, 1)) + 2];
+		radixProducts(products, 1, 0, n);
+		return products;
+	}
+
+	private static BigInteger radixProducts(BigInteger[] products, int node, int lo, int hi) {
+		BigInteger product;
+		if (hi - lo <= LEAF_DIGITS) {
+			product = BigInteger.ONE;
+			for (int i = lo; i < hi; i++) {
+				product = product.multiply(BigInteger.valueOf(i + 1));
+			}
+		} else {
+			int mid = (lo + hi) >>> 1;
+			product = radixProducts(products, 2 * node, lo, mid).multiply(radixProducts(products, 2 * node + 1, mid, hi));
+		}
+		products[node] = product;
+		return product;
+	}
+
+	/**
+	 * Prefix sums over an array of counts with updates in O(log n)
+	 */
+	private static class FenwickTree {
+
+		/**
+		 * Element i (starting at 1) holds the sum of the counts i - lowestOneBit(i) to i - 1
+		 */
+		private final int[] tree;
+
+		private FenwickTree(int size) {
+			this.tree = new int[size + 1];
+		}
+
+		/**
+		 * Creates a tree of the specified size with a count of 1 at every index
+		 *
+		 * @param size
+		 * @return
+		 */
+		static FenwickTree ofOnes(int size) {
+			FenwickTree fenwickTree = new FenwickTree(size);
+			for (int i = 1; i <= size; i++) {
+				fenwickTree.tree[i] = Integer.lowestOneBit(i);
+			}
+			return fenwickTree;
+		}
+
+		void add(int index, int delta) {
+			for (int i = index + 1; i < tree.length; i += Integer.lowestOneBit(i)) {
+				tree[i] += delta;
+			}
+		}
+
+		/**
+		 * Returns the sum of the counts before the index
+		 *
+		 * @param index
+		 * @return
+		 */
+		int sum(int index) {
+			int sum = 0;
+			for (int i = index; i > 0; i -= Integer.lowestOneBit(i)) {
+				sum += tree[i];
+			}
+			return sum;
+		}
+
+		/**
+		 * Returns the index with a count of 1 that has n such indices before it. All counts need
+		 * to be 0 or 1.
+		 *
+		 * @param n
+		 * @return
+		 */
+		int findNth(int n) {
+			int index = 0;
+			int remaining = n;
+			for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>>= 1) {
+				int next = index + step;
+				if (next < tree.length && tree[next] <= remaining) {
+					index = next;
+					remaining -= tree[next];
+				}
+			}
+			return index;
+		}
+	}
+}
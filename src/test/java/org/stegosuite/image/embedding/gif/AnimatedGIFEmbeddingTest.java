@@ -0,0 +1,336 @@
+package org.stegosuite.image.embedding.gif;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.image.embedding.EmbeddingMethod;
+import org.stegosuite.image.embedding.gif.filter.GIFPointFilterHomogeneous;
+import org.stegosuite.image.embedding.gif.filter.GIFPointFilterNone;
+import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.model.exception.SteganoExtractException;
+import org.stegosuite.model.payload.Payload;
+import org.stegosuite.model.payload.PayloadEmbedder;
+import org.stegosuite.model.payload.PayloadExtractor;
+import org.stegosuite.model.payload.block.MessageBlock;
+import org.stegosuite.util.ColorDistance;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AnimatedGIFEmbeddingTest {
+
+	private static final String FORMAT = "javax_imageio_gif_image_1.0";
+
+	private static final int[][] FRAMES = {
+			// width, height, left, top, delay, transparent index
+			{ 160, 120, 0, 0, 10, -1 }, { 100, 80, 30, 20, 25, 5 }, { 140, 110, 10, 5, 50, -1 } };
+
+	/**
+	 * The second frame has fewer pixels than the length of a chunk takes
+	 */
+	private static final int[][] SMALL_FRAME = { { 160, 120, 0, 0, 10, -1 }, { 4, 4, 30, 20, 25, -1 },
+			{ 140, 110, 10, 5, 50, -1 } };
+
+	private File animatedFile = null;
+
+	private File steganogramFile = null;
+
+	private GIFImage image = null;
+
+	@Before
+	public void beforeMethod()
+			throws Exception {
+		animatedFile = File.createTempFile("animated", ".gif");
+		steganogramFile = File.createTempFile("animated_embed", ".gif");
+		writeAnimation(animatedFile, FRAMES);
+		image = load(animatedFile);
+	}
+
+	@After
+	public void afterMethod() {
+		animatedFile.delete();
+		steganogramFile.delete();
+	}
+
+	@Test
+	public void testLoadFrames() {
+		assertTrue(image.isAnimated());
+		assertEquals(FRAMES.length, image.getFrames().size());
+		assertSame(image, image.getFrames().get(0));
+		for (int i = 0; i < FRAMES.length; i++) {
+			assertEquals(FRAMES[i][0], image.getFrames().get(i).getWidth());
+			assertEquals(FRAMES[i][1], image.getFrames().get(i).getHeight());
+		}
+		// The transparent color is left out of the sorted colors
+		GIFImage transparentFrame = image.getFrames().get(1);
+		assertEquals(0, transparentFrame.getColorTable().get(FRAMES[1][5]).getAlpha());
+		assertFalse(transparentFrame.getSortedColorTable(ColorDistance.CIEDE_2000)
+				.contains(transparentFrame.getColorTable().get(FRAMES[1][5])));
+	}
+
+	@Test
+	public void testSaveKeepsFrameStructure()
+			throws Exception {
+		image.save(steganogramFile);
+		assertFrameStructure(steganogramFile);
+	}
+
+	@Test
+	public void testSortedColorTable()
+			throws Exception {
+		GIFSortedColorTable method = new GIFSortedColorTable(image, new GIFPointFilterHomogeneous());
+		int capacity = method.capacity();
+		int firstFrameCapacity = new GIFSortedColorTable(firstFrame(), new GIFPointFilterHomogeneous()).capacity();
+		assertTrue(capacity > firstFrameCapacity);
+
+		// The payload doesn't fit into the first frame
+		String message = randomMessage(firstFrameCapacity * 3 / 2);
+		GIFImage steganogram = method.embed(newPayload(message), null);
+		steganogram.save(steganogramFile);
+		assertFrameStructure(steganogramFile);
+		assertTransparencyKept(steganogram);
+
+		assertEquals(message, extract(new GIFSortedColorTable(load(steganogramFile), new GIFPointFilterHomogeneous()),
+				"key"));
+	}
+
+	@Test
+	public void testGIFShuffle()
+			throws Exception {
+		GIFShuffle method = new GIFShuffle(image, new GIFPointFilterNone());
+		int firstFrameCapacity = new GIFShuffle(firstFrame(), new GIFPointFilterNone()).capacity();
+		assertTrue(method.capacity() > firstFrameCapacity);
+
+		String message = randomMessage(firstFrameCapacity + 100);
+		GIFImage steganogram = method.embed(newPayload(message), null);
+		steganogram.save(steganogramFile);
+		assertFrameStructure(steganogramFile);
+		assertTransparencyKept(steganogram);
+
+		assertEquals(message, extract(new GIFShuffle(load(steganogramFile), new GIFPointFilterNone()), "key"));
+	}
+
+	@Test
+	public void testSkipsFrameTooSmallForChunk()
+			throws Exception {
+		writeAnimation(animatedFile, SMALL_FRAME);
+		image = load(animatedFile);
+		GIFSortedColorTable method = new GIFSortedColorTable(image, new GIFPointFilterHomogeneous());
+		int firstFrameCapacity = new GIFSortedColorTable(firstFrame(), new GIFPointFilterHomogeneous()).capacity();
+
+		// The payload continues behind the small frame
+		String message = randomMessage(firstFrameCapacity * 3 / 2);
+		method.embed(newPayload(message), null).save(steganogramFile);
+		assertArrayEquals(image.getFrames().get(1).getPixels(), load(steganogramFile).getFrames().get(1).getPixels());
+
+		assertEquals(message, extract(new GIFSortedColorTable(load(steganogramFile), new GIFPointFilterHomogeneous()),
+				"key"));
+	}
+
+	@Test
+	public void testExtractionStopsAfterLastChunk()
+			throws Exception {
+		int waveFrames = Math.max(ForkJoinPool.getCommonPoolParallelism(), 1);
+		int[][] frames = new int[3 * waveFrames + 3][];
+		for (int i = 0; i < frames.length; i++) {
+			frames[i] = new int[] { 20, 20, 0, 0, 10, -1 };
+		}
+		writeAnimation(animatedFile, frames);
+		image = load(animatedFile);
+
+		Map<Integer, byte[]> storedChunks = new ConcurrentHashMap<>();
+		AtomicInteger extractedFrames = new AtomicInteger();
+		AnimatedGIFEmbedding animation = new AnimatedGIFEmbedding(new AnimatedGIFEmbedding.FrameCoder() {
+
+			@Override
+			public int capacity(GIFImage frame, int frameIndex) {
+				return 50;
+			}
+
+			@Override
+			public void embed(GIFImage frame, int frameIndex, byte[] chunk) {
+				storedChunks.put(frameIndex, chunk);
+			}
+
+			@Override
+			public byte[] extract(GIFImage frame, int frameIndex) {
+				extractedFrames.incrementAndGet();
+				return storedChunks.get(frameIndex);
+			}
+		});
+
+		String message = randomMessage(30);
+		animation.embed(image, new PayloadEmbedder(newPayload(message), animation.capacity(image)).getPayloadBytes(),
+				null);
+		Payload payload = new Payload();
+		payload.setSteganoPassword("key");
+		animation.extract(image, new PayloadExtractor(payload), null);
+		assertEquals(message, ((MessageBlock) payload.getBlock(0)).getMessage());
+
+		// Only the waves up to the last chunk are extracted
+		int waves = (storedChunks.size() + waveFrames - 1) / waveFrames;
+		assertEquals(waves * waveFrames, extractedFrames.get());
+		assertTrue(extractedFrames.get() < frames.length);
+	}
+
+	/**
+	 * Writes an animation with frames of different sizes, positions, delays and local palettes
+	 *
+	 * @param file
+	 * @param frames width, height, left, top, delay and transparent index of each frame
+	 * @throws Exception
+	 */
+	private static void writeAnimation(File file, int[][] frames)
+			throws Exception {
+		Random random = new Random(1);
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(file)) {
+			writer.setOutput(stream);
+			writer.prepareWriteSequence(null);
+			for (int[] frame : frames) {
+				byte[] reds = new byte[256], greens = new byte[256], blues = new byte[256];
+				random.nextBytes(reds);
+				random.nextBytes(greens);
+				random.nextBytes(blues);
+				IndexColorModel colorModel = new IndexColorModel(8, 256, reds, greens, blues, frame[5]);
+				BufferedImage bufferedImage = new BufferedImage(frame[0], frame[1], BufferedImage.TYPE_BYTE_INDEXED,
+						colorModel);
+				for (int y = 0; y < frame[1]; y++) {
+					for (int x = 0; x < frame[0]; x++) {
+						bufferedImage.getRaster().setSample(x, y, 0, random.nextInt(256));
+					}
+				}
+
+				IIOMetadata metadata = writer
+						.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(bufferedImage), null);
+				IIOMetadataNode root = new IIOMetadataNode(FORMAT);
+				IIOMetadataNode descriptor = new IIOMetadataNode("ImageDescriptor");
+				descriptor.setAttribute("imageLeftPosition", String.valueOf(frame[2]));
+				descriptor.setAttribute("imageTopPosition", String.valueOf(frame[3]));
+				descriptor.setAttribute("imageWidth", String.valueOf(frame[0]));
+				descriptor.setAttribute("imageHeight", String.valueOf(frame[1]));
+				descriptor.setAttribute("interlaceFlag", "FALSE");
+				root.appendChild(descriptor);
+				IIOMetadataNode graphicControl = new IIOMetadataNode("GraphicControlExtension");
+				graphicControl.setAttribute("disposalMethod", "restoreToBackgroundColor");
+				graphicControl.setAttribute("userInputFlag", "FALSE");
+				graphicControl.setAttribute("transparentColorFlag", frame[5] >= 0 ? "TRUE" : "FALSE");
+				graphicControl.setAttribute("delayTime", String.valueOf(frame[4]));
+				graphicControl.setAttribute("transparentColorIndex", String.valueOf(Math.max(frame[5], 0)));
+				root.appendChild(graphicControl);
+				metadata.mergeTree(FORMAT, root);
+
+				writer.writeToSequence(new IIOImage(bufferedImage, null, metadata), null);
+			}
+			writer.endWriteSequence();
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	/**
+	 * Asserts that the positions, delays and transparency of the frames have been written back
+	 *
+	 * @param file
+	 * @throws Exception
+	 */
+	private static void assertFrameStructure(File file)
+			throws Exception {
+		try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+			ImageReader reader = ImageIO.getImageReaders(stream).next();
+			reader.setInput(stream);
+			assertEquals(FRAMES.length, reader.getNumImages(true));
+			for (int i = 0; i < FRAMES.length; i++) {
+				IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(i).getAsTree(FORMAT);
+				IIOMetadataNode descriptor = (IIOMetadataNode) root.getElementsByTagName("ImageDescriptor").item(0);
+				assertEquals(String.valueOf(FRAMES[i][0]), descriptor.getAttribute("imageWidth"));
+				assertEquals(String.valueOf(FRAMES[i][1]), descriptor.getAttribute("imageHeight"));
+				assertEquals(String.valueOf(FRAMES[i][2]), descriptor.getAttribute("imageLeftPosition"));
+				assertEquals(String.valueOf(FRAMES[i][3]), descriptor.getAttribute("imageTopPosition"));
+				IIOMetadataNode graphicControl = (IIOMetadataNode) root.getElementsByTagName("GraphicControlExtension")
+						.item(0);
+				assertEquals(String.valueOf(FRAMES[i][4]), graphicControl.getAttribute("delayTime"));
+				assertEquals("restoreToBackgroundColor", graphicControl.getAttribute("disposalMethod"));
+				assertEquals(FRAMES[i][5] >= 0 ? "TRUE" : "FALSE", graphicControl.getAttribute("transparentColorFlag"));
+			}
+			reader.dispose();
+		}
+	}
+
+	/**
+	 * Asserts that the transparent pixels of the second frame are still transparent and no other
+	 * pixel became transparent
+	 *
+	 * @param steganogram
+	 */
+	private void assertTransparencyKept(GIFImage steganogram) {
+		GIFImage before = image.getFrames().get(1);
+		GIFImage after = steganogram.getFrames().get(1);
+		int[] pixelsBefore = before.getPixels();
+		int[] pixelsAfter = after.getPixels();
+		for (int i = 0; i < pixelsBefore.length; i++) {
+			assertEquals(before.getColorTable().get(pixelsBefore[i]).getAlpha() == 0,
+					after.getColorTable().get(pixelsAfter[i]).getAlpha() == 0);
+		}
+	}
+
+	private GIFImage firstFrame() {
+		GIFImage frame = new GIFImage();
+		frame.setBufferedImage(image.getBufferedImage());
+		return frame;
+	}
+
+	private static GIFImage load(File file)
+			throws Exception {
+		GIFImage gifImage = new GIFImage();
+		gifImage.load(file);
+		return gifImage;
+	}
+
+	private static Payload newPayload(String message) {
+		Payload payload = new Payload();
+		payload.setSteganoPassword("key");
+		payload.addBlock(new MessageBlock(message));
+		return payload;
+	}
+
+	private static String extract(EmbeddingMethod<GIFImage> method, String key)
+			throws SteganoExtractException {
+		Payload payload = new Payload();
+		payload.setSteganoPassword(key);
+		method.extract(payload, null);
+		return ((MessageBlock) payload.getBlock(0)).getMessage();
+	}
+
+	/**
+	 * Returns a message that doesn't compress well
+	 *
+	 * @param length
+	 * @return
+	 */
+	private static String randomMessage(int length) {
+		Random random = new Random(2);
+		StringBuilder message = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			message.append((char) ('!' + random.nextInt(94)));
+		}
+		return message.toString();
+	}
+}
@@ -0,0 +1,115 @@
+package org.stegosuite.image.embedding.gif;
+
+import org.junit.Test;
+import org.stegosuite.image.embedding.gif.filter.GIFPointFilterNone;
+import org.stegosuite.image.embedding.point.PointMask;
+import org.stegosuite.image.embedding.point.PointSequence;
+import org.stegosuite.image.embedding.point.SpreadingMode;
+import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.image.format.IndexedPalette;
+import org.stegosuite.model.payload.BitCursor;
+import org.stegosuite.model.payload.Payload;
+import org.stegosuite.model.payload.block.MessageBlock;
+
+import java.awt.*;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GIFSortedColorTableTest {
+
+	private static final List<Color> TABLE = Arrays.asList(Color.BLACK, new Color(10, 10, 10), Color.WHITE,
+			Color.RED, new Color(250, 250, 250));
+
+	@Test
+	public void testHistogramCountsDuplicateColorsOnce() {
+		List<Color> table = Arrays.asList(Color.BLACK, Color.WHITE, Color.BLACK);
+		assertArrayEquals(new int[] { 3, 1, 0 }, GIFSortedColorTable.getHistogram(table, new int[] { 0, 2, 1, 2 }));
+	}
+
+	@Test
+	public void testReinsertIntoMostSimilarColor() {
+		int[] before = GIFSortedColorTable.getHistogram(TABLE, new int[] { 0, 1, 2, 3 });
+		int[] pixels = { 0, 0, 0, 2, 3, 3 };
+		PointMask carriers = new PointMask(pixels.length, 1);
+		carriers.set(0);
+
+		GIFSortedColorTable.reinsertUnreferencedColors(pixels, TABLE, before, carriers);
+		assertArrayEquals(new int[] { 0, 1, 0, 2, 3, 3 }, pixels);
+	}
+
+	@Test
+	public void testKeepColorsReferenced() {
+		int[] before = GIFSortedColorTable.getHistogram(TABLE, new int[] { 0, 1, 2, 3 });
+		// Black has a single pixel and white only carriers, red is the most similar color left
+		int[] pixels = { 0, 2, 2, 3, 3 };
+		PointMask carriers = new PointMask(pixels.length, 1);
+		carriers.set(1);
+		carriers.set(2);
+
+		GIFSortedColorTable.reinsertUnreferencedColors(pixels, TABLE, before, carriers);
+		assertArrayEquals(new int[] { 0, 2, 2, 1, 3 }, pixels);
+	}
+
+	@Test
+	public void testIgnoreColorsUnreferencedBefore() {
+		int[] before = GIFSortedColorTable.getHistogram(TABLE, new int[] { 0, 2, 3 });
+		int[] pixels = { 0, 0, 2, 2, 3, 3 };
+
+		GIFSortedColorTable.reinsertUnreferencedColors(pixels, TABLE, before, new PointMask(pixels.length, 1));
+		assertArrayEquals(new int[] { 0, 0, 2, 2, 3, 3 }, pixels);
+	}
+
+	@Test
+	public void testShuffledPayloadBehindMatchingVersion()
+			throws Exception {
+		String message = "The quick brown fox jumps over the lazy dog";
+		GIFImage image = new GIFImage();
+		image.load(new File(this.getClass().getClassLoader().getResource("sunflower3.gif").getFile()));
+		GIFSortedColorTable method = new GIFSortedColorTable(image, new GIFPointFilterNone());
+		method.setSpreadingMode(SpreadingMode.SHUFFLE);
+		Payload payload = new Payload();
+		payload.setSteganoPassword("key");
+		payload.addBlock(new MessageBlock(message));
+		GIFImage steganogram = method.embed(payload, null);
+
+		// Versioned headers whose payload length is negative or exceeds the capacity
+		byte[][] headers = { { Payload.HEADER_MAGIC, 1, 0, 0, 1 },
+				{ Payload.HEADER_MAGIC, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF } };
+		for (byte[] header : headers) {
+			writePermutedHeader(steganogram, "key", header);
+			Payload extracted = new Payload();
+			extracted.setSteganoPassword("key");
+			new GIFSortedColorTable(steganogram, new GIFPointFilterNone()).extract(extracted, null);
+			assertEquals(message, ((MessageBlock) extracted.getBlock(0)).getMessage());
+		}
+	}
+
+	/**
+	 * Overwrites the first bits of the point permutation, as if the image carried a payload spread
+	 * in PERMUTATION mode starting with the header
+	 *
+	 * @param image
+	 * @param key
+	 * @param header
+	 */
+	private static void writePermutedHeader(GIFImage image, String key, byte[] header) {
+		int[] pixels = image.getPixels().clone();
+		IndexedPalette palette = GIFSortedColorTable.getFramePalette(image);
+		PointSequence points = SpreadingMode.PERMUTATION.newPointSequence(image, key, new GIFPointFilterNone());
+		BitCursor bits = new BitCursor(header, Payload.BYTE_ORDER);
+		while (bits.hasRemaining()) {
+			int index;
+			do {
+				index = points.nextIndex();
+			} while (palette.isSkipped(pixels[index]));
+			int sortedIndex = palette.toSorted(pixels[index]);
+			if (sortedIndex % 2 != bits.nextBit()) {
+				pixels[index] = palette.fromSorted(sortedIndex ^ 1);
+			}
+		}
+		image.setPixels(pixels);
+	}
+}
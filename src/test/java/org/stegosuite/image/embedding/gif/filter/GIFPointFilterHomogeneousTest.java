@@ -0,0 +1,74 @@
+package org.stegosuite.image.embedding.gif.filter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.image.embedding.point.PointMask;
+import org.stegosuite.image.format.GIFImage;
+import org.stegosuite.model.exception.SteganoImageException;
+import org.stegosuite.util.ColorDistance;
+
+import java.awt.*;
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GIFPointFilterHomogeneousTest {
+
+	private GIFImage image = null;
+
+	@Before
+	public void beforeMethod()
+			throws SteganoImageException {
+		image = new GIFImage();
+		image.load(new File(this.getClass().getClassLoader().getResource("sunflower.gif").getFile()));
+	}
+
+	@Test
+	public void testBandsMatchSingleBand() {
+		PointMask expected = new GIFPointFilterHomogeneous().filter(image, Integer.MAX_VALUE);
+		assertTrue(expected.size() > 0);
+
+		for (int bandPixels : new int[] { 64, 1000, 97 * image.getWidth() }) {
+			assertMaskEquals(expected, new GIFPointFilterHomogeneous().filter(image, bandPixels));
+		}
+	}
+
+	/**
+	 * Only the last 3 rows of the image are homogeneous, the areas starting in row height - 3 must
+	 * be found no matter where the bands end
+	 */
+	@Test
+	public void testLastRowsAreFiltered() {
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		// Two colors that are still different after dropping the LSB of their sorted index
+		List<Color> colorTable = image.getColorTable();
+		List<Color> sortedTable = image.getSortedColorTable(ColorDistance.CIEDE_2000);
+		int a = colorTable.indexOf(sortedTable.get(0));
+		int b = colorTable.indexOf(sortedTable.get(2));
+
+		int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixels[y * width + x] = y >= height - 3 || (y < height - 4 && y % 2 == 0) ? a : b;
+			}
+		}
+		image.setPixels(pixels);
+
+		PointMask expected = new PointMask(width, height);
+		expected.setRange((height - 3) * width, height * width);
+
+		for (int bandPixels : new int[] { Integer.MAX_VALUE, 64, (height - 2) * width, (height - 1) * width }) {
+			assertMaskEquals(expected, new GIFPointFilterHomogeneous().filter(image, bandPixels));
+		}
+	}
+
+	private void assertMaskEquals(PointMask expected, PointMask actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = expected.nextSetIndex(0); i >= 0; i = expected.nextSetIndex(i + 1)) {
+			assertTrue(actual.contains(i));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.stegosuite.image.embedding.lsb;
+
+import org.junit.Test;
+import org.stegosuite.image.embedding.point.PointMask;
+import org.stegosuite.image.format.BMPImage;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LsbPointFilterHomogeneousTest {
+
+	@Test
+	public void testSingleBand() {
+		testAgainstReference(37, 23, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testBandsSplitRows() {
+		testAgainstReference(37, 23, 64);
+	}
+
+	@Test
+	public void testBandsSpanRows() {
+		testAgainstReference(5, 300, 64);
+	}
+
+	/**
+	 * Compares the filter with a direct implementation on an image of few colors that only differ
+	 * in their LSBs
+	 *
+	 * @param width
+	 * @param height
+	 * @param bandPixels
+	 */
+	private void testAgainstReference(int width, int height, int bandPixels) {
+		Random random = new Random(width * height);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int color = random.nextInt(8) == 0 ? 0x204060 : 0x808080;
+				image.setRGB(x, y, color | random.nextInt(2) << 16 | random.nextInt(2));
+			}
+		}
+
+		PointMask mask = new LsbPointFilterHomogeneous<BMPImage>().filter(image, bandPixels);
+
+		boolean[][] expected = new boolean[width][height];
+		for (int x = 1; x < width - 1; x++) {
+			for (int y = 1; y < height - 1; y++) {
+				int rgb = image.getRGB(x, y) & 0xFEFEFE;
+				if ((image.getRGB(x - 1, y - 1) & 0xFEFEFE) == rgb && (image.getRGB(x + 1, y - 1) & 0xFEFEFE) == rgb
+						&& (image.getRGB(x - 1, y + 1) & 0xFEFEFE) == rgb
+						&& (image.getRGB(x + 1, y + 1) & 0xFEFEFE) == rgb) {
+					for (int dX = x - 1; dX <= x + 1; dX++) {
+						for (int dY = y - 1; dY <= y + 1; dY++) {
+							expected[dX][dY] = true;
+						}
+					}
+				}
+			}
+		}
+
+		int count = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				assertEquals(expected[x][y], mask.contains(x, y));
+				count += expected[x][y] ? 1 : 0;
+			}
+		}
+		assertEquals(count, mask.size());
+		assertTrue(count > 0 && count < width * height);
+	}
+}
@@ -0,0 +1,83 @@
+package org.stegosuite.image.embedding.lsb;
+
+import org.junit.Test;
+import org.stegosuite.util.RgbChannel;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LsbRasterTest {
+
+	private static final int WIDTH = 37;
+
+	private static final int HEIGHT = 23;
+
+	@Test
+	public void testThreeByteBgr() {
+		testAgainstRgb(BufferedImage.TYPE_3BYTE_BGR);
+	}
+
+	@Test
+	public void testFourByteAbgr() {
+		testAgainstRgb(BufferedImage.TYPE_4BYTE_ABGR);
+	}
+
+	@Test
+	public void testIntRgb() {
+		testAgainstRgb(BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Test
+	public void testIntArgb() {
+		testAgainstRgb(BufferedImage.TYPE_INT_ARGB);
+	}
+
+	@Test
+	public void testIntBgr() {
+		testAgainstRgb(BufferedImage.TYPE_INT_BGR);
+	}
+
+	/**
+	 * Flips random bits and compares the result with the same operation done on the values
+	 * returned by getRGB()
+	 *
+	 * @param imageType
+	 */
+	private void testAgainstRgb(int imageType) {
+		Random random = new Random(imageType);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, imageType);
+		int[] expected = new int[WIDTH * HEIGHT];
+		for (int i = 0; i < expected.length; i++) {
+			image.setRGB(i % WIDTH, i / WIDTH, random.nextInt());
+			expected[i] = image.getRGB(i % WIDTH, i / WIDTH);
+		}
+
+		LsbRaster raster = LsbRaster.of(image);
+		int[] shifts = { 16, 8, 0 };
+		for (int n = 0; n < 2000; n++) {
+			int index = random.nextInt(expected.length);
+			RgbChannel channel = RgbChannel.RGB().get(random.nextInt(3));
+			int bitPosition = random.nextInt(8);
+			int bit = random.nextInt(2);
+			int shift = shifts[channel.ordinal()] + bitPosition;
+
+			assertEquals((expected[index] >> shift) & 1, raster.getBit(index, channel, bitPosition));
+
+			int newRgb = (expected[index] & ~(1 << shift)) | (bit << shift);
+			assertEquals(newRgb != expected[index], raster.setBit(index, channel, bitPosition, bit));
+			expected[index] = newRgb;
+		}
+
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], image.getRGB(i % WIDTH, i / WIDTH));
+		}
+
+		int[] row = new int[WIDTH];
+		for (int y = 0; y < HEIGHT; y++) {
+			raster.getRgbRow(y, row);
+			assertArrayEquals(image.getRGB(0, y, WIDTH, 1, null, 0, WIDTH), row);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.stegosuite.image.embedding.point;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.image.embedding.bmp.filter.BMPPointFilterHomogeneous;
+import org.stegosuite.image.embedding.bmp.filter.BMPPointFilterNone;
+import org.stegosuite.image.format.BMPImage;
+import org.stegosuite.model.exception.SteganoImageException;
+
+import java.awt.*;
+import java.io.File;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class PointGeneratorTest {
+
+	private static final String KEY = "a password";
+
+	private BMPImage image = null;
+
+	@Before
+	public void beforeMethod()
+			throws SteganoImageException {
+		image = new BMPImage();
+		image.load(new File(this.getClass().getClassLoader().getResource("snow.bmp").getFile()));
+	}
+
+	@Test
+	public void testSameKeyGeneratesSameSequence() {
+		PointGenerator<BMPImage> first = new PointGenerator<>(image, KEY, new BMPPointFilterNone());
+		PointGenerator<BMPImage> second = new PointGenerator<>(image, KEY, new BMPPointFilterNone());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(first.nextIndex(), second.nextIndex());
+		}
+	}
+
+	@Test
+	public void testEachIterationIsPermutationOfAllPoints() {
+		int pixelCount = image.getWidth() * image.getHeight();
+		PointGenerator<BMPImage> generator = new PointGenerator<>(image, KEY, new BMPPointFilterNone());
+		BitSet generated = new BitSet(pixelCount);
+		for (int i = 0; i < pixelCount; i++) {
+			generated.set(generator.nextIndex());
+		}
+		assertEquals(pixelCount, generated.cardinality());
+		assertEquals(1, generator.getIterationCount());
+
+		generator.nextIndex();
+		assertEquals(2, generator.getIterationCount());
+	}
+
+	@Test
+	public void testFilteredPointsAreSkipped() {
+		PointFilter<BMPImage> filter = new BMPPointFilterHomogeneous();
+		PointMask filteredPoints = filter.getFilteredPoints(image);
+		PointGenerator<BMPImage> generator = new PointGenerator<>(image, KEY, filter);
+
+		int unfilteredCount = image.getWidth() * image.getHeight() - filteredPoints.size();
+		for (int i = 0; i < unfilteredCount; i++) {
+			Point point = generator.nextPoint();
+			assertFalse(filteredPoints.contains(point));
+		}
+		assertTrue(generator.wasGenerated(new Point(0, 0)));
+
+		try {
+			generator.nextIndex();
+			fail("Expected the generator to be exhausted");
+		} catch (NoSuchElementException expected) {
+			assertEquals(1, generator.getIterationCount());
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package org.stegosuite.image.embedding.point;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PointMaskTest {
+
+	/**
+	 * 200 pixels fill three 64 bit words and 8 bits of a last partial word
+	 */
+	private static final int WIDTH = 20;
+
+	private static final int HEIGHT = 10;
+
+	private static final int LENGTH = WIDTH * HEIGHT;
+
+	private PointMask mask = null;
+
+	@Before
+	public void beforeMethod() {
+		mask = new PointMask(WIDTH, HEIGHT);
+	}
+
+	@Test
+	public void testSetRangeOnWordBoundaries() {
+		// Ranges starting and ending on, before and after word boundaries, within one word and
+		// across several words, up to the end of the last partial word
+		int[] bounds = { 0, 1, 5, 63, 64, 65, 100, 127, 128, 129, 191, 192, 193, LENGTH - 1, LENGTH };
+		for (int from : bounds) {
+			for (int to : bounds) {
+				PointMask rangeMask = new PointMask(WIDTH, HEIGHT);
+				rangeMask.setRange(from, to);
+				BitSet expected = new BitSet(LENGTH);
+				if (from < to) {
+					expected.set(from, to);
+				}
+				assertMaskEquals(expected, rangeMask);
+			}
+		}
+	}
+
+	@Test
+	public void testSetRangeKeepsOtherPixels() {
+		mask.set(3);
+		mask.set(70);
+		mask.set(LENGTH - 1);
+		mask.setRange(62, 66);
+
+		BitSet expected = new BitSet(LENGTH);
+		expected.set(3);
+		expected.set(70);
+		expected.set(LENGTH - 1);
+		expected.set(62, 66);
+		assertMaskEquals(expected, mask);
+	}
+
+	@Test
+	public void testNextSetAndClearIndex() {
+		Random random = new Random(1);
+		BitSet expected = new BitSet(LENGTH);
+		for (int i = 0; i < 40; i++) {
+			int index = random.nextInt(LENGTH);
+			mask.set(index);
+			expected.set(index);
+		}
+		assertMaskEquals(expected, mask);
+
+		// Clear pixels are found across empty and full words
+		mask.setRange(64, 192);
+		expected.set(64, 192);
+		assertMaskEquals(expected, mask);
+	}
+
+	@Test
+	public void testNextClearIndexPastLength() {
+		mask.setRange(0, LENGTH);
+		assertEquals(LENGTH, mask.size());
+		// The unused bits of the last word are clear, but are no pixels
+		assertEquals(-1, mask.nextClearIndex(0));
+		assertEquals(-1, mask.nextClearIndex(LENGTH - 1));
+		assertEquals(-1, mask.nextClearIndex(LENGTH));
+		assertEquals(-1, mask.nextSetIndex(LENGTH));
+		assertEquals(LENGTH - 1, mask.nextSetIndex(LENGTH - 1));
+
+		mask.clear(LENGTH - 1);
+		assertEquals(LENGTH - 1, mask.nextClearIndex(0));
+		assertEquals(LENGTH - 1, mask.nextClearIndex(LENGTH - 1));
+
+		// A mask of whole words ends without a partial word
+		PointMask wordMask = new PointMask(64, 2);
+		wordMask.setRange(0, 128);
+		assertEquals(-1, wordMask.nextClearIndex(0));
+		assertEquals(-1, wordMask.nextClearIndex(127));
+		assertEquals(128, wordMask.size());
+	}
+
+	@Test
+	public void testEmptyMask() {
+		assertTrue(mask.isEmpty());
+		assertEquals(0, mask.size());
+		assertEquals(-1, mask.nextSetIndex(0));
+		assertEquals(0, mask.nextClearIndex(0));
+		assertEquals(LENGTH - 1, mask.nextClearIndex(LENGTH - 1));
+
+		mask.set(LENGTH - 1);
+		assertFalse(mask.isEmpty());
+		mask.clear(LENGTH - 1);
+		assertTrue(mask.isEmpty());
+	}
+
+	@Test
+	public void testCoordinates() {
+		mask.set(3, 4);
+		assertTrue(mask.contains(4 * WIDTH + 3));
+		assertTrue(mask.contains(3, 4));
+		assertTrue(mask.contains(new Point(3, 4)));
+		assertFalse(mask.contains(4, 3));
+	}
+
+	@Test
+	public void testOr() {
+		PointMask other = new PointMask(WIDTH, HEIGHT);
+		mask.setRange(10, 70);
+		other.setRange(60, 130);
+		other.set(LENGTH - 1);
+		mask.or(other);
+
+		BitSet expected = new BitSet(LENGTH);
+		expected.set(10, 130);
+		expected.set(LENGTH - 1);
+		assertMaskEquals(expected, mask);
+		assertEquals(71, other.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOrDifferentSize() {
+		mask.or(new PointMask(HEIGHT, WIDTH));
+	}
+
+	/**
+	 * Compares every query of the mask with a BitSet
+	 *
+	 * @param expected
+	 * @param actual
+	 */
+	private static void assertMaskEquals(BitSet expected, PointMask actual) {
+		assertEquals(expected.cardinality(), actual.size());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		for (int i = 0; i < LENGTH; i++) {
+			assertEquals(expected.get(i), actual.contains(i));
+			int nextSet = expected.nextSetBit(i);
+			assertEquals(nextSet, actual.nextSetIndex(i));
+			int nextClear = expected.nextClearBit(i);
+			assertEquals(nextClear < LENGTH ? nextClear : -1, actual.nextClearIndex(i));
+		}
+	}
+}
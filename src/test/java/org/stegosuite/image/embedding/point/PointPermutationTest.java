@@ -0,0 +1,179 @@
+package org.stegosuite.image.embedding.point;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.image.embedding.bmp.filter.BMPPointFilterHomogeneous;
+import org.stegosuite.image.embedding.bmp.filter.BMPPointFilterNone;
+import org.stegosuite.image.format.BMPImage;
+import org.stegosuite.model.exception.SteganoImageException;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PointPermutationTest {
+
+	private static final String KEY = "a password";
+
+	private BMPImage image = null;
+
+	@Before
+	public void beforeMethod()
+			throws SteganoImageException {
+		image = new BMPImage();
+		image.load(new File(this.getClass().getClassLoader().getResource("snow.bmp").getFile()));
+	}
+
+	@Test
+	public void testSameKeyGeneratesSameSequence() {
+		PointPermutation<BMPImage> first = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		PointPermutation<BMPImage> second = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		PointPermutation<BMPImage> other = new PointPermutation<>(image, "another password", new BMPPointFilterNone());
+		int differences = 0;
+		for (int i = 0; i < 1000; i++) {
+			int index = first.nextIndex();
+			assertEquals(index, second.nextIndex());
+			if (index != other.nextIndex()) {
+				differences++;
+			}
+		}
+		assertTrue(differences > 900);
+	}
+
+	@Test
+	public void testEachIterationIsPermutationOfAllPoints() {
+		int pixelCount = image.getWidth() * image.getHeight();
+		PointPermutation<BMPImage> permutation = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		BitSet generated = new BitSet(pixelCount);
+		for (int i = 0; i < pixelCount; i++) {
+			generated.set(permutation.nextIndex());
+		}
+		assertEquals(pixelCount, generated.cardinality());
+		assertEquals(1, permutation.getIterationCount());
+
+		permutation.nextIndex();
+		assertEquals(2, permutation.getIterationCount());
+	}
+
+	@Test
+	public void testFilteredPointsAreSkipped() {
+		PointFilter<BMPImage> filter = new BMPPointFilterHomogeneous();
+		PointMask filteredPoints = filter.getFilteredPoints(image);
+		PointPermutation<BMPImage> permutation = new PointPermutation<>(image, KEY, filter);
+
+		int unfilteredCount = image.getWidth() * image.getHeight() - filteredPoints.size();
+		for (int i = 0; i < unfilteredCount; i++) {
+			Point point = permutation.nextPoint();
+			assertFalse(filteredPoints.contains(point));
+			assertTrue(permutation.wasGenerated(point));
+		}
+
+		try {
+			permutation.nextIndex();
+			fail("Expected the permutation to be exhausted");
+		} catch (NoSuchElementException expected) {
+			assertEquals(1, permutation.getIterationCount());
+		}
+	}
+
+	@Test
+	public void testWasGenerated() {
+		PointPermutation<BMPImage> permutation = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		PointPermutation<BMPImage> lookahead = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		for (int i = 0; i < 100; i++) {
+			Point point = permutation.nextPoint();
+			assertEquals(point, lookahead.nextPoint());
+			assertTrue(permutation.wasGenerated(point));
+		}
+		for (int i = 0; i < 100; i++) {
+			assertFalse(permutation.wasGenerated(lookahead.nextPoint()));
+		}
+	}
+
+	@Test
+	public void testIndexAtMatchesSequence() {
+		PointPermutation<BMPImage> permutation = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		PointPermutation<BMPImage> sequence = new PointPermutation<>(image, KEY, new BMPPointFilterNone());
+		int pixelCount = image.getWidth() * image.getHeight();
+		int differences = 0;
+		for (int step = 0; step < pixelCount; step += 7) {
+			if (permutation.indexAt(1, step) != permutation.indexAt(2, step)) {
+				differences++;
+			}
+		}
+		// Every iteration has its own order
+		assertTrue(differences > pixelCount / 7 * 9 / 10);
+
+		// Batches of steps are mapped like single steps
+		for (int step = 0; step < 5000; step++) {
+			assertEquals(permutation.indexAt(1, step), sequence.nextIndex());
+		}
+
+		PointPermutation<BMPImage> unkeyed = new PointPermutation<>(image, null, new BMPPointFilterNone());
+		for (int step = 0; step < 100; step++) {
+			assertEquals(step, unkeyed.nextIndex());
+		}
+	}
+
+	@Test
+	public void testForEachPointMatchesSequence() {
+		assertForEachPointMatchesSequence(new BMPPointFilterNone(), image.getWidth() * image.getHeight() + 12345);
+		assertForEachPointMatchesSequence(new BMPPointFilterHomogeneous(), 100000);
+	}
+
+	@Test
+	public void testForEachPointStopsAfterLastTask() {
+		// One task per row of 64 pixels, far more tasks than a wave of counting takes
+		int waveTasks = Math.max(ForkJoinPool.getCommonPoolParallelism(), 1);
+		int width = PointPermutation.STEPS_PER_TASK / 64;
+		BMPImage largeImage = new BMPImage();
+		largeImage.setBufferedImage(new BufferedImage(width, 64 * (waveTasks + 8), BufferedImage.TYPE_INT_RGB));
+		PointFilter<BMPImage> everyThirdPixel = new PointFilter<BMPImage>() {
+
+			@Override
+			public int maxLsbCount() {
+				return 1;
+			}
+
+			@Override
+			protected PointMask filter(BMPImage image) {
+				PointMask mask = new PointMask(image.getWidth(), image.getHeight());
+				for (int i = 0; i < image.getWidth() * image.getHeight(); i += 3) {
+					mask.set(i);
+				}
+				return mask;
+			}
+		};
+
+		PointPermutation<BMPImage> permutation = new PointPermutation<>(largeImage, KEY, everyThirdPixel);
+		int pointCount = 5000;
+		int[] indices = new int[pointCount];
+		permutation.forEachPoint(pointCount, (iteration, number, index) -> indices[(int) number] = index);
+
+		// A wave of counted tasks and the steps of the points
+		assertTrue(permutation.getMappedSteps() <= (long) (waveTasks + 1) * PointPermutation.STEPS_PER_TASK);
+		for (int i = 0; i < pointCount; i++) {
+			assertEquals(permutation.nextIndex(), indices[i]);
+		}
+	}
+
+	private void assertForEachPointMatchesSequence(PointFilter<BMPImage> filter, int pointCount) {
+		PointPermutation<BMPImage> permutation = new PointPermutation<>(image, KEY, filter);
+		int[] indices = new int[pointCount];
+		int[] iterations = new int[pointCount];
+		permutation.forEachPoint(pointCount, (iteration, number, index) -> {
+			indices[(int) number] = index;
+			iterations[(int) number] = iteration;
+		});
+
+		for (int i = 0; i < pointCount; i++) {
+			assertEquals(permutation.nextIndex(), indices[i]);
+			assertEquals(permutation.getIterationCount(), iterations[i]);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package org.stegosuite.image.format;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GIFCodecTest {
+
+	private Random random = null;
+
+	@Before
+	public void beforeMethod() {
+		random = new Random(1);
+	}
+
+	@Test
+	public void testRandomPixels()
+			throws Exception {
+		// Random pixels fill the code table several times
+		assertRoundTrip(newStream(300, 200, 256, false));
+	}
+
+	@Test
+	public void testUniformPixels()
+			throws Exception {
+		GIFStream stream = newStream(500, 400, 256, false);
+		stream.frames.get(0).indices = new byte[500 * 400];
+		assertRoundTrip(stream);
+	}
+
+	@Test
+	public void testSmallColorTables()
+			throws Exception {
+		for (int colorCount = 2; colorCount <= 128; colorCount <<= 1) {
+			assertRoundTrip(newStream(61, 37, colorCount, false));
+		}
+	}
+
+	@Test
+	public void testInterlaced()
+			throws Exception {
+		for (int height = 1; height <= 17; height++) {
+			GIFStream stream = newStream(13, height, 16, true);
+			GIFStream decoded = GIFDecoder.decode(encode(stream));
+			assertTrue(decoded.frames.get(0).interlaced);
+			assertArrayEquals(stream.frames.get(0).indices, decoded.frames.get(0).indices);
+		}
+		// ImageIO misplaces the rows of interlaced images with 2 to 4 rows
+		assertRoundTrip(newStream(13, 17, 16, true));
+	}
+
+	@Test
+	public void testFramesAndExtensions()
+			throws Exception {
+		GIFStream stream = newStream(40, 30, 4, false);
+		GIFStream.Frame frame = new GIFStream.Frame();
+		frame.left = 5;
+		frame.top = 7;
+		frame.width = 20;
+		frame.height = 10;
+		frame.localColorTable = randomBytes(3 * 32);
+		frame.indices = randomIndices(20 * 10, 32);
+		frame.hasGraphicControl = true;
+		frame.disposalMethod = 2;
+		frame.delayTime = 25;
+		frame.transparentIndex = 3;
+		frame.extensions.add(new byte[] { 0x21, (byte) 0xFE, 3, 'a', 'b', 'c', 0 });
+		stream.frames.add(frame);
+
+		GIFStream decoded = GIFDecoder.decode(encode(stream));
+		assertEquals(2, decoded.frames.size());
+		GIFStream.Frame decodedFrame = decoded.frames.get(1);
+		assertEquals(5, decodedFrame.left);
+		assertEquals(7, decodedFrame.top);
+		assertEquals(2, decodedFrame.disposalMethod);
+		assertEquals(25, decodedFrame.delayTime);
+		assertEquals(3, decodedFrame.transparentIndex);
+		assertArrayEquals(frame.localColorTable, decodedFrame.localColorTable);
+		assertArrayEquals(frame.indices, decodedFrame.indices);
+		assertEquals(1, decodedFrame.extensions.size());
+		assertArrayEquals(frame.extensions.get(0), decodedFrame.extensions.get(0));
+		assertEquals(-1, decoded.frames.get(0).transparentIndex);
+	}
+
+	@Test
+	public void testColorTablePadding() {
+		byte[] reds = { 1, 2, 3 };
+		byte[] greens = { 4, 5, 6 };
+		byte[] blues = { 7, 8, 9 };
+		assertArrayEquals(new byte[] { 1, 4, 7, 2, 5, 8, 3, 6, 9, 1, 4, 7 },
+				GIFEncoder.createColorTable(reds, greens, blues, 3));
+	}
+
+	/**
+	 * Asserts that the decoder and ImageIO read the encoded pixels
+	 *
+	 * @param stream
+	 * @throws Exception
+	 */
+	private static void assertRoundTrip(GIFStream stream)
+			throws Exception {
+		byte[] data = encode(stream);
+		GIFStream.Frame frame = stream.frames.get(0);
+
+		GIFStream decoded = GIFDecoder.decode(data);
+		assertEquals(frame.interlaced, decoded.frames.get(0).interlaced);
+		assertArrayEquals(frame.indices, decoded.frames.get(0).indices);
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+		int[] samples = image.getRaster().getPixels(0, 0, frame.width, frame.height, (int[]) null);
+		for (int i = 0; i < samples.length; i++) {
+			assertEquals(frame.indices[i] & 0xFF, samples[i]);
+		}
+	}
+
+	private static byte[] encode(GIFStream stream)
+			throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GIFEncoder.encode(stream, out);
+		return out.toByteArray();
+	}
+
+	private GIFStream newStream(int width, int height, int colorCount, boolean interlaced) {
+		GIFStream stream = new GIFStream();
+		stream.width = width;
+		stream.height = height;
+		stream.globalColorTable = randomBytes(3 * colorCount);
+
+		GIFStream.Frame frame = new GIFStream.Frame();
+		frame.width = width;
+		frame.height = height;
+		frame.interlaced = interlaced;
+		frame.indices = randomIndices(width * height, colorCount);
+		stream.frames.add(frame);
+		return stream;
+	}
+
+	private byte[] randomIndices(int length, int colorCount) {
+		byte[] indices = new byte[length];
+		for (int i = 0; i < length; i++) {
+			indices[i] = (byte) random.nextInt(colorCount);
+		}
+		return indices;
+	}
+
+	private byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -3,13 +3,19 @@ package org.stegosuite.image.format;
 import org.junit.Before;
 import org.junit.Test;
 import org.stegosuite.model.exception.SteganoImageException;
+import org.stegosuite.util.ColorDistance;
 
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.IntStream;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class GIFImageTest {
 
@@ -51,4 +57,102 @@ public class GIFImageTest {
 		image.setPixels(pixels);
 		assertArrayEquals(image.getPixels(), pixels);
 	}
+
+	@Test
+	public void testIndexHistogram() {
+		int[] expected = new int[image.getColorTable().size()];
+		for (int pixel : image.getPixels()) {
+			expected[pixel]++;
+		}
+		assertArrayEquals(expected, image.getIndexHistogram());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i] > 0, image.isReferenced(i));
+		}
+	}
+
+	@Test
+	public void testIndexHistogramAfterSetPixels() {
+		image.getIndexHistogram();
+		int[] pixels = new int[image.getWidth() * image.getHeight()];
+		Arrays.fill(pixels, 3);
+		image.setPixels(pixels);
+
+		int[] histogram = image.getIndexHistogram();
+		assertEquals(pixels.length, histogram[3]);
+		assertEquals(pixels.length, IntStream.of(histogram).sum());
+		assertTrue(image.isReferenced(3));
+		assertFalse(image.isReferenced(0));
+	}
+
+	@Test
+	public void testSingleFrame() {
+		assertFalse(image.isAnimated());
+		assertEquals(1, image.getFrames().size());
+		assertSame(image, image.getFrames().get(0));
+		assertTrue(image.getColorTable().stream().allMatch(color -> color.getAlpha() == 255));
+	}
+
+	@Test
+	public void testRemapColorTable() {
+		List<Color> table = new ArrayList<>(image.getColorTable());
+		int[] pixels = image.getPixels().clone();
+		int[] histogram = image.getIndexHistogram();
+		List<Color> sortedTable = image.getSortedColorTable(ColorDistance.CIEDE_2000);
+
+		List<Color> reversedTable = new ArrayList<>(table);
+		Collections.reverse(reversedTable);
+		int[] indexMap = new int[table.size()];
+		Arrays.setAll(indexMap, i -> table.size() - 1 - i);
+		image.remapColorTable(reversedTable, indexMap);
+
+		assertEquals(reversedTable, image.getColorTable());
+		int[] remappedPixels = image.getPixels();
+		for (int i = 0; i < pixels.length; i++) {
+			assertEquals(indexMap[pixels[i]], remappedPixels[i]);
+			assertEquals(remappedPixels[i], image.getIndices()[i] & 0xFF);
+		}
+		int[] remappedHistogram = image.getIndexHistogram();
+		for (int i = 0; i < histogram.length; i++) {
+			assertEquals(histogram[i], remappedHistogram[indexMap[i]]);
+		}
+		assertEquals(sortedTable, image.getSortedColorTable(ColorDistance.CIEDE_2000));
+	}
+
+	@Test
+	public void testRemapColorTableWithNewColor() {
+		image.getSortedColorTable(ColorDistance.CIEDE_2000);
+		List<Color> table = new ArrayList<>(image.getColorTable());
+		Color newColor = new Color(1, 2, 3);
+		assertFalse(table.contains(newColor));
+		table.set(0, newColor);
+		int[] indexMap = new int[table.size()];
+		Arrays.setAll(indexMap, i -> i);
+		image.remapColorTable(table, indexMap);
+
+		assertTrue(image.getSortedColorTable(ColorDistance.CIEDE_2000).contains(newColor));
+	}
+
+	@Test
+	public void testSaveReadableByImageIO()
+			throws Exception {
+		File file = File.createTempFile("sunflower", ".gif");
+		try {
+			image.save(file);
+			BufferedImage saved = ImageIO.read(file);
+			assertEquals(image.getWidth(), saved.getWidth());
+			assertEquals(image.getHeight(), saved.getHeight());
+			for (int y = 0; y < image.getHeight(); y += 7) {
+				for (int x = 0; x < image.getWidth(); x += 5) {
+					assertEquals(image.getBufferedImage().getRGB(x, y), saved.getRGB(x, y));
+				}
+			}
+
+			GIFImage reloaded = new GIFImage();
+			reloaded.load(file);
+			assertArrayEquals(image.getPixels(), reloaded.getPixels());
+			assertEquals(image.getColorTable(), reloaded.getColorTable());
+		} finally {
+			file.delete();
+		}
+	}
 }
@@ -0,0 +1,46 @@
+package org.stegosuite.image.format;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IndexedPaletteTest {
+
+	private static final List<Color> COLORS = Arrays.asList(Color.RED, Color.GREEN, Color.BLUE, Color.RED,
+			Color.BLACK);
+
+	private static final List<Color> SORTED = Arrays.asList(Color.BLACK, Color.BLUE, Color.GREEN, Color.RED);
+
+	@Test
+	public void testLookupTables() {
+		IndexedPalette palette = new IndexedPalette(COLORS, SORTED);
+		for (int i = 0; i < COLORS.size(); i++) {
+			assertEquals(SORTED.indexOf(COLORS.get(i)), palette.toSorted(i));
+		}
+		for (int i = 0; i < SORTED.size(); i++) {
+			assertEquals(COLORS.indexOf(SORTED.get(i)), palette.fromSorted(i));
+		}
+		assertEquals(5, palette.getColorCount());
+		assertEquals(4, palette.getSortedCount());
+	}
+
+	@Test
+	public void testSkipTrailingColors() {
+		IndexedPalette palette = new IndexedPalette(COLORS, SORTED).skipTrailingColors(2);
+		boolean[] expected = { true, true, false, true, false };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], palette.isSkipped(i));
+		}
+	}
+
+	@Test
+	public void testRemapPixels() {
+		int[] lut = IndexedPalette.remap(COLORS, Arrays.asList(Color.RED, Color.BLACK));
+		assertArrayEquals(new int[] { 0, -1, -1, 0, 1 }, lut);
+		assertArrayEquals(new int[] { 1, 0, 0 }, IndexedPalette.remapPixels(new int[] { 4, 3, 0 }, lut));
+	}
+}
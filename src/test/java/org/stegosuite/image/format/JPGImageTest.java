@@ -0,0 +1,87 @@
+package org.stegosuite.image.format;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.image.embedding.jpg.JPGF5;
+import org.stegosuite.image.jpgtemp.james.CoefficientPlane;
+import org.stegosuite.image.jpgtemp.james.DCTMethod;
+import org.stegosuite.model.exception.SteganoImageException;
+import org.stegosuite.util.ColorUtils;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class JPGImageTest {
+
+	private JPGImage image = null;
+
+	@Before
+	public void beforeMethod()
+			throws SteganoImageException {
+		image = new JPGImage();
+		image.load(new File(this.getClass().getClassLoader().getResource("landscape.jpg").getFile()));
+	}
+
+	@Test
+	public void testCoefficientPlaneCached() {
+		CoefficientPlane plane = image.getCoefficientPlane(80);
+		assertEquals(80, plane.getQuality());
+		assertSame(plane, image.getCoefficientPlane(80));
+		assertNotSame(plane, image.getCoefficientPlane(50));
+		assertSame(plane, image.getCoefficientPlane(80, DCTMethod.FLOAT));
+		assertNotSame(plane, image.getCoefficientPlane(80, DCTMethod.INTEGER));
+		assertSame(plane, image.clone().getCoefficientPlane(80));
+
+		image.setBufferedImage(ColorUtils.cloneBufferedImage(image.getBufferedImage()));
+		assertNotSame(plane, image.getCoefficientPlane(80));
+	}
+
+	@Test
+	public void testCoefficientPlane() {
+		CoefficientPlane plane = image.getCoefficientPlane(80);
+		int blocks = (image.getWidth() + 15) / 16 * ((image.getHeight() + 15) / 16) * 6;
+		assertEquals(blocks * 64, plane.getCoefficientCount());
+		assertEquals(3559, plane.getCapacity());
+		JPGF5 f5 = new JPGF5(image, null);
+		f5.setEmbeddingMode(JPGF5.EmbeddingMode.TRANSCODE);
+		assertEquals(plane.getCapacity(), f5.capacity());
+
+		int[] coefficients = plane.copyCoefficients();
+		coefficients[1]++;
+		assertNotEquals(coefficients[1], plane.copyCoefficients()[1]);
+	}
+
+	@Test
+	public void testDCTMethod() {
+		CoefficientPlane plane = image.getCoefficientPlane(80, DCTMethod.INTEGER);
+		assertEquals(DCTMethod.INTEGER, plane.getMethod());
+		assertSame(plane, image.getCoefficientPlane(80, DCTMethod.INTEGER));
+		assertEquals(3556, plane.getCapacity());
+
+		JPGF5 f5 = new JPGF5(image, null);
+		f5.setEmbeddingMode(JPGF5.EmbeddingMode.TRANSCODE);
+		f5.setDCTMethod(DCTMethod.INTEGER);
+		assertEquals(plane.getCapacity(), f5.capacity());
+
+		// Embedding into the coefficients of the file computes no DCT
+		f5 = new JPGF5(image, null);
+		f5.setDCTMethod(DCTMethod.INTEGER);
+		assertEquals(image.getFileCoefficientPlane().getCapacity(), f5.capacity());
+	}
+
+	@Test
+	public void testFileCoefficientPlane() {
+		CoefficientPlane plane = image.getFileCoefficientPlane();
+		assertEquals(-1, plane.getQuality());
+		int blocks = (image.getWidth() + 15) / 16 * ((image.getHeight() + 15) / 16) * 6;
+		assertEquals(blocks * 64, plane.getCoefficientCount());
+		assertSame(plane, image.getFileCoefficientPlane());
+		assertSame(plane, image.clone().getFileCoefficientPlane());
+		assertEquals(plane.getCapacity(), new JPGF5(image, null).capacity());
+
+		image.setBufferedImage(ColorUtils.cloneBufferedImage(image.getBufferedImage()));
+		assertNull(image.getFileCoefficientPlane());
+		assertEquals(image.getCoefficientPlane(80).getCapacity(), new JPGF5(image, null).capacity());
+	}
+}
@@ -0,0 +1,210 @@
+package org.stegosuite.image.jpgtemp.james;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CoefficientDecoderTest {
+
+	private static final String METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+	private Random random = null;
+
+	@Before
+	public void beforeMethod() {
+		random = new Random(1);
+	}
+
+	@Test
+	public void testDecodeEncoderOutput() {
+		BufferedImage image = randomImage(45, 31, BufferedImage.TYPE_INT_RGB);
+		CoefficientPlane plane = new CoefficientPlane(image, 80);
+		CoefficientPlane decoded = decode(encode(plane));
+		assertArrayEquals(plane.copyCoefficients(), decoded.copyCoefficients());
+		assertEquals(plane.getCapacity(), decoded.getCapacity());
+		assertEquals(-1, decoded.getQuality());
+	}
+
+	@Test
+	public void testReencodeFile()
+			throws Exception {
+		byte[] data = Files.readAllBytes(
+				new File(this.getClass().getClassLoader().getResource("landscape.jpg").getFile()).toPath());
+		assertReencodedPixels(data);
+	}
+
+	@Test
+	public void testSamplingFactorsAndRestartIntervals()
+			throws Exception {
+		// Luminance sampling factors and restart interval in MCUs
+		int[][] formats = { { 2, 2, 0 }, { 1, 1, 3 }, { 2, 1, 5 }, { 1, 2, 1 } };
+		for (int[] format : formats) {
+			BufferedImage image = randomImage(37 + format[2], 23, BufferedImage.TYPE_INT_RGB);
+			assertReencodedPixels(write(image, format[0], format[1], format[2]));
+		}
+		BufferedImage gray = randomImage(61, 30, BufferedImage.TYPE_BYTE_GRAY);
+		assertReencodedPixels(write(gray, 1, 1, 0));
+		assertReencodedPixels(write(gray, 1, 1, 4));
+	}
+
+	@Test
+	public void testUnsupported()
+			throws Exception {
+		BufferedImage image = randomImage(40, 24, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		assertDecodeFails(out.toByteArray());
+
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		assertDecodeFails(write(writer, image, param, null));
+
+		byte[] data = write(image, 2, 2, 0);
+		assertDecodeFails(Arrays.copyOf(data, data.length / 2));
+
+		// RGB components would be written back as YCbCr
+		assertDecodeFails(withAdobeSegment(data, 0));
+		decode(withAdobeSegment(data, 1));
+	}
+
+	/**
+	 * Asserts that re-encoding the decoded coefficients gives the same pixels as the file
+	 *
+	 * @param data
+	 * @throws IOException
+	 */
+	private static void assertReencodedPixels(byte[] data)
+			throws IOException {
+		CoefficientPlane plane = decode(data);
+		byte[] encoded = encode(plane);
+		assertArrayEquals(plane.copyCoefficients(), decode(encoded).copyCoefficients());
+
+		BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+		BufferedImage actual = ImageIO.read(new ByteArrayInputStream(encoded));
+		assertEquals(expected.getType(), actual.getType());
+		int width = expected.getWidth();
+		int height = expected.getHeight();
+		assertArrayEquals(expected.getRGB(0, 0, width, height, null, 0, width),
+				actual.getRGB(0, 0, width, height, null, 0, width));
+	}
+
+	/**
+	 * Inserts an Adobe APP14 segment with the color transform behind the SOI marker
+	 *
+	 * @param data
+	 * @param transform 0 for RGB, 1 for YCbCr
+	 * @return
+	 */
+	private static byte[] withAdobeSegment(byte[] data, int transform) {
+		byte[] segment = { (byte) 0xFF, (byte) 0xEE, 0, 14, 'A', 'd', 'o', 'b', 'e', 0, 100, 0, 0, 0, 0,
+				(byte) transform };
+		byte[] result = new byte[data.length + segment.length];
+		System.arraycopy(data, 0, result, 0, 2);
+		System.arraycopy(segment, 0, result, 2, segment.length);
+		System.arraycopy(data, 2, result, 2 + segment.length, data.length - 2);
+		return result;
+	}
+
+	private static void assertDecodeFails(byte[] data) {
+		try {
+			CoefficientPlane.decode(data);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static CoefficientPlane decode(byte[] data) {
+		try {
+			return CoefficientPlane.decode(data);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static byte[] encode(CoefficientPlane plane) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new JpegEncoder(plane, out, "").Compress();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes a baseline JPEG with ImageIO
+	 *
+	 * @param image
+	 * @param hsamp the horizontal sampling factor of the luminance
+	 * @param vsamp the vertical sampling factor of the luminance
+	 * @param restartInterval 0 for none
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] write(BufferedImage image, int hsamp, int vsamp, int restartInterval)
+			throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+		Element root = (Element) metadata.getAsTree(METADATA_FORMAT);
+		Element markers = (Element) root.getElementsByTagName("markerSequence").item(0);
+		NodeList components = markers.getElementsByTagName("componentSpec");
+		if (components.getLength() == 3) {
+			((Element) components.item(0)).setAttribute("HsamplingFactor", String.valueOf(hsamp));
+			((Element) components.item(0)).setAttribute("VsamplingFactor", String.valueOf(vsamp));
+			for (int i = 1; i < 3; i++) {
+				((Element) components.item(i)).setAttribute("HsamplingFactor", "1");
+				((Element) components.item(i)).setAttribute("VsamplingFactor", "1");
+			}
+		}
+		if (restartInterval > 0) {
+			IIOMetadataNode dri = new IIOMetadataNode("dri");
+			dri.setAttribute("interval", String.valueOf(restartInterval));
+			markers.insertBefore(dri, markers.getFirstChild());
+		}
+		metadata.setFromTree(METADATA_FORMAT, root);
+		return write(writer, image, param, metadata);
+	}
+
+	private static byte[] write(ImageWriter writer, BufferedImage image, ImageWriteParam param, IIOMetadata metadata)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, metadata), param);
+		}
+		writer.dispose();
+		return out.toByteArray();
+	}
+
+	private BufferedImage randomImage(int width, int height, int type) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int red = x * 5 + y * 3 + random.nextInt(40) & 0xFF;
+				int green = y * 7 + random.nextInt(40) & 0xFF;
+				int blue = x * 3 + random.nextInt(60) & 0xFF;
+				image.setRGB(x, y, red << 16 | green << 8 | blue);
+			}
+		}
+		return image;
+	}
+}
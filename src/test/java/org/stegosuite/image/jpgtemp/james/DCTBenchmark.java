@@ -0,0 +1,120 @@
+package org.stegosuite.image.jpgtemp.james;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the DCT methods on random blocks, the DCT and quantization separately and together, and
+ * on whole images. Not run by the tests, start it with the test classpath and optionally the paths
+ * of images to transform.
+ */
+public class DCTBenchmark {
+
+	private static final int BLOCKS = 4096;
+
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static final int ROUNDS = 10;
+
+	private static final int REPETITIONS = 200;
+
+	private static final int QUALITY = 80;
+
+	/**
+	 * Keeps the results alive so that the JIT can't drop the measured code
+	 */
+	private static int sink = 0;
+
+	public static void main(String[] args)
+			throws IOException {
+		DCT dct = new DCT(QUALITY);
+		Random random = new Random(1);
+		float[][] blocks = new float[BLOCKS][64];
+		for (float[] block : blocks) {
+			for (int i = 0; i < 64; i++) {
+				block[i] = random.nextInt(256);
+			}
+		}
+
+		double[] doubleCoefficients = new double[64];
+		int[] integerCoefficients = new int[64];
+		int[] quantized = new int[64];
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < REPETITIONS; i++) {
+				for (float[] block : blocks) {
+					dct.quantizeBlock(dct.forwardDCT(block, doubleCoefficients), 0, quantized, 0);
+					sink += quantized[0];
+				}
+			}
+			long floatTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < REPETITIONS; i++) {
+				for (float[] block : blocks) {
+					dct.quantizeBlock(dct.forwardDCT(block, integerCoefficients), 0, quantized, 0);
+					sink += quantized[0];
+				}
+			}
+			long integerTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < REPETITIONS; i++) {
+				for (float[] block : blocks) {
+					sink += (int) dct.forwardDCT(block, doubleCoefficients)[0];
+				}
+			}
+			long floatDCTTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < REPETITIONS; i++) {
+				for (float[] block : blocks) {
+					sink += dct.forwardDCT(block, integerCoefficients)[0];
+				}
+			}
+			long integerDCTTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < REPETITIONS * BLOCKS; i++) {
+				sink += dct.quantizeBlock(doubleCoefficients, 0, quantized, 0)[0];
+			}
+			long floatQuantizationTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < REPETITIONS * BLOCKS; i++) {
+				sink += dct.quantizeBlock(integerCoefficients, 0, quantized, 0)[0];
+			}
+			long integerQuantizationTime = System.nanoTime() - start;
+
+			if (round >= WARMUP_ROUNDS) {
+				System.out.printf("ns/block: FLOAT %.1f (DCT %.1f, quantization %.1f), INTEGER %.1f (DCT %.1f, quantization %.1f)%n",
+						perBlock(floatTime), perBlock(floatDCTTime), perBlock(floatQuantizationTime),
+						perBlock(integerTime), perBlock(integerDCTTime), perBlock(integerQuantizationTime));
+			}
+		}
+
+		for (String path : args) {
+			BufferedImage image = ImageIO.read(new File(path));
+			for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+				long start = System.nanoTime();
+				CoefficientPlane floatPlane = new CoefficientPlane(image, QUALITY, DCTMethod.FLOAT);
+				long floatTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				CoefficientPlane integerPlane = new CoefficientPlane(image, QUALITY, DCTMethod.INTEGER);
+				long integerTime = System.nanoTime() - start;
+				if (round >= WARMUP_ROUNDS) {
+					System.out.printf("%s: FLOAT %.1f ms (capacity %d), INTEGER %.1f ms (capacity %d)%n", path,
+							floatTime / 1e6, floatPlane.getCapacity(), integerTime / 1e6, integerPlane.getCapacity());
+				}
+			}
+		}
+		System.out.println("Checksum " + sink);
+	}
+
+	private static double perBlock(long nanos) {
+		return nanos / (double) (REPETITIONS * BLOCKS);
+	}
+}
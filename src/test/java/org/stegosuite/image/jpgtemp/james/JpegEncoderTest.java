@@ -0,0 +1,110 @@
+package org.stegosuite.image.jpgtemp.james;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.util.ColorUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JpegEncoderTest {
+
+	private BufferedImage image = null;
+
+	@Before
+	public void beforeMethod()
+			throws Exception {
+		image = ImageIO.read(new File(this.getClass().getClassLoader().getResource("landscape.jpg").getFile()));
+	}
+
+	@Test
+	public void testCompress()
+			throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new JpegEncoder(new CoefficientPlane(image, 80), out, "").Compress();
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(image.getWidth(), decoded.getWidth());
+		assertEquals(image.getHeight(), decoded.getHeight());
+	}
+
+	@Test
+	public void testImageTypes() {
+		int[] expected = new CoefficientPlane(image, 80).copyCoefficients();
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB_PRE };
+		for (int type : types) {
+			BufferedImage converted = ColorUtils.cloneBufferedImage(image, type);
+			assertArrayEquals(expected, new CoefficientPlane(converted, 80).copyCoefficients());
+		}
+
+		// Sub-images share the raster of their parent with an offset
+		BufferedImage parent = new BufferedImage(image.getWidth() + 5, image.getHeight() + 3, image.getType());
+		parent.getRaster().setRect(3, 2, image.getRaster());
+		BufferedImage subimage = parent.getSubimage(3, 2, image.getWidth(), image.getHeight());
+		assertArrayEquals(expected, new CoefficientPlane(subimage, 80).copyCoefficients());
+	}
+
+	@Test
+	public void testParallelTransform() {
+		// MCU rows are transformed in parallel into their own ranges of the coefficients
+		int[] expected = new CoefficientPlane(image, 80).copyCoefficients();
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(expected, new CoefficientPlane(image, 80).copyCoefficients());
+		}
+
+		int[] integerExpected = new CoefficientPlane(image, 80, DCTMethod.INTEGER).copyCoefficients();
+		assertArrayEquals(integerExpected, new CoefficientPlane(image, 80, DCTMethod.INTEGER).copyCoefficients());
+	}
+
+	@Test
+	public void testIntegerMethod()
+			throws Exception {
+		CoefficientPlane floatPlane = new CoefficientPlane(image, 80);
+		CoefficientPlane integerPlane = new CoefficientPlane(image, 80, DCTMethod.INTEGER);
+		assertEquals(DCTMethod.INTEGER, integerPlane.getMethod());
+		int[] expected = floatPlane.copyCoefficients();
+		int[] coefficients = integerPlane.copyCoefficients();
+		assertEquals(expected.length, coefficients.length);
+		int differences = 0;
+		for (int i = 0; i < expected.length; i++) {
+			assertTrue(Math.abs(expected[i] - coefficients[i]) <= 1);
+			if (expected[i] != coefficients[i]) {
+				differences++;
+			}
+		}
+		assertTrue(differences < expected.length / 20);
+		assertEquals(floatPlane.getCapacity(), integerPlane.getCapacity(), floatPlane.getCapacity() / 100);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new JpegEncoder(integerPlane, out, "").Compress();
+		assertEquals(image.getWidth(), ImageIO.read(new ByteArrayInputStream(out.toByteArray())).getWidth());
+	}
+
+	@Test
+	public void testReciprocalQuantization() {
+		for (int quality : new int[] { 1, 50, 80, 100 }) {
+			DCT dct = new DCT(quality);
+			int[] block = new int[64];
+			int[] quantized = new int[64];
+			for (int code = 0; code < 2; code++) {
+				// Values of fixed-point DCT coefficients stay within 16 bits
+				for (int value = -(1 << 16); value <= 1 << 16; value++) {
+					Arrays.fill(block, value);
+					dct.quantizeBlock(block, code, quantized, 0);
+					for (int index = 0; index < 64; index++) {
+						int divisor = dct.IntegerDivisors[code][index];
+						int expected = (Math.abs(value) + divisor / 2) / divisor;
+						assertEquals(value < 0 ? -expected : expected, quantized[index]);
+					}
+				}
+			}
+		}
+	}
+}
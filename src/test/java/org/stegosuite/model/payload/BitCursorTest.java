@@ -0,0 +1,66 @@
+package org.stegosuite.model.payload;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.util.ByteUtils;
+
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BitCursorTest {
+
+	private byte[] bytes;
+
+	@Before
+	public void beforeMethod() {
+		bytes = new byte[37];
+		new Random(7).nextBytes(bytes);
+	}
+
+	@Test
+	public void testNextBitMatchesIterateBits() {
+		for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			BitCursor cursor = new BitCursor(bytes, byteOrder);
+			for (byte bit : ByteUtils.iterateBits(bytes, byteOrder)) {
+				assertEquals(bit, cursor.nextBit());
+			}
+			assertFalse(cursor.hasRemaining());
+		}
+	}
+
+	@Test
+	public void testNextBitsAcrossWords() {
+		BitCursor expected = new BitCursor(bytes, ByteOrder.BIG_ENDIAN);
+		BitCursor cursor = new BitCursor(bytes, ByteOrder.BIG_ENDIAN);
+		Random random = new Random(3);
+		while (cursor.hasRemaining()) {
+			int n = (int) Math.min(random.nextInt(65), cursor.remaining());
+			long bits = cursor.nextBits(n);
+			for (int i = n - 1; i >= 0; i--) {
+				assertEquals(expected.nextBit(), (bits >>> i) & 1);
+			}
+		}
+		assertEquals(bytes.length * 8L, cursor.position());
+	}
+
+	@Test
+	public void testFill() {
+		BitCursor cursor = new BitCursor(bytes, ByteOrder.BIG_ENDIAN);
+		long[] words = new long[5];
+		assertEquals(bytes.length * 8, cursor.fill(words));
+		for (int i = 0; i < bytes.length; i++) {
+			assertEquals(bytes[i], (byte) (words[i / 8] >>> (56 - (i % 8) * 8)));
+		}
+		assertEquals(0, words[4] << ((bytes.length % 8) * 8));
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testReadPastEnd() {
+		BitCursor cursor = new BitCursor(bytes, ByteOrder.BIG_ENDIAN);
+		cursor.nextBits(60);
+		cursor.getBits(bytes.length * 8L - 3, 4);
+	}
+}
@@ -0,0 +1,110 @@
+package org.stegosuite.model.payload;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.stegosuite.model.exception.SteganoEmbedException;
+import org.stegosuite.model.exception.SteganoExtractException;
+import org.stegosuite.model.payload.block.MessageBlock;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PayloadExtractorTest {
+
+	private static final String MESSAGE = "The quick brown fox jumps over the lazy dog";
+
+	private byte[] payloadBytes;
+
+	@Before
+	public void beforeMethod()
+			throws SteganoEmbedException {
+		Payload payload = new Payload();
+		payload.addBlock(new MessageBlock(MESSAGE));
+		payloadBytes = new PayloadEmbedder(payload, 1000, 1).getPayloadBytes();
+	}
+
+	@Test
+	public void testProcessBit()
+			throws SteganoExtractException {
+		Payload payload = new Payload();
+		PayloadExtractor extractor = new PayloadExtractor(payload, 1);
+		BitCursor cursor = new BitCursor(payloadBytes, Payload.BYTE_ORDER);
+		while (!extractor.finished()) {
+			extractor.processBit((byte) cursor.nextBit());
+		}
+		assertFalse(cursor.hasRemaining());
+		assertMessage(payload);
+	}
+
+	@Test
+	public void testProcessBits()
+			throws SteganoExtractException {
+		Payload payload = new Payload();
+		PayloadExtractor extractor = new PayloadExtractor(payload, 1);
+		BitCursor cursor = new BitCursor(payloadBytes, ByteOrder.BIG_ENDIAN);
+		Random random = new Random(5);
+		while (cursor.hasRemaining()) {
+			int count = (int) Math.min(random.nextInt(65), cursor.remaining());
+			extractor.processBits(cursor.nextBits(count), count);
+		}
+		assertTrue(extractor.finished());
+		assertMessage(payload);
+	}
+
+	@Test
+	public void testProcessBytesIgnoresSurplusBytes()
+			throws SteganoExtractException {
+		byte[] bytes = new byte[payloadBytes.length + 10];
+		System.arraycopy(payloadBytes, 0, bytes, 3, payloadBytes.length);
+
+		Payload payload = new Payload();
+		PayloadExtractor extractor = new PayloadExtractor(payload, 1);
+		extractor.processBytes(bytes, 3, 4);
+		assertFalse(extractor.finished());
+		extractor.processBytes(bytes, 7, bytes.length - 7);
+		assertTrue(extractor.finished());
+		assertEquals(payloadBytes.length - Payload.headerLength(1), (int) extractor.getPayloadLength());
+		assertMessage(payload);
+	}
+
+	@Test
+	public void testOtherHeaderVersionIsRejected()
+			throws SteganoExtractException {
+		PayloadExtractor extractor = new PayloadExtractor(new Payload(), 2);
+		extractor.processBits(payloadBytes[0] << 8 | payloadBytes[1] & 0xFF, 16);
+		assertTrue(extractor.finished());
+		assertTrue(extractor.isRejected());
+	}
+
+	@Test
+	public void testImpossibleLengthIsRejected()
+			throws SteganoExtractException {
+		// The version bytes match, but the payload would be shorter than its header
+		PayloadExtractor extractor = new PayloadExtractor(new Payload(), 1);
+		extractor.processBytes(new byte[] { Payload.HEADER_MAGIC, 1, 0, 0, 3 }, 0, 5);
+		assertTrue(extractor.finished());
+		assertTrue(extractor.isRejected());
+		assertNull(extractor.getPayloadLength());
+
+		// The payload would exceed the capacity of the image
+		extractor = new PayloadExtractor(new Payload(), 1);
+		extractor.setCapacity(payloadBytes.length - 1);
+		extractor.processBytes(payloadBytes, 0, payloadBytes.length);
+		assertTrue(extractor.finished());
+		assertTrue(extractor.isRejected());
+
+		Payload payload = new Payload();
+		extractor = new PayloadExtractor(payload, 1);
+		extractor.setCapacity(payloadBytes.length);
+		extractor.processBytes(payloadBytes, 0, payloadBytes.length);
+		assertFalse(extractor.isRejected());
+		assertMessage(payload);
+	}
+
+	private void assertMessage(Payload payload) {
+		assertEquals(1, payload.getBlocks().size());
+		assertEquals(MESSAGE, ((MessageBlock) payload.getBlock(0)).getMessage());
+	}
+}
@@ -0,0 +1,53 @@
+package org.stegosuite.util;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DistanceCacheTest {
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		DistanceCache cache = new DistanceCache(2);
+		assertEquals(1.0, cache.computeIfAbsent(1, k -> 1.0), 0.0);
+		assertEquals(2.0, cache.computeIfAbsent(2, k -> 2.0), 0.0);
+		assertEquals(1.0, cache.computeIfAbsent(1, k -> -1.0), 0.0);
+		assertEquals(3.0, cache.computeIfAbsent(3, k -> 3.0), 0.0);
+
+		// Key 2 has been evicted, key 1 was used more recently
+		assertEquals(-2.0, cache.computeIfAbsent(2, k -> -2.0), 0.0);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+	}
+
+	@Test
+	public void testZeroCapacityDisablesCaching() {
+		DistanceCache cache = new DistanceCache(2);
+		cache.computeIfAbsent(1, k -> 1.0);
+		cache.setCapacity(0);
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(-1.0, cache.computeIfAbsent(1, k -> -1.0), 0.0);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testPaletteDistanceMatchesDistance() {
+		Color[] colors = { Color.RED, Color.ORANGE, new Color(10, 20, 30), new Color(10, 20, 31) };
+		for (ColorDistance colorDistance : ColorDistance.values()) {
+			PaletteDistance palette = colorDistance.forPalette(Arrays.asList(colors));
+			for (int i = 0; i < colors.length; i++) {
+				for (int j = 0; j < colors.length; j++) {
+					double distance = colorDistance.distance(colors[i], colors[j]);
+					assertEquals(distance, palette.distance(i, j), 0.0);
+					assertEquals(distance, palette.distance(colors[i], j), 0.0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package org.stegosuite.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PaletteOrderingTest {
+
+	private List<Color> colors = null;
+
+	@Before
+	public void beforeMethod() {
+		Random random = new Random(11);
+		colors = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			colors.add(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+		}
+	}
+
+	/**
+	 * Distances with many ties need to be resolved in favor of the lower index, both when
+	 * choosing the next color and when choosing the shortest path
+	 */
+	@Test
+	public void testNearestNeighbourPathWithTies() {
+		int n = 40;
+		Random random = new Random(3);
+		double[] matrix = new double[n * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				matrix[i * n + j] = matrix[j * n + i] = random.nextInt(4);
+			}
+		}
+
+		int[] expected = null;
+		double expectedLength = 0;
+		for (int start = 0; start < n; start++) {
+			List<Integer> unvisited = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				if (i != start) {
+					unvisited.add(i);
+				}
+			}
+			int[] path = new int[n];
+			path[0] = start;
+			double length = 0;
+			for (int step = 1; step < n; step++) {
+				int previous = path[step - 1];
+				int nearest = unvisited.get(0);
+				for (int i : unvisited) {
+					if (matrix[previous * n + i] < matrix[previous * n + nearest]) {
+						nearest = i;
+					}
+				}
+				unvisited.remove((Integer) nearest);
+				path[step] = nearest;
+				length += matrix[previous * n + nearest];
+			}
+			if (expected == null || length < expectedLength) {
+				expected = path;
+				expectedLength = length;
+			}
+		}
+
+		assertArrayEquals(expected, new PaletteOrdering(matrix).nearestNeighbourPath());
+	}
+
+	@Test
+	public void testTwoOptShortensPath() {
+		PaletteOrdering ordering = new PaletteOrdering(ColorDistance.CIEDE_2000.distanceMatrix(colors));
+		int[] path = ordering.nearestNeighbourPath();
+		double length = ordering.length(path);
+
+		int[] refined = path.clone();
+		assertTrue(ordering.twoOpt(refined, 10) > 0);
+		assertTrue(ordering.length(refined) < length);
+
+		int[] sorted = refined.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(i, sorted[i]);
+		}
+
+		int[] refinedAgain = path.clone();
+		ordering.twoOpt(refinedAgain, 10);
+		assertArrayEquals(refined, refinedAgain);
+	}
+
+	@Test
+	public void testDistanceMatrixMatchesDistance() {
+		double[] matrix = ColorDistance.CIEDE_2000.distanceMatrix(colors);
+		int n = colors.size();
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				assertEquals(ColorDistance.CIEDE_2000.distance(colors.get(i), colors.get(j)), matrix[i * n + j], 0.0);
+			}
+		}
+	}
+}
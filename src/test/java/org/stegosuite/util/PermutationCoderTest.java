@@ -0,0 +1,72 @@
+package org.stegosuite.util;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PermutationCoderTest {
+
+	@Test
+	public void testDecodeMatchesInsertion() {
+		Random random = new Random(1);
+		for (int n : new int[] { 1, 2, 7, 33, 256 }) {
+			BigInteger number = new BigInteger(n * 8, random);
+			assertArrayEquals(insert(number, n), PermutationCoder.decode(number, n));
+		}
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Random random = new Random(2);
+		for (int n : new int[] { 0, 1, 2, 31, 32, 33, 256, 5000 }) {
+			BigInteger factorial = factorial(n);
+			BigInteger number = new BigInteger(factorial.bitLength() + 8, random).mod(factorial);
+			assertEquals(number, PermutationCoder.encode(PermutationCoder.decode(number, n)));
+		}
+	}
+
+	@Test
+	public void testDigits() {
+		// 5 = 2 * 2! + 1 * 1!
+		assertArrayEquals(new int[] { 0, 1, 2, 0 }, PermutationCoder.toDigits(BigInteger.valueOf(5), 4));
+		// 4! - 1 is the largest number with 4 digits
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, PermutationCoder.toDigits(BigInteger.valueOf(23), 4));
+		assertArrayEquals(new int[] { 0, 0, 0, 0 }, PermutationCoder.toDigits(BigInteger.valueOf(24), 4));
+		assertEquals(BigInteger.valueOf(23), PermutationCoder.fromDigits(new int[] { 0, 1, 2, 3 }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEncodeRejectsDuplicates() {
+		PermutationCoder.encode(new int[] { 0, 1, 1 });
+	}
+
+	/**
+	 * Builds the permutation by inserting the elements one after another, like GIFShuffle used to
+	 *
+	 * @param number
+	 * @param n
+	 * @return
+	 */
+	private static int[] insert(BigInteger number, int n) {
+		List<Integer> permutation = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			int position = number.mod(BigInteger.valueOf(i + 1)).intValue();
+			number = number.divide(BigInteger.valueOf(i + 1));
+			permutation.add(position, i);
+		}
+		return permutation.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static BigInteger factorial(int n) {
+		BigInteger factorial = BigInteger.ONE;
+		for (int i = 2; i <= n; i++) {
+			factorial = factorial.multiply(BigInteger.valueOf(i));
+		}
+		return factorial;
+	}
+}